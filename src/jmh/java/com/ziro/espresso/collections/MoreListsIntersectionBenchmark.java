@@ -0,0 +1,58 @@
+package com.ziro.espresso.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how {@link MoreLists#intersection(List)} scales with the number of lists and their size.
+ *
+ * <p>Each list holds {@code listSize} random ids drawn from a space twice that size, so every additional list
+ * removes a sizeable share of the running intersection without emptying it early.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MoreListsIntersectionBenchmark {
+
+    @Param({"2", "10", "30"})
+    private int listCount;
+
+    @Param({"1000", "100000", "1000000"})
+    private int listSize;
+
+    private List<List<Long>> lists;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        lists = new ArrayList<>(listCount);
+        for (int i = 0; i < listCount; i++) {
+            List<Long> list = new ArrayList<>(listSize);
+            for (int j = 0; j < listSize; j++) {
+                list.add(random.nextLong(listSize * 2L));
+            }
+            lists.add(list);
+        }
+    }
+
+    @Benchmark
+    public List<Long> intersection() {
+        return MoreLists.intersection(lists);
+    }
+}
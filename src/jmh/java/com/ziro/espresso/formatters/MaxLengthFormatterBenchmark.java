@@ -0,0 +1,66 @@
+package com.ziro.espresso.formatters;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares truncating values to a UTF-8 byte budget straight into a reused buffer, with
+ * {@link MaxLengthFormatter#formatUtf8}, against formatting them to strings then encoding those, over generated
+ * names twice as long as the budget on average.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MaxLengthFormatterBenchmark {
+
+    private static final int VALUE_COUNT = 10_000;
+
+    private static final int MAX_BYTES = 12;
+
+    private List<String> values;
+
+    private MaxLengthFormatter formatter;
+
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setUp() {
+        values = NameCorpus.generate(VALUE_COUNT, 42);
+        formatter = MaxLengthFormatter.ofUtf8Bytes(MAX_BYTES);
+        buffer = ByteBuffer.allocate(MAX_BYTES);
+    }
+
+    @Benchmark
+    public int formatThenEncode() {
+        int byteCount = 0;
+        for (String value : values) {
+            byteCount += formatter.format(value).getBytes(StandardCharsets.UTF_8).length;
+        }
+        return byteCount;
+    }
+
+    @Benchmark
+    public int formatUtf8() {
+        int byteCount = 0;
+        for (String value : values) {
+            buffer.clear();
+            byteCount += formatter.formatUtf8(value, buffer);
+        }
+        return byteCount;
+    }
+}
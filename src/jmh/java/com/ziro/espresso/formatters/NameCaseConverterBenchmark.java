@@ -0,0 +1,106 @@
+package com.ziro.espresso.formatters;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the single-pass {@link NameCaseConverter#toNameCase(String)} with the regex based implementation it
+ * replaced, kept with the tests as {@code LegacyNameCaseConverter}, over the same corpus of generated names. Also
+ * measures the bulk conversions, sequential and on the common pool, conversions into a reused buffer, the word
+ * cache, which is warm after the first iteration, and a dictionary with thousands more Mac exceptions and particles
+ * than the default one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NameCaseConverterBenchmark {
+
+    private static final int NAME_COUNT = 10_000;
+
+    private static final int EXTRA_DICTIONARY_ENTRIES = 5_000;
+
+    private List<String> names;
+
+    private CachedNameCaseConverter cachedConverter;
+
+    private NameCaseDictionary largeDictionary;
+
+    @Setup
+    public void setUp() {
+        names = NameCorpus.generate(NAME_COUNT, 42);
+        cachedConverter = NameCaseConverter.cached(NAME_COUNT);
+        NameCaseDictionary.Builder builder = NameCaseDictionary.builder().addAll(NameCaseDictionary.defaults());
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < EXTRA_DICTIONARY_ENTRIES; i++) {
+            StringBuilder word = new StringBuilder();
+            for (int j = 3 + random.nextInt(6); j > 0; j--) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            builder.macException("Mac" + Character.toUpperCase(word.charAt(0)) + word.substring(1), "Mac" + word);
+            builder.particle(word.toString());
+        }
+        largeDictionary = builder.build();
+    }
+
+    @Benchmark
+    public void singlePass(Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume(NameCaseConverter.toNameCase(name));
+        }
+    }
+
+    @Benchmark
+    public void legacy(Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume(LegacyNameCaseConverter.toNameCase(name));
+        }
+    }
+
+    @Benchmark
+    public List<String> bulk() {
+        return NameCaseConverter.toNameCase(names);
+    }
+
+    @Benchmark
+    public List<String> parallelBulk() {
+        return NameCaseConverter.toNameCase(names, ForkJoinPool.commonPool());
+    }
+
+    @Benchmark
+    public int appendable() {
+        StringBuilder buffer = new StringBuilder();
+        int length = 0;
+        for (String name : names) {
+            buffer.setLength(0);
+            NameCaseConverter.toNameCase(name, buffer);
+            length += buffer.length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public List<String> largeDictionary() {
+        return NameCaseConverter.toNameCase(names, largeDictionary);
+    }
+
+    @Benchmark
+    public List<String> cachedBulk() {
+        return cachedConverter.toNameCase(names);
+    }
+}
@@ -0,0 +1,73 @@
+package com.ziro.espresso.streams;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link MoreCollectors#topK(int, Comparator)} with the full sort it replaces,
+ * {@code sorted(comparator.reversed()).limit(k)}, sequentially and in parallel.
+ *
+ * <p>Elements are random longs, so the heap keeps being challenged by new candidates at first and settles once it
+ * holds large enough values, as with real ranking queries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MoreCollectorsTopKBenchmark {
+
+    private static final Comparator<Long> COMPARATOR = Comparator.naturalOrder();
+
+    @Param({"10", "100", "10000"})
+    private int k;
+
+    @Param({"100000", "1000000"})
+    private int size;
+
+    private List<Long> elements;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        elements = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            elements.add(random.nextLong());
+        }
+    }
+
+    @Benchmark
+    public List<Long> topK() {
+        return elements.stream().collect(MoreCollectors.topK(k, COMPARATOR));
+    }
+
+    @Benchmark
+    public List<Long> sortedLimit() {
+        return elements.stream().sorted(COMPARATOR.reversed()).limit(k).toList();
+    }
+
+    @Benchmark
+    public List<Long> parallelTopK() {
+        return elements.parallelStream().collect(MoreCollectors.topK(k, COMPARATOR));
+    }
+
+    @Benchmark
+    public List<Long> parallelSortedLimit() {
+        return elements.parallelStream().sorted(COMPARATOR.reversed()).limit(k).toList();
+    }
+}
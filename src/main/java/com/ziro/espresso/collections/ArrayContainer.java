@@ -0,0 +1,251 @@
+package com.ziro.espresso.collections;
+
+import com.google.common.base.Preconditions;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * A {@link Container} for sparse chunks, keeping its values in a sorted {@code char[]}.
+ */
+final class ArrayContainer extends Container {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private char[] values;
+    private int cardinality;
+
+    ArrayContainer() {
+        this(new char[INITIAL_CAPACITY], 0);
+    }
+
+    ArrayContainer(char[] values, int cardinality) {
+        this.values = values;
+        this.cardinality = cardinality;
+    }
+
+    static int sizeInBytes(int cardinality) {
+        return Character.BYTES * cardinality;
+    }
+
+    @Override
+    int cardinality() {
+        return cardinality;
+    }
+
+    @Override
+    boolean contains(char value) {
+        return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+    }
+
+    @Override
+    Container add(char value) {
+        int index = Arrays.binarySearch(values, 0, cardinality, value);
+        if (index >= 0) {
+            return this;
+        }
+        if (cardinality == MAX_ARRAY_CARDINALITY) {
+            return new BitmapContainer(words(), cardinality).add(value);
+        }
+        int insertionPoint = -index - 1;
+        if (cardinality == values.length) {
+            int capacity = Math.min(MAX_ARRAY_CARDINALITY, Math.max(INITIAL_CAPACITY, 2 * cardinality));
+            values = Arrays.copyOf(values, capacity);
+        }
+        System.arraycopy(values, insertionPoint, values, insertionPoint + 1, cardinality - insertionPoint);
+        values[insertionPoint] = value;
+        cardinality++;
+        return this;
+    }
+
+    @Override
+    Container remove(char value) {
+        int index = Arrays.binarySearch(values, 0, cardinality, value);
+        if (index >= 0) {
+            System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+            cardinality--;
+        }
+        return this;
+    }
+
+    @Override
+    Container copy() {
+        return new ArrayContainer(Arrays.copyOf(values, Math.max(cardinality, INITIAL_CAPACITY)), cardinality);
+    }
+
+    @Override
+    PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < cardinality;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return values[index++];
+            }
+        };
+    }
+
+    @Override
+    long[] words() {
+        long[] words = new long[WORD_COUNT];
+        for (int i = 0; i < cardinality; i++) {
+            char value = values[i];
+            words[value >>> 6] |= 1L << value;
+        }
+        return words;
+    }
+
+    @Override
+    Container and(Container other) {
+        char[] result = new char[Math.min(cardinality, other.cardinality())];
+        int size = 0;
+        if (other instanceof ArrayContainer otherArray) {
+            int i = 0;
+            int j = 0;
+            while (i < cardinality && j < otherArray.cardinality) {
+                char value = values[i];
+                char otherValue = otherArray.values[j];
+                if (value < otherValue) {
+                    i++;
+                } else if (value > otherValue) {
+                    j++;
+                } else {
+                    result[size++] = value;
+                    i++;
+                    j++;
+                }
+            }
+        } else {
+            for (int i = 0; i < cardinality; i++) {
+                if (other.contains(values[i])) {
+                    result[size++] = values[i];
+                }
+            }
+        }
+        return new ArrayContainer(result, size);
+    }
+
+    @Override
+    Container or(Container other) {
+        if (!(other instanceof ArrayContainer otherArray)
+                || cardinality + otherArray.cardinality > MAX_ARRAY_CARDINALITY) {
+            return super.or(other);
+        }
+        char[] result = new char[cardinality + otherArray.cardinality];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < cardinality && j < otherArray.cardinality) {
+            char value = values[i];
+            char otherValue = otherArray.values[j];
+            if (value < otherValue) {
+                result[size++] = value;
+                i++;
+            } else if (value > otherValue) {
+                result[size++] = otherValue;
+                j++;
+            } else {
+                result[size++] = value;
+                i++;
+                j++;
+            }
+        }
+        while (i < cardinality) {
+            result[size++] = values[i++];
+        }
+        while (j < otherArray.cardinality) {
+            result[size++] = otherArray.values[j++];
+        }
+        return new ArrayContainer(result, size);
+    }
+
+    @Override
+    Container andNot(Container other) {
+        char[] result = new char[cardinality];
+        int size = 0;
+        for (int i = 0; i < cardinality; i++) {
+            if (!other.contains(values[i])) {
+                result[size++] = values[i];
+            }
+        }
+        return new ArrayContainer(result, size);
+    }
+
+    @Override
+    Container xor(Container other) {
+        if (!(other instanceof ArrayContainer otherArray)
+                || cardinality + otherArray.cardinality > MAX_ARRAY_CARDINALITY) {
+            return super.xor(other);
+        }
+        char[] result = new char[cardinality + otherArray.cardinality];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < cardinality && j < otherArray.cardinality) {
+            char value = values[i];
+            char otherValue = otherArray.values[j];
+            if (value < otherValue) {
+                result[size++] = value;
+                i++;
+            } else if (value > otherValue) {
+                result[size++] = otherValue;
+                j++;
+            } else {
+                i++;
+                j++;
+            }
+        }
+        while (i < cardinality) {
+            result[size++] = values[i++];
+        }
+        while (j < otherArray.cardinality) {
+            result[size++] = otherArray.values[j++];
+        }
+        return new ArrayContainer(result, size);
+    }
+
+    @Override
+    int serializedSizeInBytes() {
+        return Byte.BYTES + Integer.BYTES + sizeInBytes(cardinality);
+    }
+
+    @Override
+    void serialize(ByteBuffer buffer) {
+        buffer.put(ARRAY_TYPE);
+        buffer.putInt(cardinality);
+        for (int i = 0; i < cardinality; i++) {
+            buffer.putChar(values[i]);
+        }
+    }
+
+    static ArrayContainer deserialize(ByteBuffer buffer) {
+        int cardinality = buffer.getInt();
+        // Larger arrays are never serialized, as they are bitmaps, and add() could not grow them
+        Preconditions.checkArgument(
+                cardinality > 0 && cardinality <= Math.min(MAX_ARRAY_CARDINALITY, buffer.remaining() / Character.BYTES),
+                "Array container cardinality must be > 0, at most [%s] and fit in the bytes left but was [%s].",
+                MAX_ARRAY_CARDINALITY,
+                cardinality);
+        char[] values = new char[Math.max(cardinality, INITIAL_CAPACITY)];
+        int previous = -1;
+        for (int i = 0; i < cardinality; i++) {
+            values[i] = buffer.getChar();
+            Preconditions.checkArgument(
+                    values[i] > previous,
+                    "Array container values must be strictly ascending but [%s] follows [%s].",
+                    (int) values[i],
+                    previous);
+            previous = values[i];
+        }
+        return new ArrayContainer(values, cardinality);
+    }
+}
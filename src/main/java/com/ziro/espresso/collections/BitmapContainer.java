@@ -0,0 +1,117 @@
+package com.ziro.espresso.collections;
+
+import com.google.common.base.Preconditions;
+import java.nio.ByteBuffer;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * A {@link Container} for dense chunks, keeping one bit per possible value in 1024 words.
+ */
+final class BitmapContainer extends Container {
+
+    private final long[] words;
+    private int cardinality;
+
+    BitmapContainer(long[] words, int cardinality) {
+        this.words = words;
+        this.cardinality = cardinality;
+    }
+
+    static int sizeInBytes() {
+        return Long.BYTES * WORD_COUNT;
+    }
+
+    @Override
+    int cardinality() {
+        return cardinality;
+    }
+
+    @Override
+    boolean contains(char value) {
+        return (words[value >>> 6] & (1L << value)) != 0;
+    }
+
+    @Override
+    Container add(char value) {
+        long before = words[value >>> 6];
+        long after = before | (1L << value);
+        if (before != after) {
+            words[value >>> 6] = after;
+            cardinality++;
+        }
+        return this;
+    }
+
+    @Override
+    Container remove(char value) {
+        long before = words[value >>> 6];
+        long after = before & ~(1L << value);
+        if (before == after) {
+            return this;
+        }
+        words[value >>> 6] = after;
+        cardinality--;
+        return cardinality <= MAX_ARRAY_CARDINALITY ? fromWords(words) : this;
+    }
+
+    @Override
+    Container copy() {
+        return new BitmapContainer(words.clone(), cardinality);
+    }
+
+    @Override
+    PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int wordIndex;
+            private long word = words[0];
+
+            @Override
+            public boolean hasNext() {
+                while (word == 0 && wordIndex < WORD_COUNT - 1) {
+                    word = words[++wordIndex];
+                }
+                return word != 0;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int value = wordIndex * Long.SIZE + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                return value;
+            }
+        };
+    }
+
+    @Override
+    long[] words() {
+        return words;
+    }
+
+    @Override
+    int serializedSizeInBytes() {
+        return Byte.BYTES + sizeInBytes();
+    }
+
+    @Override
+    void serialize(ByteBuffer buffer) {
+        buffer.put(BITMAP_TYPE);
+        for (long word : words) {
+            buffer.putLong(word);
+        }
+    }
+
+    static BitmapContainer deserialize(ByteBuffer buffer) {
+        long[] words = new long[WORD_COUNT];
+        int cardinality = 0;
+        for (int i = 0; i < WORD_COUNT; i++) {
+            words[i] = buffer.getLong();
+            cardinality += Long.bitCount(words[i]);
+        }
+        Preconditions.checkArgument(cardinality > 0, "Bitmap container must not be empty.");
+        return new BitmapContainer(words, cardinality);
+    }
+}
@@ -0,0 +1,523 @@
+package com.ziro.espresso.collections;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A compressed set of {@code int} values, for holding large and dense id spaces in little memory and running set
+ * operations on them word by word.
+ *
+ * <p>The layout follows the Roaring bitmap design: values are grouped by their high 16 bits into chunks of
+ * 2<sup>16</sup> possible values, and every non-empty chunk is stored in the cheapest of three containers:
+ * <ul>
+ *     <li>a sorted array of 16 bit values when the chunk holds at most 4096 values
+ *     <li>a 8 KiB bitmap when it holds more
+ *     <li>a list of runs of consecutive values, after {@link #runOptimize()}, when that is smaller still
+ * </ul>
+ *
+ * <p>Sparse ids therefore cost about 2 bytes each, dense ids about 1 bit each, and contiguous ranges a few bytes
+ * per range. {@link #and}, {@link #or}, {@link #andNot} and {@link #xor} only visit matching chunks, and combine
+ * them with merges or 64 bit word operations.
+ *
+ * <p>Values are ordered as unsigned 32 bit integers, so negative values come after all non-negative values when
+ * iterating. Instances are mutable and not thread-safe; the binary operations return new instances and never
+ * modify their operands.
+ *
+ * <p>Example usage:
+ * <pre>{@code
+ * CompressedBitmap active = CompressedBitmap.fromCollection(activeIds);
+ * CompressedBitmap flagged = CompressedBitmap.of(3, 5, 8);
+ *
+ * List<Integer> activeAndFlagged = active.and(flagged).toList();
+ * byte[] serialized = active.runOptimize().toByteArray();
+ * }</pre>
+ */
+public final class CompressedBitmap {
+
+    /**
+     * Leading bytes of the serialized form ("ZIRO"), so that unrelated data is rejected early.
+     */
+    private static final int SERIAL_COOKIE = 0x5A49524F;
+
+    /**
+     * Serialized size of the smallest chunk: its key, and an array container holding a single value.
+     */
+    private static final int MIN_SERIALIZED_CHUNK_SIZE = Character.BYTES + Byte.BYTES + Integer.BYTES + Character.BYTES;
+
+    private static final int MAX_CHUNK_COUNT = 1 << 16;
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private char[] keys;
+    private Container[] containers;
+    private int size;
+
+    /**
+     * Creates an empty bitmap.
+     */
+    public CompressedBitmap() {
+        this(new char[INITIAL_CAPACITY], new Container[INITIAL_CAPACITY], 0);
+    }
+
+    private CompressedBitmap(char[] keys, Container[] containers, int size) {
+        this.keys = keys;
+        this.containers = containers;
+        this.size = size;
+    }
+
+    /**
+     * Creates a bitmap holding the given values.
+     *
+     * @param values the values to add
+     * @return a new bitmap
+     */
+    public static CompressedBitmap of(int... values) {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        for (int value : values) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Creates a bitmap holding the given values, e.g. one of the lists passed to {@link MoreLists}.
+     *
+     * @param values the values to add
+     * @return a new bitmap
+     */
+    public static CompressedBitmap fromCollection(Collection<Integer> values) {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        for (int value : values) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Reads a bitmap written by {@link #toByteArray()}.
+     *
+     * @param bytes the serialized bitmap
+     * @return the deserialized bitmap
+     * @throws IllegalArgumentException if {@code bytes} is not a serialized bitmap, e.g. because it is truncated or
+     *     its chunks are not in order
+     */
+    public static CompressedBitmap fromByteArray(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        Preconditions.checkArgument(
+                bytes.length >= 2 * Integer.BYTES && buffer.getInt() == SERIAL_COOKIE,
+                "Bytes do not hold a serialized CompressedBitmap.");
+        int size = buffer.getInt();
+        // Checked against what the bytes can hold before anything is allocated for it
+        Preconditions.checkArgument(
+                size >= 0 && size <= Math.min(MAX_CHUNK_COUNT, buffer.remaining() / MIN_SERIALIZED_CHUNK_SIZE),
+                "Bytes do not hold a serialized CompressedBitmap of [%s] chunks.",
+                size);
+        char[] keys = new char[Math.max(size, INITIAL_CAPACITY)];
+        Container[] containers = new Container[keys.length];
+        try {
+            int previousKey = -1;
+            for (int i = 0; i < size; i++) {
+                keys[i] = buffer.getChar();
+                Preconditions.checkArgument(
+                        keys[i] > previousKey,
+                        "Chunk keys of a serialized CompressedBitmap must be strictly ascending but [%s] follows [%s].",
+                        (int) keys[i],
+                        previousKey);
+                previousKey = keys[i];
+                containers[i] = Container.deserialize(buffer);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Bytes do not hold a whole serialized CompressedBitmap.", e);
+        }
+        Preconditions.checkArgument(
+                !buffer.hasRemaining(),
+                "Bytes hold [%s] bytes after a serialized CompressedBitmap.",
+                buffer.remaining());
+        return new CompressedBitmap(keys, containers, size);
+    }
+
+    /**
+     * Adds a value to this bitmap.
+     *
+     * @param value the value to add
+     * @return true if the value was not already present
+     */
+    public boolean add(int value) {
+        char key = highBits(value);
+        int index = indexOf(key);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, key, new ArrayContainer());
+        }
+        Container container = containers[index];
+        int cardinalityBefore = container.cardinality();
+        containers[index] = container.add(lowBits(value));
+        return containers[index].cardinality() != cardinalityBefore;
+    }
+
+    /**
+     * Removes a value from this bitmap.
+     *
+     * @param value the value to remove
+     * @return true if the value was present
+     */
+    public boolean remove(int value) {
+        int index = indexOf(highBits(value));
+        if (index < 0) {
+            return false;
+        }
+        Container container = containers[index];
+        int cardinalityBefore = container.cardinality();
+        Container updated = container.remove(lowBits(value));
+        if (updated.isEmpty()) {
+            removeContainer(index);
+        } else {
+            containers[index] = updated;
+        }
+        return updated.cardinality() != cardinalityBefore;
+    }
+
+    /**
+     * Checks whether a value is present in this bitmap.
+     *
+     * @param value the value to look up
+     * @return true if the value is present
+     */
+    public boolean contains(int value) {
+        int index = indexOf(highBits(value));
+        return index >= 0 && containers[index].contains(lowBits(value));
+    }
+
+    /**
+     * Returns the number of values in this bitmap.
+     *
+     * @return the number of values, up to 2<sup>32</sup>
+     */
+    public long cardinality() {
+        long cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    /**
+     * Checks whether this bitmap holds no values.
+     *
+     * @return true if there are no values
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns a new bitmap holding the values present in both this bitmap and {@code other}.
+     *
+     * @param other the bitmap to intersect with
+     * @return the intersection
+     */
+    public CompressedBitmap and(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap(
+                new char[Math.min(size, other.size)], new Container[Math.min(size, other.size)], 0);
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.appendIfNotEmpty(keys[i], containers[i].and(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a new bitmap holding the values present in this bitmap, {@code other}, or both.
+     *
+     * @param other the bitmap to union with
+     * @return the union
+     */
+    public CompressedBitmap or(CompressedBitmap other) {
+        CompressedBitmap result =
+                new CompressedBitmap(new char[size + other.size], new Container[size + other.size], 0);
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                result.appendIfNotEmpty(keys[i], containers[i].copy());
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                result.appendIfNotEmpty(other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.appendIfNotEmpty(keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        result.appendCopies(this, i);
+        result.appendCopies(other, j);
+        return result;
+    }
+
+    /**
+     * Returns a new bitmap holding the values present in this bitmap but not in {@code other}.
+     *
+     * @param other the bitmap whose values are excluded
+     * @return the difference
+     */
+    public CompressedBitmap andNot(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap(new char[size], new Container[size], 0);
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                result.appendIfNotEmpty(keys[i], containers[i].copy());
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.appendIfNotEmpty(keys[i], containers[i].andNot(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        result.appendCopies(this, i);
+        return result;
+    }
+
+    /**
+     * Returns a new bitmap holding the values present in exactly one of this bitmap and {@code other}.
+     *
+     * @param other the bitmap to compare with
+     * @return the symmetric difference
+     */
+    public CompressedBitmap xor(CompressedBitmap other) {
+        CompressedBitmap result =
+                new CompressedBitmap(new char[size + other.size], new Container[size + other.size], 0);
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                result.appendIfNotEmpty(keys[i], containers[i].copy());
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                result.appendIfNotEmpty(other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.appendIfNotEmpty(keys[i], containers[i].xor(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        result.appendCopies(this, i);
+        result.appendCopies(other, j);
+        return result;
+    }
+
+    /**
+     * Converts every chunk to whichever of the array, bitmap or run representations is the smallest. This pays
+     * off before serializing or keeping a bitmap around for a long time, especially when it holds long ranges of
+     * consecutive values.
+     *
+     * @return this bitmap
+     */
+    public CompressedBitmap runOptimize() {
+        for (int i = 0; i < size; i++) {
+            containers[i] = containers[i].runOptimize();
+        }
+        return this;
+    }
+
+    /**
+     * Iterates over the values of this bitmap, in unsigned order.
+     *
+     * @return an iterator over the values
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int index = -1;
+            private PrimitiveIterator.OfInt values = IntStream.empty().iterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!values.hasNext() && index < size - 1) {
+                    values = containers[++index].iterator();
+                }
+                return values.hasNext();
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return keys[index] << 16 | values.nextInt();
+            }
+        };
+    }
+
+    /**
+     * Streams the values of this bitmap, in unsigned order.
+     *
+     * @return a stream of the values
+     */
+    public IntStream stream() {
+        int characteristics = Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL;
+        return StreamSupport.intStream(Spliterators.spliterator(iterator(), cardinality(), characteristics), false);
+    }
+
+    /**
+     * Returns the values of this bitmap as an array, in unsigned order.
+     *
+     * @return the values
+     */
+    public int[] toArray() {
+        int[] values = new int[Math.toIntExact(cardinality())];
+        PrimitiveIterator.OfInt iterator = iterator();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = iterator.nextInt();
+        }
+        return values;
+    }
+
+    /**
+     * Returns the values of this bitmap as a list, in unsigned order, e.g. to pass it on to {@link MoreLists}.
+     *
+     * @return the values
+     */
+    public List<Integer> toList() {
+        List<Integer> values = new ArrayList<>(Math.toIntExact(cardinality()));
+        iterator().forEachRemaining((int value) -> values.add(value));
+        return values;
+    }
+
+    /**
+     * Returns the number of bytes {@link #toByteArray()} will produce.
+     *
+     * @return the serialized size
+     */
+    public int serializedSizeInBytes() {
+        int serializedSize = 2 * Integer.BYTES;
+        for (int i = 0; i < size; i++) {
+            serializedSize += Character.BYTES + containers[i].serializedSizeInBytes();
+        }
+        return serializedSize;
+    }
+
+    /**
+     * Serializes this bitmap in a compact binary form that can be read back with {@link #fromByteArray(byte[])}.
+     * Call {@link #runOptimize()} first to get the smallest output.
+     *
+     * @return the serialized bitmap
+     */
+    public byte[] toByteArray() {
+        ByteBuffer buffer = ByteBuffer.allocate(serializedSizeInBytes());
+        buffer.putInt(SERIAL_COOKIE);
+        buffer.putInt(size);
+        for (int i = 0; i < size; i++) {
+            buffer.putChar(keys[i]);
+            containers[i].serialize(buffer);
+        }
+        return buffer.array();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CompressedBitmap other) || size != other.size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (keys[i] != other.keys[i] || !containers[i].contentEquals(other.containers[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = 0;
+        PrimitiveIterator.OfInt values = iterator();
+        while (values.hasNext()) {
+            hashCode = 31 * hashCode + values.nextInt();
+        }
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("cardinality", cardinality())
+                .add("chunks", size)
+                .toString();
+    }
+
+    private int indexOf(char key) {
+        // The last chunk is the most likely target when values are added in order
+        if (size > 0 && keys[size - 1] == key) {
+            return size - 1;
+        }
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insertContainer(int index, char key, Container container) {
+        if (size == keys.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, 2 * size);
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    private void removeContainer(int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+        containers[--size] = null;
+    }
+
+    private void appendIfNotEmpty(char key, Container container) {
+        if (!container.isEmpty()) {
+            keys[size] = key;
+            containers[size] = container;
+            size++;
+        }
+    }
+
+    private void appendCopies(CompressedBitmap source, int from) {
+        for (int i = from; i < source.size; i++) {
+            appendIfNotEmpty(source.keys[i], source.containers[i].copy());
+        }
+    }
+
+    private static char highBits(int value) {
+        return (char) (value >>> 16);
+    }
+
+    private static char lowBits(int value) {
+        return (char) value;
+    }
+}
@@ -0,0 +1,169 @@
+package com.ziro.espresso.collections;
+
+import java.nio.ByteBuffer;
+import java.util.PrimitiveIterator;
+
+/**
+ * One 2<sup>16</sup> value chunk of a {@link CompressedBitmap}, holding the low 16 bits of the values that share
+ * the same high 16 bits.
+ *
+ * <p>There are three representations, and operations return whichever one suits their result:
+ * <ul>
+ *     <li>{@link ArrayContainer} keeps a sorted array of values and is used for sparse chunks of up to
+ *     {@value #MAX_ARRAY_CARDINALITY} values
+ *     <li>{@link BitmapContainer} keeps one bit per possible value and is used for dense chunks
+ *     <li>{@link RunContainer} keeps runs of consecutive values, and is only produced by {@link #runOptimize()}
+ * </ul>
+ *
+ * <p>Containers are mutable: {@link #add(char)} and {@link #remove(char)} update the container in place when they
+ * can, and otherwise return a converted replacement. Binary operations never modify their operands.
+ */
+abstract class Container {
+
+    /**
+     * Largest cardinality kept as an {@link ArrayContainer}. At this size a sorted {@code char[]} takes the same
+     * 8 KiB as a full bitmap.
+     */
+    static final int MAX_ARRAY_CARDINALITY = 4096;
+
+    static final int WORD_COUNT = (1 << 16) / Long.SIZE;
+
+    static final byte ARRAY_TYPE = 1;
+    static final byte BITMAP_TYPE = 2;
+    static final byte RUN_TYPE = 3;
+
+    abstract int cardinality();
+
+    abstract boolean contains(char value);
+
+    abstract Container add(char value);
+
+    abstract Container remove(char value);
+
+    abstract Container copy();
+
+    /**
+     * Iterates over the values of this container, in ascending order.
+     */
+    abstract PrimitiveIterator.OfInt iterator();
+
+    /**
+     * Returns this container as 1024 words of bits. The returned array may be the container's own storage and
+     * must not be modified.
+     */
+    abstract long[] words();
+
+    abstract int serializedSizeInBytes();
+
+    abstract void serialize(ByteBuffer buffer);
+
+    boolean isEmpty() {
+        return cardinality() == 0;
+    }
+
+    Container and(Container other) {
+        if (other instanceof ArrayContainer) {
+            return other.and(this);
+        }
+        long[] words = words();
+        long[] otherWords = other.words();
+        long[] result = new long[WORD_COUNT];
+        for (int i = 0; i < WORD_COUNT; i++) {
+            result[i] = words[i] & otherWords[i];
+        }
+        return fromWords(result);
+    }
+
+    Container or(Container other) {
+        long[] words = words();
+        long[] otherWords = other.words();
+        long[] result = new long[WORD_COUNT];
+        for (int i = 0; i < WORD_COUNT; i++) {
+            result[i] = words[i] | otherWords[i];
+        }
+        return fromWords(result);
+    }
+
+    Container andNot(Container other) {
+        long[] words = words();
+        long[] otherWords = other.words();
+        long[] result = new long[WORD_COUNT];
+        for (int i = 0; i < WORD_COUNT; i++) {
+            result[i] = words[i] & ~otherWords[i];
+        }
+        return fromWords(result);
+    }
+
+    Container xor(Container other) {
+        long[] words = words();
+        long[] otherWords = other.words();
+        long[] result = new long[WORD_COUNT];
+        for (int i = 0; i < WORD_COUNT; i++) {
+            result[i] = words[i] ^ otherWords[i];
+        }
+        return fromWords(result);
+    }
+
+    /**
+     * Returns the smallest of the array, bitmap and run representations of this container.
+     */
+    Container runOptimize() {
+        int runCount = RunContainer.countRuns(this);
+        int runSize = RunContainer.sizeInBytes(runCount);
+        int cardinality = cardinality();
+        int plainSize = cardinality <= MAX_ARRAY_CARDINALITY
+                ? ArrayContainer.sizeInBytes(cardinality)
+                : BitmapContainer.sizeInBytes();
+        if (runSize < plainSize) {
+            return this instanceof RunContainer ? this : RunContainer.from(this, runCount);
+        }
+        return this instanceof RunContainer ? fromWords(words()) : this;
+    }
+
+    boolean contentEquals(Container other) {
+        if (cardinality() != other.cardinality()) {
+            return false;
+        }
+        PrimitiveIterator.OfInt values = iterator();
+        PrimitiveIterator.OfInt otherValues = other.iterator();
+        while (values.hasNext()) {
+            if (values.nextInt() != otherValues.nextInt()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds the most compact plain container holding the given bits, taking ownership of {@code words}.
+     */
+    static Container fromWords(long[] words) {
+        int cardinality = 0;
+        for (long word : words) {
+            cardinality += Long.bitCount(word);
+        }
+        if (cardinality > MAX_ARRAY_CARDINALITY) {
+            return new BitmapContainer(words, cardinality);
+        }
+        char[] values = new char[cardinality];
+        int index = 0;
+        for (int i = 0; i < WORD_COUNT; i++) {
+            long word = words[i];
+            while (word != 0) {
+                values[index++] = (char) (i * Long.SIZE + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return new ArrayContainer(values, cardinality);
+    }
+
+    static Container deserialize(ByteBuffer buffer) {
+        byte type = buffer.get();
+        return switch (type) {
+            case ARRAY_TYPE -> ArrayContainer.deserialize(buffer);
+            case BITMAP_TYPE -> BitmapContainer.deserialize(buffer);
+            case RUN_TYPE -> RunContainer.deserialize(buffer);
+            default -> throw new IllegalArgumentException("Unknown container type [%s].".formatted(type));
+        };
+    }
+}
@@ -0,0 +1,120 @@
+package com.ziro.espresso.collections;
+
+/**
+ * A minimal open-addressing hash set of primitive {@code int} values.
+ *
+ * <p>Values are stored unboxed in a single {@code int[]} table with linear probing, so each element costs
+ * around 5 to 11 bytes of heap instead of the 40 or so bytes of a boxed value plus node in a
+ * {@code HashSet<Integer>}. Zero is used as the empty-slot marker and is tracked separately. Only the operations
+ * needed by {@link MoreIntArrays} are supported; elements cannot be removed.
+ *
+ * <p>This class is not thread-safe.
+ */
+final class IntHashSet {
+
+    private static final int MIN_CAPACITY = 4;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private int[] table;
+    private int mask;
+    private int resizeThreshold;
+    private int size;
+    private boolean containsZero;
+
+    /**
+     * Creates a set able to hold {@code expectedSize} elements without resizing.
+     */
+    IntHashSet(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    boolean add(int value) {
+        if (value == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int index = indexOf(value);
+        if (table[index] == value) {
+            return false;
+        }
+        table[index] = value;
+        if (++size > resizeThreshold) {
+            rehash(table.length << 1);
+        }
+        return true;
+    }
+
+    boolean contains(int value) {
+        if (value == 0) {
+            return containsZero;
+        }
+        return table[indexOf(value)] == value;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int[] toArray() {
+        int[] values = new int[size];
+        int i = 0;
+        if (containsZero) {
+            values[i++] = 0;
+        }
+        for (int value : table) {
+            if (value != 0) {
+                values[i++] = value;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Returns the slot holding {@code value}, or the empty slot where it would be inserted.
+     */
+    private int indexOf(int value) {
+        int index = mix(value) & mask;
+        while (table[index] != 0 && table[index] != value) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void rehash(int newCapacity) {
+        int[] oldTable = table;
+        allocate(newCapacity);
+        for (int value : oldTable) {
+            if (value != 0) {
+                table[indexOf(value)] = value;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        table = new int[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        long capacity = Math.max(MIN_CAPACITY, (long) Math.ceil(expectedSize / (double) LOAD_FACTOR) + 1);
+        return Integer.highestOneBit((int) Math.min(capacity - 1, MAX_CAPACITY - 1)) << 1;
+    }
+
+    /**
+     * Spreads the bits of {@code value} so that sequential ids do not cluster in the table.
+     */
+    private static int mix(int value) {
+        int hash = value * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
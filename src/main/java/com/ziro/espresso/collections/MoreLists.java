@@ -1,9 +1,19 @@
 package com.ziro.espresso.collections;
 
+import com.google.common.collect.Sets;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.RandomAccess;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 /**
  * Utility class providing additional list operations beyond those available in the Java Collections Framework.
@@ -18,6 +28,12 @@ import java.util.Set;
  *     <li>Ensure no duplicate elements in the result
  * </ul>
  *
+ * <p>The exceptions are {@link #sortedUnion(List, Comparator)} and {@link #sortedIntersection(List, Comparator)},
+ * which expect inputs that are already sorted, compare elements with the supplied {@link Comparator} instead of
+ * hashing them, and return a sorted result. Likewise, {@link #lazyUnion(Collection)} and
+ * {@link #lazyIntersection(Collection)} return lazy streams in encounter order instead of new lists, for consumers
+ * that only need part of the result.
+ *
  * <p>Example usage:
  * <pre>{@code
  * List<String> list1 = Arrays.asList("a", "b", "c");
@@ -48,6 +64,25 @@ public class MoreLists {
         return new ArrayList<>(set);
     }
 
+    /**
+     * Return a list containing the union of the provided list of elements, using the given pool for large inputs.
+     *
+     * <p>The result is the same as {@link #union(List)}: it is guaranteed to not contain duplicate values, there
+     * is no guarantee of ordering of elements, and the operation relies on hashCode() for comparison of objects.
+     *
+     * <p>When the lists hold fewer than {@value PartitionedSetOperations#PARALLEL_THRESHOLD} elements in total,
+     * this simply delegates to {@link #union(List)} on the calling thread. Otherwise the elements are partitioned
+     * by hash, each partition is reduced to a set by its own task on {@code pool}, and the disjoint partial
+     * results are concatenated without any shared lock.
+     *
+     * @param lists List containing the lists that we want to union.
+     * @param pool The pool to run the partitioned work on, e.g. {@link ForkJoinPool#commonPool()}.
+     * @return The resulting list.
+     */
+    public static <E> List<E> union(List<List<E>> lists, ForkJoinPool pool) {
+        return PartitionedSetOperations.union(lists, pool);
+    }
+
     /**
      * Return a list containing the intersection of the provided list of elements.
      *
@@ -57,13 +92,344 @@ public class MoreLists {
      *
      * @param lists List containing the lists that we want to intersect.
      * @return The resulting list.
+     * @see #intersection(Collection)
      */
     public static <E> List<E> intersection(List<List<E>> lists) {
+        return intersection((Collection<? extends Collection<E>>) lists);
+    }
+
+    /**
+     * Return a list containing the intersection of the provided list of elements, using the given pool for large
+     * inputs.
+     *
+     * <p>The result is the same as {@link #intersection(List)}: it is guaranteed to not contain duplicate values,
+     * there is no guarantee of ordering of elements, and the operation relies on hashCode() for comparison of
+     * objects.
+     *
+     * <p>When the lists hold fewer than {@value PartitionedSetOperations#PARALLEL_THRESHOLD} elements in total,
+     * this simply delegates to {@link #intersection(List)} on the calling thread. Otherwise the elements are
+     * partitioned by hash, each partition is intersected by its own task on {@code pool}, and the disjoint partial
+     * results are concatenated without any shared lock.
+     *
+     * @param lists List containing the lists that we want to intersect.
+     * @param pool The pool to run the partitioned work on, e.g. {@link ForkJoinPool#commonPool()}.
+     * @return The resulting list.
+     */
+    public static <E> List<E> intersection(List<List<E>> lists, ForkJoinPool pool) {
+        return PartitionedSetOperations.intersection(lists, pool);
+    }
+
+    /**
+     * Return a list containing the intersection of the provided collections of elements.
+     *
+     * <p>The returned intersection is guaranteed to not contain duplicate values.
+     * There is no guarantee of ordering of elements.
+     * The operation relies on hashCode() for comparison of objects.
+     *
+     * <p>The intersection is seeded from the smallest input and the remaining inputs are visited in
+     * increasing order of size, so the working set only ever shrinks. Inputs that are already a {@link Set}
+     * are probed through their own {@code contains()}, while any other collection is scanned once against
+     * the working set; no input is ever searched linearly. The operation stops as soon as the working set
+     * becomes empty.
+     *
+     * @param collections Collection containing the collections that we want to intersect.
+     * @return The resulting list.
+     */
+    public static <E> List<E> intersection(Collection<? extends Collection<E>> collections) {
+        if (collections.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<Collection<E>> bySize = new ArrayList<>(collections);
+        bySize.sort(Comparator.comparingInt(Collection::size));
+
+        Set<E> retained = new HashSet<>(bySize.get(0));
+        for (int i = 1; i < bySize.size() && !retained.isEmpty(); i++) {
+            retained = retain(retained, bySize.get(i));
+        }
+        return new ArrayList<>(retained);
+    }
+
+    /**
+     * Return a lazy stream over the union of the provided collections of elements.
+     *
+     * <p>The stream is guaranteed to not contain duplicate values. Elements are produced in encounter order: all
+     * the elements of the first collection, then the new elements of the second one, and so on.
+     * The operation relies on hashCode() for comparison of objects.
+     *
+     * <p>Unlike {@link #union(List)}, nothing is computed up front and no result list is built: duplicates are
+     * dropped as the stream is consumed, so a consumer that stops early, e.g. with {@code limit()} or
+     * {@code findFirst()}, only pays for the elements it actually pulled. The input collections must not be
+     * modified while the stream is being consumed.
+     *
+     * @param collections Collection containing the collections that we want to union.
+     * @return A sequential stream over the union.
+     */
+    public static <E> Stream<E> lazyUnion(Collection<? extends Collection<E>> collections) {
+        return collections.stream().flatMap(Collection::stream).distinct();
+    }
+
+    /**
+     * Return a lazy stream over the intersection of the provided collections of elements.
+     *
+     * <p>The stream is guaranteed to not contain duplicate values. Elements are produced in the encounter order of
+     * the smallest collection.
+     * The operation relies on hashCode() for comparison of objects.
+     *
+     * <p>Unlike {@link #intersection(Collection)}, nothing is computed up front and no result list is built. The
+     * smallest collection is streamed, and each of its elements is probed against the other collections on
+     * demand: a {@link Set} is probed directly, while any other collection is only read as far as needed to find
+     * the element, remembering what it has read so far. A consumer that stops early therefore leaves most of the
+     * inputs untouched. The input collections must not be modified while the stream is being consumed.
+     *
+     * @param collections Collection containing the collections that we want to intersect.
+     * @return A sequential stream over the intersection.
+     */
+    public static <E> Stream<E> lazyIntersection(Collection<? extends Collection<E>> collections) {
+        if (collections.isEmpty()) {
+            return Stream.empty();
+        }
+        List<Collection<E>> bySize = new ArrayList<>(collections);
+        bySize.sort(Comparator.comparingInt(Collection::size));
+
+        List<Predicate<E>> memberships = new ArrayList<>(bySize.size() - 1);
+        for (Collection<E> collection : bySize.subList(1, bySize.size())) {
+            memberships.add(collection instanceof Set ? collection::contains : new LazyMembership<>(collection));
+        }
+        return bySize.get(0).stream().distinct().filter(element -> {
+            for (Predicate<E> membership : memberships) {
+                if (!membership.test(element)) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Count, in a single pass, how many of the provided collections each element appears in.
+     *
+     * <p>All the inputs are traversed once into one hash table, from which threshold membership, union,
+     * intersection, difference and symmetric difference can then be read without traversing the inputs again.
+     * Prefer this over calling several of the other operations of this class on the same inputs.
+     * The operation relies on hashCode() for comparison of objects.
+     *
+     * @param collections Collection containing the collections whose elements we want to count.
+     * @return The occurrence counts.
+     */
+    public static <E> Occurrences<E> occurrences(Collection<? extends Collection<E>> collections) {
+        return Occurrences.count(collections);
+    }
+
+    /**
+     * Return a list containing the elements present in at least {@code k} of the provided collections.
+     *
+     * <p>The returned list is guaranteed to not contain duplicate values.
+     * There is no guarantee of ordering of elements.
+     * The operation relies on hashCode() for comparison of objects.
+     *
+     * @param collections Collection containing the collections that we want to count elements in.
+     * @param k The minimum number of collections an element must appear in, at least 1.
+     * @return The resulting list.
+     * @see #occurrences(Collection)
+     */
+    public static <E> List<E> atLeast(Collection<? extends Collection<E>> collections, int k) {
+        return occurrences(collections).atLeast(k);
+    }
+
+    /**
+     * Return a sorted list containing the union of the provided sorted lists of elements.
+     *
+     * <p>Every input list must already be sorted in ascending order according to {@code comparator}; if it is
+     * not, the result is undefined. Input lists may contain duplicates.
+     *
+     * <p>The lists are combined with a k-way merge over a heap of cursors, one per list, so the operation runs in
+     * O(n log k) for n elements spread over k lists, without hashing and without any intermediate {@link Set}.
+     * Two elements are considered duplicates when {@code comparator} returns 0 for them, in which case the first
+     * one encountered is kept.
+     *
+     * @param lists List containing the sorted lists that we want to union.
+     * @param comparator The comparator the input lists are sorted by.
+     * @return The resulting list, sorted according to {@code comparator}.
+     */
+    public static <E> List<E> sortedUnion(List<List<E>> lists, Comparator<? super E> comparator) {
+        PriorityQueue<SortedCursor<E>> cursors =
+                new PriorityQueue<>(Math.max(1, lists.size()), (a, b) -> comparator.compare(a.head(), b.head()));
+        int largestSize = 0;
+        for (List<E> list : lists) {
+            if (!list.isEmpty()) {
+                cursors.add(new SortedCursor<>(list.iterator()));
+                largestSize = Math.max(largestSize, list.size());
+            }
+        }
+
+        List<E> union = new ArrayList<>(largestSize);
+        while (!cursors.isEmpty()) {
+            SortedCursor<E> cursor = cursors.poll();
+            E head = cursor.head();
+            if (union.isEmpty() || comparator.compare(union.get(union.size() - 1), head) != 0) {
+                union.add(head);
+            }
+            if (cursor.advance()) {
+                cursors.add(cursor);
+            }
+        }
+        return union;
+    }
+
+    /**
+     * Return a sorted list containing the intersection of the provided sorted lists of elements.
+     *
+     * <p>Every input list must already be sorted in ascending order according to {@code comparator}; if it is
+     * not, the result is undefined. Input lists may contain duplicates. Lists that do not implement
+     * {@link RandomAccess} are copied once before being searched.
+     *
+     * <p>Candidates are taken from the smallest list, and each other list is searched from where its previous
+     * search stopped with an exponential (galloping) search, so runs of elements that cannot match are skipped
+     * in logarithmic time. Whenever another list is ahead of the candidate, the smallest list gallops forward to
+     * catch up. The operation runs without hashing and without any intermediate {@link Set}, and stops as soon
+     * as any list is exhausted. Two elements are considered equal when {@code comparator} returns 0 for them.
+     *
+     * @param lists List containing the sorted lists that we want to intersect.
+     * @param comparator The comparator the input lists are sorted by.
+     * @return The resulting list, sorted according to {@code comparator}.
+     */
+    public static <E> List<E> sortedIntersection(List<List<E>> lists, Comparator<? super E> comparator) {
         if (lists.isEmpty()) {
             return new ArrayList<>();
         }
-        Set<E> set = new HashSet<>(lists.get(0));
-        lists.forEach(set::retainAll);
-        return new ArrayList<>(set);
+
+        List<List<E>> bySize = new ArrayList<>(lists.size());
+        for (List<E> list : lists) {
+            bySize.add(list instanceof RandomAccess ? list : new ArrayList<>(list));
+        }
+        bySize.sort(Comparator.comparingInt(List::size));
+
+        List<E> smallest = bySize.get(0);
+        int[] positions = new int[bySize.size()];
+        List<E> intersection = new ArrayList<>();
+        candidates:
+        while (positions[0] < smallest.size()) {
+            E candidate = smallest.get(positions[0]);
+            for (int i = 1; i < bySize.size(); i++) {
+                List<E> list = bySize.get(i);
+                positions[i] = gallop(list, positions[i], candidate, comparator);
+                if (positions[i] == list.size()) {
+                    return intersection;
+                }
+                E other = list.get(positions[i]);
+                if (comparator.compare(other, candidate) > 0) {
+                    positions[0] = gallop(smallest, positions[0], other, comparator);
+                    continue candidates;
+                }
+            }
+            intersection.add(candidate);
+            do {
+                positions[0]++;
+            } while (positions[0] < smallest.size() && comparator.compare(smallest.get(positions[0]), candidate) == 0);
+        }
+        return intersection;
+    }
+
+    /**
+     * Returns the index of the first element at or after {@code from} that is not less than {@code key}, or the
+     * size of the list if there is none. Probes at exponentially growing distances before binary searching the
+     * last interval, so the cost is logarithmic in the distance travelled rather than in the size of the list.
+     */
+    private static <E> int gallop(List<E> list, int from, E key, Comparator<? super E> comparator) {
+        int size = list.size();
+        if (from >= size || comparator.compare(list.get(from), key) >= 0) {
+            return from;
+        }
+        // Invariant: list[low] < key, and list[high] >= key (or high == size)
+        int low = from;
+        int step = 1;
+        int high = from + step;
+        while (high < size && comparator.compare(list.get(high), key) < 0) {
+            low = high;
+            step <<= 1;
+            high = size - low > step ? low + step : size;
+        }
+        while (high - low > 1) {
+            int mid = (low + high) >>> 1;
+            if (comparator.compare(list.get(mid), key) < 0) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return high;
+    }
+
+    private static <E> Set<E> retain(Set<E> retained, Collection<E> collection) {
+        if (collection instanceof Set) {
+            retained.removeIf(element -> !collection.contains(element));
+            return retained;
+        }
+        Set<E> stillRetained = Sets.newHashSetWithExpectedSize(retained.size());
+        for (E element : collection) {
+            if (retained.contains(element)) {
+                stillRetained.add(element);
+                if (stillRetained.size() == retained.size()) {
+                    break;
+                }
+            }
+        }
+        return stillRetained;
+    }
+
+    /**
+     * A cursor over a sorted list, exposing the element it currently points to.
+     */
+    private static final class SortedCursor<E> {
+
+        private final Iterator<E> iterator;
+        private E head;
+
+        private SortedCursor(Iterator<E> iterator) {
+            this.iterator = iterator;
+            this.head = iterator.next();
+        }
+
+        private E head() {
+            return head;
+        }
+
+        private boolean advance() {
+            if (!iterator.hasNext()) {
+                return false;
+            }
+            head = iterator.next();
+            return true;
+        }
+    }
+
+    /**
+     * Membership test over a collection that reads the collection incrementally, hashing only the elements it
+     * had to go through so far.
+     */
+    private static final class LazyMembership<E> implements Predicate<E> {
+
+        private final Iterator<E> remaining;
+        private final Set<E> read = new HashSet<>();
+
+        private LazyMembership(Collection<E> collection) {
+            this.remaining = collection.iterator();
+        }
+
+        @Override
+        public boolean test(E element) {
+            if (read.contains(element)) {
+                return true;
+            }
+            while (remaining.hasNext()) {
+                E next = remaining.next();
+                read.add(next);
+                if (Objects.equals(next, element)) {
+                    return true;
+                }
+            }
+            return false;
+        }
     }
 }
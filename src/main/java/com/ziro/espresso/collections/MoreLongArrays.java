@@ -0,0 +1,95 @@
+package com.ziro.espresso.collections;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Primitive {@code long} counterpart of {@link MoreLists}, performing set operations (union, intersection) on
+ * {@code long[]} arrays without boxing.
+ *
+ * <p>The operations are backed by an open-addressing hash set that stores values directly in a {@code long[]}
+ * table, which makes them considerably lighter on allocation and heap than running {@link MoreLists} over
+ * {@code List<Long>}, and suits large batches of numeric ids.
+ *
+ * <p>All operations in this class:
+ * <ul>
+ *     <li>Return new arrays, never modifying the input arrays
+ *     <li>Do not guarantee any specific ordering of elements in the result
+ *     <li>Ensure no duplicate elements in the result
+ * </ul>
+ *
+ * <p>Example usage:
+ * <pre>{@code
+ * long[] ids1 = {1L, 2L, 3L};
+ * long[] ids2 = {2L, 3L, 4L};
+ *
+ * long[] union = MoreLongArrays.union(List.of(ids1, ids2));               // [1, 2, 3, 4]
+ * long[] intersection = MoreLongArrays.intersection(List.of(ids1, ids2)); // [2, 3]
+ * }</pre>
+ */
+public final class MoreLongArrays {
+
+    private MoreLongArrays() {}
+
+    /**
+     * Return an array containing the union of the provided arrays of values.
+     *
+     * <p>The returned union is guaranteed to not contain duplicate values.
+     * There is no guarantee of ordering of values.
+     *
+     * @param arrays List containing the arrays that we want to union.
+     * @return The resulting array.
+     */
+    public static long[] union(List<long[]> arrays) {
+        int expectedSize = 0;
+        for (long[] array : arrays) {
+            expectedSize = Math.max(expectedSize, array.length);
+        }
+        LongHashSet union = new LongHashSet(expectedSize);
+        for (long[] array : arrays) {
+            for (long value : array) {
+                union.add(value);
+            }
+        }
+        return union.toArray();
+    }
+
+    /**
+     * Return an array containing the intersection of the provided arrays of values.
+     *
+     * <p>The returned intersection is guaranteed to not contain duplicate values.
+     * There is no guarantee of ordering of values.
+     *
+     * <p>As with {@link MoreLists#intersection(java.util.Collection)}, the intersection is seeded from the
+     * smallest array, the remaining arrays are scanned in increasing order of length, and the operation stops as
+     * soon as nothing is left.
+     *
+     * @param arrays List containing the arrays that we want to intersect.
+     * @return The resulting array.
+     */
+    public static long[] intersection(List<long[]> arrays) {
+        if (arrays.isEmpty()) {
+            return new long[0];
+        }
+
+        List<long[]> byLength = new ArrayList<>(arrays);
+        byLength.sort(Comparator.comparingInt(array -> array.length));
+
+        long[] smallest = byLength.get(0);
+        LongHashSet retained = new LongHashSet(smallest.length);
+        for (long value : smallest) {
+            retained.add(value);
+        }
+        for (int i = 1; i < byLength.size() && !retained.isEmpty(); i++) {
+            LongHashSet stillRetained = new LongHashSet(retained.size());
+            for (long value : byLength.get(i)) {
+                if (retained.contains(value) && stillRetained.add(value) && stillRetained.size() == retained.size()) {
+                    break;
+                }
+            }
+            retained = stillRetained;
+        }
+        return retained.toArray();
+    }
+}
@@ -0,0 +1,182 @@
+package com.ziro.espresso.collections;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Per element occurrence counts across several collections, computed in a single pass by
+ * {@link MoreLists#occurrences(Collection)}.
+ *
+ * <p>For every distinct element, this records in how many of the input collections it appears (an element
+ * repeated within one collection is counted once for it) and whether it appears in the first one. From that one
+ * table, several multi-way set operations can be read without going over the inputs again:
+ * <ul>
+ *     <li>{@link #atLeast(int)} and {@link #exactly(int)}, for elements present in k of the n collections
+ *     <li>{@link #union()} and {@link #intersection()}, the k = 1 and k = n special cases
+ *     <li>{@link #difference()} and {@link #symmetricDifference()}
+ * </ul>
+ *
+ * <p>As with the other {@link MoreLists} operations, the returned lists never contain duplicates, there is no
+ * guarantee of ordering of elements, and elements are compared with hashCode() and equals().
+ *
+ * <p>Example usage:
+ * <pre>{@code
+ * Occurrences<Long> occurrences = MoreLists.occurrences(List.of(crmIds, billingIds, ledgerIds));
+ *
+ * List<Long> inMostSystems = occurrences.atLeast(2);
+ * List<Long> onlyInCrm = occurrences.difference();
+ * }</pre>
+ *
+ * @param <E> The type of elements
+ */
+public final class Occurrences<E> {
+
+    private final int collectionCount;
+    private final Map<E, Occurrence> occurrences;
+
+    private Occurrences(int collectionCount, Map<E, Occurrence> occurrences) {
+        this.collectionCount = collectionCount;
+        this.occurrences = occurrences;
+    }
+
+    static <E> Occurrences<E> count(Collection<? extends Collection<E>> collections) {
+        Map<E, Occurrence> occurrences = new HashMap<>();
+        int collectionIndex = 0;
+        for (Collection<E> collection : collections) {
+            for (E element : collection) {
+                Occurrence occurrence = occurrences.get(element);
+                if (occurrence == null) {
+                    occurrences.put(element, new Occurrence(collectionIndex));
+                } else if (occurrence.lastCollectionIndex != collectionIndex) {
+                    occurrence.lastCollectionIndex = collectionIndex;
+                    occurrence.count++;
+                }
+            }
+            collectionIndex++;
+        }
+        return new Occurrences<>(collectionIndex, occurrences);
+    }
+
+    /**
+     * Returns the number of collections that were counted.
+     *
+     * @return the number of input collections
+     */
+    public int collectionCount() {
+        return collectionCount;
+    }
+
+    /**
+     * Returns the number of collections the given element appears in.
+     *
+     * @param element the element to look up
+     * @return the number of input collections containing the element, 0 if none
+     */
+    public int count(E element) {
+        Occurrence occurrence = occurrences.get(element);
+        return occurrence == null ? 0 : occurrence.count;
+    }
+
+    /**
+     * Returns the elements that appear in at least {@code k} of the collections.
+     *
+     * @param k the minimum number of collections, at least 1
+     * @return the resulting list
+     * @throws IllegalArgumentException if {@code k} is lower than 1
+     */
+    public List<E> atLeast(int k) {
+        Preconditions.checkArgument(k >= 1, "k must be >= 1 but was [%s].", k);
+        return select(occurrence -> occurrence.count >= k);
+    }
+
+    /**
+     * Returns the elements that appear in exactly {@code k} of the collections. With {@code k = 1}, these are the
+     * elements unique to one of the collections.
+     *
+     * @param k the number of collections, at least 1
+     * @return the resulting list
+     * @throws IllegalArgumentException if {@code k} is lower than 1
+     */
+    public List<E> exactly(int k) {
+        Preconditions.checkArgument(k >= 1, "k must be >= 1 but was [%s].", k);
+        return select(occurrence -> occurrence.count == k);
+    }
+
+    /**
+     * Returns the elements that appear in any of the collections.
+     *
+     * @return the union
+     */
+    public List<E> union() {
+        return new ArrayList<>(occurrences.keySet());
+    }
+
+    /**
+     * Returns the elements that appear in every collection.
+     *
+     * @return the intersection, empty if there were no collections
+     */
+    public List<E> intersection() {
+        return collectionCount == 0 ? new ArrayList<>() : atLeast(collectionCount);
+    }
+
+    /**
+     * Returns the elements of the first collection that appear in none of the others.
+     *
+     * @return the difference
+     */
+    public List<E> difference() {
+        return select(occurrence -> occurrence.firstCollectionIndex == 0 && occurrence.count == 1);
+    }
+
+    /**
+     * Returns the elements that appear in an odd number of collections, which is the symmetric difference of all
+     * the collections taken pairwise. For two collections, these are the elements present in only one of them;
+     * for elements present in exactly one of any number of collections, use {@link #exactly(int)} with 1.
+     *
+     * @return the symmetric difference
+     */
+    public List<E> symmetricDifference() {
+        return select(occurrence -> occurrence.count % 2 == 1);
+    }
+
+    /**
+     * Returns, for every element, the number of collections it appears in.
+     *
+     * @return a new map from element to count
+     */
+    public Map<E, Integer> counts() {
+        Map<E, Integer> counts = Maps.newHashMapWithExpectedSize(occurrences.size());
+        occurrences.forEach((element, occurrence) -> counts.put(element, occurrence.count));
+        return counts;
+    }
+
+    private List<E> select(Predicate<Occurrence> predicate) {
+        List<E> selected = new ArrayList<>();
+        occurrences.forEach((element, occurrence) -> {
+            if (predicate.test(occurrence)) {
+                selected.add(element);
+            }
+        });
+        return selected;
+    }
+
+    private static final class Occurrence {
+
+        private final int firstCollectionIndex;
+        private int lastCollectionIndex;
+        private int count;
+
+        private Occurrence(int collectionIndex) {
+            this.firstCollectionIndex = collectionIndex;
+            this.lastCollectionIndex = collectionIndex;
+            this.count = 1;
+        }
+    }
+}
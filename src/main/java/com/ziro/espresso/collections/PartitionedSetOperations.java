@@ -0,0 +1,153 @@
+package com.ziro.espresso.collections;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Fork/join implementation of the {@link MoreLists} set operations for very large inputs.
+ *
+ * <p>Both operations run in two phases on the supplied pool:
+ * <ol>
+ *     <li>Scatter: the input lists are cut into chunks, and every chunk is split into one bucket per partition
+ *     based on the hash of each element. Each task only writes to the buckets of its own chunk.
+ *     <li>Gather: every partition is reduced to a set on its own. Equal elements always land in the same
+ *     partition, so the partial results are disjoint and are simply concatenated.
+ * </ol>
+ *
+ * <p>No lock or concurrent collection is shared between tasks; the only coordination is joining each phase.
+ */
+final class PartitionedSetOperations {
+
+    /**
+     * Number of input elements below which the sequential implementation is used.
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private static final int CHUNK_SIZE = 1 << 14;
+    private static final int PARTITIONS_PER_THREAD = 4;
+
+    private PartitionedSetOperations() {}
+
+    static <E> List<E> union(List<List<E>> lists, ForkJoinPool pool) {
+        if (totalSize(lists) < PARALLEL_THRESHOLD) {
+            return MoreLists.union(lists);
+        }
+        List<Chunk<E>> chunks = scatter(lists, pool);
+        return gather(pool, partition -> {
+            Set<E> union = new HashSet<>();
+            for (Chunk<E> chunk : chunks) {
+                union.addAll(chunk.bucket(partition));
+            }
+            return union;
+        });
+    }
+
+    static <E> List<E> intersection(List<List<E>> lists, ForkJoinPool pool) {
+        if (totalSize(lists) < PARALLEL_THRESHOLD) {
+            return MoreLists.intersection(lists);
+        }
+        List<Chunk<E>> chunks = scatter(lists, pool);
+        return gather(pool, partition -> {
+            List<List<E>> partitionOfLists = new ArrayList<>(lists.size());
+            for (int i = 0; i < lists.size(); i++) {
+                partitionOfLists.add(new ArrayList<>());
+            }
+            for (Chunk<E> chunk : chunks) {
+                partitionOfLists.get(chunk.listIndex).addAll(chunk.bucket(partition));
+            }
+            return MoreLists.intersection(partitionOfLists);
+        });
+    }
+
+    private static <E> List<Chunk<E>> scatter(List<List<E>> lists, ForkJoinPool pool) {
+        int partitionCount = partitionCount(pool);
+        List<Chunk<E>> chunks = new ArrayList<>();
+        for (int listIndex = 0; listIndex < lists.size(); listIndex++) {
+            List<E> list = lists.get(listIndex);
+            // Sub lists of sequential lists are only cheap to walk from the start
+            int chunkSize = list instanceof RandomAccess ? CHUNK_SIZE : Math.max(1, list.size());
+            for (int from = 0; from < list.size(); from += chunkSize) {
+                List<E> elements = list.subList(from, Math.min(list.size(), from + chunkSize));
+                chunks.add(new Chunk<>(listIndex, elements, partitionCount));
+            }
+        }
+        invokeAll(
+                pool,
+                chunks.stream().map(chunk -> ForkJoinTask.adapt(chunk::split)).toList());
+        return chunks;
+    }
+
+    private static <E> List<E> gather(ForkJoinPool pool, IntFunction<Collection<E>> reducer) {
+        List<ForkJoinTask<Collection<E>>> tasks = IntStream.range(0, partitionCount(pool))
+                .mapToObj(partition -> ForkJoinTask.adapt(() -> reducer.apply(partition)))
+                .toList();
+        invokeAll(pool, tasks);
+
+        int size = 0;
+        for (ForkJoinTask<Collection<E>> task : tasks) {
+            size += task.join().size();
+        }
+        List<E> result = new ArrayList<>(size);
+        for (ForkJoinTask<Collection<E>> task : tasks) {
+            result.addAll(task.join());
+        }
+        return result;
+    }
+
+    private static void invokeAll(ForkJoinPool pool, List<? extends ForkJoinTask<?>> tasks) {
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+    }
+
+    private static int partitionCount(ForkJoinPool pool) {
+        return pool.getParallelism() * PARTITIONS_PER_THREAD;
+    }
+
+    private static long totalSize(List<? extends List<?>> lists) {
+        long size = 0;
+        for (List<?> list : lists) {
+            size += list.size();
+        }
+        return size;
+    }
+
+    /**
+     * A contiguous range of one input list, together with the buckets it is split into.
+     */
+    private static final class Chunk<E> {
+
+        private final int listIndex;
+        private final List<E> elements;
+        private final List<List<E>> buckets;
+
+        private Chunk(int listIndex, List<E> elements, int partitionCount) {
+            this.listIndex = listIndex;
+            this.elements = elements;
+            this.buckets = new ArrayList<>(partitionCount);
+            int expectedBucketSize = elements.size() / partitionCount + 1;
+            for (int i = 0; i < partitionCount; i++) {
+                buckets.add(new ArrayList<>(expectedBucketSize));
+            }
+        }
+
+        private void split() {
+            int partitionCount = buckets.size();
+            for (E element : elements) {
+                int hash = Objects.hashCode(element) * 0x9E3779B9;
+                buckets.get(Math.floorMod(hash ^ (hash >>> 16), partitionCount)).add(element);
+            }
+        }
+
+        private List<E> bucket(int partition) {
+            return buckets.get(partition);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.ziro.espresso.collections;
+
+import com.google.common.base.Preconditions;
+import java.nio.ByteBuffer;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * A {@link Container} for chunks made of long stretches of consecutive values, keeping each stretch as a
+ * {@code (start, length - 1)} pair.
+ *
+ * <p>Run containers are read-optimized: adding or removing a value converts the container back to an array or
+ * bitmap container first.
+ */
+final class RunContainer extends Container {
+
+    private final char[] runs;
+    private final int runCount;
+    private final int cardinality;
+
+    private RunContainer(char[] runs, int runCount) {
+        this.runs = runs;
+        this.runCount = runCount;
+        int total = 0;
+        for (int i = 0; i < runCount; i++) {
+            total += runs[2 * i + 1] + 1;
+        }
+        this.cardinality = total;
+    }
+
+    static int sizeInBytes(int runCount) {
+        return 2 * Character.BYTES * runCount;
+    }
+
+    static int countRuns(Container container) {
+        int runCount = 0;
+        int previous = -2;
+        PrimitiveIterator.OfInt values = container.iterator();
+        while (values.hasNext()) {
+            int value = values.nextInt();
+            if (value != previous + 1) {
+                runCount++;
+            }
+            previous = value;
+        }
+        return runCount;
+    }
+
+    static RunContainer from(Container container, int runCount) {
+        char[] runs = new char[2 * runCount];
+        int run = -1;
+        int previous = -2;
+        PrimitiveIterator.OfInt values = container.iterator();
+        while (values.hasNext()) {
+            int value = values.nextInt();
+            if (value == previous + 1) {
+                runs[2 * run + 1]++;
+            } else {
+                run++;
+                runs[2 * run] = (char) value;
+            }
+            previous = value;
+        }
+        return new RunContainer(runs, runCount);
+    }
+
+    @Override
+    int cardinality() {
+        return cardinality;
+    }
+
+    @Override
+    boolean contains(char value) {
+        int low = 0;
+        int high = runCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int start = runs[2 * mid];
+            if (value < start) {
+                high = mid - 1;
+            } else if (value > start + runs[2 * mid + 1]) {
+                low = mid + 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    Container add(char value) {
+        return contains(value) ? this : fromWords(words()).add(value);
+    }
+
+    @Override
+    Container remove(char value) {
+        return contains(value) ? fromWords(words()).remove(value) : this;
+    }
+
+    @Override
+    Container copy() {
+        // Run containers are never modified in place
+        return this;
+    }
+
+    @Override
+    PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int run;
+            private int offset;
+
+            @Override
+            public boolean hasNext() {
+                return run < runCount;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int value = runs[2 * run] + offset;
+                if (offset == runs[2 * run + 1]) {
+                    run++;
+                    offset = 0;
+                } else {
+                    offset++;
+                }
+                return value;
+            }
+        };
+    }
+
+    @Override
+    long[] words() {
+        long[] words = new long[WORD_COUNT];
+        for (int i = 0; i < runCount; i++) {
+            int start = runs[2 * i];
+            int end = start + runs[2 * i + 1] + 1;
+            setRange(words, start, end);
+        }
+        return words;
+    }
+
+    @Override
+    int serializedSizeInBytes() {
+        return Byte.BYTES + Integer.BYTES + sizeInBytes(runCount);
+    }
+
+    @Override
+    void serialize(ByteBuffer buffer) {
+        buffer.put(RUN_TYPE);
+        buffer.putInt(runCount);
+        for (int i = 0; i < 2 * runCount; i++) {
+            buffer.putChar(runs[i]);
+        }
+    }
+
+    static RunContainer deserialize(ByteBuffer buffer) {
+        int runCount = buffer.getInt();
+        Preconditions.checkArgument(
+                runCount > 0 && runCount <= Math.min(1 << 15, buffer.remaining() / sizeInBytes(1)),
+                "Run container run count must be > 0 and fit in the bytes left but was [%s].",
+                runCount);
+        char[] runs = new char[2 * runCount];
+        int end = -1;
+        for (int i = 0; i < runs.length; i += 2) {
+            runs[i] = buffer.getChar();
+            runs[i + 1] = buffer.getChar();
+            Preconditions.checkArgument(
+                    runs[i] > end && runs[i] + runs[i + 1] <= Character.MAX_VALUE,
+                    "Run container runs must be ascending, disjoint and within 16 bits but [%s, %s] follows [%s].",
+                    (int) runs[i],
+                    runs[i] + runs[i + 1],
+                    end);
+            end = runs[i] + runs[i + 1];
+        }
+        return new RunContainer(runs, runCount);
+    }
+
+    /**
+     * Sets the bits from {@code start} inclusive to {@code end} exclusive.
+     */
+    private static void setRange(long[] words, int start, int end) {
+        int firstWord = start >>> 6;
+        int lastWord = (end - 1) >>> 6;
+        long firstMask = -1L << start;
+        long lastMask = -1L >>> -end;
+        if (firstWord == lastWord) {
+            words[firstWord] |= firstMask & lastMask;
+            return;
+        }
+        words[firstWord] |= firstMask;
+        for (int i = firstWord + 1; i < lastWord; i++) {
+            words[i] = -1L;
+        }
+        words[lastWord] |= lastMask;
+    }
+}
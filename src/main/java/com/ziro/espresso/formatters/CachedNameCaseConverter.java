@@ -0,0 +1,112 @@
+package com.ziro.espresso.formatters;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import jakarta.annotation.Nullable;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A {@link NameCaseConverter} remembering the name case of the words it converts, created with
+ * {@link NameCaseConverter#cached(int)} or {@link NameCaseConverter#cached(int, NameCaseDictionary)}.
+ *
+ * <p>The cache is keyed by word rather than by name, so that "JOHN SMITH" and "john smith-jones" share the work
+ * done on "john" and "smith". The name case of a few words depends on the rest of the name: single letters, which
+ * may follow an apostrophe, words that may take part in the Mac/Mc rules, and leading particles such as "Al", which
+ * are only particles before another word. Those are always converted in place, so results are the same as
+ * without a cache. Under locales with special casing rules (Turkish, Azerbaijani, Lithuanian), the cache is bypassed
+ * altogether.
+ *
+ * <p>The cache holds at most the given number of words, evicting about the least recently used ones first. Lookups
+ * don't block each other, so a converter is meant to be shared by all the threads of an import. Instances are
+ * thread-safe.
+ *
+ * <p>Example usage:
+ * <pre>{@code
+ * CachedNameCaseConverter converter = NameCaseConverter.cached(100_000);
+ * List<String> names = converter.toNameCase(rawNames);
+ * log.info("Name case cache hit rate [{}].", converter.stats().hitRate());
+ * }</pre>
+ */
+public final class CachedNameCaseConverter {
+
+    private final NameCaseDictionary dictionary;
+    private final Cache<String, String> wordCache;
+
+    CachedNameCaseConverter(int maxEntries, NameCaseDictionary dictionary) {
+        Preconditions.checkArgument(maxEntries > 0, "maxEntries must be > 0 but was [%s].", maxEntries);
+        this.dictionary = dictionary;
+        this.wordCache = CacheBuilder.newBuilder()
+                .maximumSize(maxEntries)
+                .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Converts a string to proper name case, as {@link NameCaseConverter#toNameCase(String)} does.
+     *
+     * @param input the string to be converted to name case. Can be null or empty.
+     * @return the input string converted to proper name case, or the original input if it's null or empty
+     */
+    @Nullable
+    public String toNameCase(@Nullable String input) {
+        return NameCaseConverter.toNameCase(input, dictionary, wordCache);
+    }
+
+    /**
+     * Converts a character sequence to proper name case and appends the result to {@code output}, as
+     * {@link NameCaseConverter#toNameCase(CharSequence, Appendable)} does.
+     *
+     * @param input the character sequence to convert
+     * @param output where to append the converted input
+     */
+    public void toNameCase(CharSequence input, Appendable output) {
+        NameCaseConverter.toNameCase(input, output, dictionary, wordCache);
+    }
+
+    /**
+     * Converts every name of a collection to proper name case, as {@link NameCaseConverter#toNameCase(Collection)}
+     * does.
+     *
+     * @param names the names to convert, which may contain null or empty names
+     * @return a new list of the converted names, in iteration order of {@code names}
+     */
+    public List<String> toNameCase(Collection<String> names) {
+        return NameCaseConverter.toNameCase(names, dictionary, wordCache);
+    }
+
+    /**
+     * Returns a snapshot of the cache statistics, counted since this converter was created. Words that are never
+     * cached count neither as hits nor as misses.
+     *
+     * @return the current statistics
+     */
+    public Stats stats() {
+        CacheStats stats = wordCache.stats();
+        return new Stats(stats.hitCount(), stats.missCount(), stats.evictionCount(), wordCache.size());
+    }
+
+    /**
+     * Statistics of a {@link CachedNameCaseConverter}.
+     *
+     * @param hitCount the number of words found in the cache
+     * @param missCount the number of words converted and added to the cache
+     * @param evictionCount the number of words evicted to make room for others
+     * @param size the approximate number of words currently cached
+     */
+    public record Stats(long hitCount, long missCount, long evictionCount, long size) {
+
+        /**
+         * Returns the ratio of cached words that were found in the cache.
+         *
+         * @return the hit rate, 1 if no word was looked up yet
+         */
+        public double hitRate() {
+            long requestCount = hitCount + missCount;
+            return requestCount == 0 ? 1 : (double) hitCount / requestCount;
+        }
+    }
+}
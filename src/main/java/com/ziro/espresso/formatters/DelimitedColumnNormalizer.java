@@ -0,0 +1,668 @@
+package com.ziro.espresso.formatters;
+
+import com.google.common.base.Preconditions;
+import com.ziro.espresso.fluent.exceptions.SystemUnhandledException;
+import jakarta.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Applies formatters, such as {@link NameCaseConverter#toNameCase(String)} or
+ * {@link MaxLengthFormatter#format(String)}, to selected columns of a delimited file, streaming it from one channel to
+ * another.
+ *
+ * <p>The input is decoded and split into chunks of whole records, which are formatted and encoded into reused
+ * buffers, then written out in input order. Memory use therefore depends on the chunk size and on the number of
+ * chunks in flight, not on the size of the file. Given a {@link ForkJoinPool}, chunks are formatted in parallel
+ * while the calling thread keeps reading and writing, with at most twice the pool's parallelism chunks in flight.
+ *
+ * <p>Only the selected columns are rewritten. Every other byte, including the header, unselected fields, their
+ * quotes and the line terminators, is copied as is. Fields are split following RFC 4180: a field starting with the
+ * quote character may hold delimiters, line breaks and doubled quotes, and is handed to the formatters unquoted.
+ * Formatted values are quoted again if they were quoted or need to be. {@linkplain #tsv() TSV} files have no quote
+ * character, so their formatted values must not hold tabs or line breaks.
+ *
+ * <p>Formatters of a column are applied in the order they were added. With a pool, they must be thread-safe.
+ * Instances are immutable and thread-safe.
+ *
+ * <p>Example usage:
+ * <pre>{@code
+ * MaxLengthFormatter maxLength = MaxLengthFormatter.of(50);
+ * DelimitedColumnNormalizer normalizer = DelimitedColumnNormalizer.csv()
+ *     .withHeader()
+ *     .column("first_name", NameCaseConverter::toNameCase)
+ *     .column("last_name", NameCaseConverter::toNameCase)
+ *     .column("last_name", maxLength::format)
+ *     .parallel(ForkJoinPool.commonPool())
+ *     .build();
+ * long records = normalizer.normalize(Path.of("contacts.csv"), Path.of("contacts-normalized.csv"));
+ * }</pre>
+ */
+public final class DelimitedColumnNormalizer {
+
+    /**
+     * The default number of characters per chunk, which holds at least one record.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 18;
+
+    private static final int BYTE_BUFFER_SIZE = 1 << 16;
+
+    private static final int CHAR_BUFFER_SIZE = 1 << 14;
+
+    private static final char NO_QUOTE = 0;
+
+    private final char delimiter;
+    private final char quote;
+    private final boolean header;
+    private final List<ColumnFormatter> columnFormatters;
+    private final Charset charset;
+    private final int chunkSize;
+
+    @Nullable
+    private final ForkJoinPool pool;
+
+    private DelimitedColumnNormalizer(Builder builder) {
+        this.delimiter = builder.delimiter;
+        this.quote = builder.quote;
+        this.header = builder.header;
+        this.columnFormatters = List.copyOf(builder.columnFormatters);
+        this.charset = builder.charset;
+        this.chunkSize = builder.chunkSize;
+        this.pool = builder.pool;
+    }
+
+    /**
+     * Creates a builder for comma separated files, with fields quoted by double quotes.
+     *
+     * @return a new builder
+     */
+    public static Builder csv() {
+        return new Builder(',', '"');
+    }
+
+    /**
+     * Creates a builder for tab separated files, without quoting.
+     *
+     * @return a new builder
+     */
+    public static Builder tsv() {
+        return new Builder('\t', NO_QUOTE);
+    }
+
+    /**
+     * Normalizes a file into another one, created or replaced.
+     *
+     * @param input the file to read
+     * @param output the file to write
+     * @return the number of records written, not counting the header
+     * @throws IllegalArgumentException if a column selected by name is missing from the header
+     * @throws SystemUnhandledException if reading, decoding or writing fails
+     */
+    public long normalize(Path input, Path output) {
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(
+                        output,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE)) {
+            return new Run(in, out).run();
+        } catch (IOException e) {
+            throw SystemUnhandledException.withCause(e)
+                    .message("Something went wrong while normalizing [%s] into [%s].", input, output)
+                    .exception();
+        }
+    }
+
+    /**
+     * Normalizes everything read from a channel, writing the result to another one. Neither channel is closed.
+     *
+     * @param input the channel to read
+     * @param output the channel to write
+     * @return the number of records written, not counting the header
+     * @throws IllegalArgumentException if a column selected by name is missing from the header
+     * @throws SystemUnhandledException if reading, decoding or writing fails
+     */
+    public long normalize(ReadableByteChannel input, WritableByteChannel output) {
+        try {
+            return new Run(input, output).run();
+        } catch (IOException e) {
+            throw SystemUnhandledException.withCause(e)
+                    .message("Something went wrong while normalizing delimited records.")
+                    .exception();
+        }
+    }
+
+    /**
+     * Returns the formatter of every column, composing the formatters added for it, or null for columns copied as is.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Function<String, String>[] resolveFormatters(List<String> headerNames) {
+        int columnCount = 0;
+        int[] columns = new int[columnFormatters.size()];
+        for (int i = 0; i < columns.length; i++) {
+            ColumnFormatter columnFormatter = columnFormatters.get(i);
+            int column = columnFormatter.name() == null
+                    ? columnFormatter.index()
+                    : headerNames.indexOf(columnFormatter.name());
+            Preconditions.checkArgument(
+                    column >= 0, "Column [%s] not found in header %s.", columnFormatter.name(), headerNames);
+            columns[i] = column;
+            columnCount = Math.max(columnCount, column + 1);
+        }
+        Function<String, String>[] formatters = new Function[columnCount];
+        for (int i = 0; i < columns.length; i++) {
+            Function<String, String> formatter = columnFormatters.get(i).formatter();
+            formatters[columns[i]] =
+                    formatters[columns[i]] == null ? formatter : formatters[columns[i]].andThen(formatter);
+        }
+        return formatters;
+    }
+
+    /**
+     * Splits the records of a chunk into fields, appending them to its output with the selected columns formatted.
+     */
+    private void format(Chunk chunk, Function<String, String>[] formatters) {
+        StringBuilder in = chunk.input;
+        StringBuilder out = chunk.output;
+        out.setLength(0);
+        chunk.recordCount = 0;
+        int length = in.length();
+        int i = 0;
+        while (i < length) {
+            int column = 0;
+            while (true) {
+                int fieldStart = i;
+                if (quote != NO_QUOTE && i < length && in.charAt(i) == quote) {
+                    i = skipQuoted(in, i + 1);
+                }
+                while (i < length && in.charAt(i) != delimiter && in.charAt(i) != '\n') {
+                    i++;
+                }
+                int fieldEnd = i;
+                boolean lastField = i == length || in.charAt(i) == '\n';
+                if (lastField && fieldEnd > fieldStart && in.charAt(fieldEnd - 1) == '\r') {
+                    fieldEnd--;
+                }
+                Function<String, String> formatter = column < formatters.length ? formatters[column] : null;
+                if (formatter == null) {
+                    out.append(in, fieldStart, fieldEnd);
+                } else {
+                    appendFormatted(in, fieldStart, fieldEnd, formatter, out, column);
+                }
+                if (lastField) {
+                    i = Math.min(i + 1, length);
+                    out.append(in, fieldEnd, i);
+                    break;
+                }
+                out.append(delimiter);
+                i++;
+                column++;
+            }
+            chunk.recordCount++;
+        }
+    }
+
+    /**
+     * Returns the index right after the closing quote of a quoted field, or the end of the text if it is missing.
+     */
+    private int skipQuoted(CharSequence text, int start) {
+        int i = start;
+        while (i < text.length()) {
+            if (text.charAt(i++) == quote) {
+                if (i == text.length() || text.charAt(i) != quote) {
+                    return i;
+                }
+                i++;
+            }
+        }
+        return i;
+    }
+
+    private void appendFormatted(
+            CharSequence in, int start, int end, Function<String, String> formatter, StringBuilder out, int column) {
+        boolean quoted = quote != NO_QUOTE && end > start && in.charAt(start) == quote;
+        String formatted = formatter.apply(
+                quoted ? unquote(in, start, end) : in.subSequence(start, end).toString());
+        boolean special = false;
+        for (int i = 0; i < formatted.length() && !special; i++) {
+            char c = formatted.charAt(i);
+            special = c == delimiter || c == '\n' || c == '\r' || (quote != NO_QUOTE && c == quote);
+        }
+        if (!quoted && !special) {
+            out.append(formatted);
+            return;
+        }
+        if (quote == NO_QUOTE) {
+            throw new IllegalStateException(String.format(
+                    "Formatted value of column [%s] cannot hold a delimiter or a line break without quotes.", column));
+        }
+        out.append(quote);
+        for (int i = 0; i < formatted.length(); i++) {
+            char c = formatted.charAt(i);
+            if (c == quote) {
+                out.append(quote);
+            }
+            out.append(c);
+        }
+        out.append(quote);
+    }
+
+    /**
+     * Returns the value of a quoted field, without its quotes and with doubled quotes made single. Anything after the
+     * closing quote is kept as is.
+     */
+    private String unquote(CharSequence in, int start, int end) {
+        StringBuilder value = new StringBuilder(end - start);
+        int i = start + 1;
+        while (i < end) {
+            char c = in.charAt(i++);
+            if (c != quote) {
+                value.append(c);
+            } else if (i < end && in.charAt(i) == quote) {
+                value.append(quote);
+                i++;
+            } else {
+                value.append(in, i, end);
+                break;
+            }
+        }
+        return value.toString();
+    }
+
+    private List<String> splitHeader(CharSequence record) {
+        List<String> names = new ArrayList<>();
+        int length = record.length();
+        while (length > 0 && (record.charAt(length - 1) == '\n' || record.charAt(length - 1) == '\r')) {
+            length--;
+        }
+        int i = 0;
+        do {
+            int start = i;
+            if (quote != NO_QUOTE && i < length && record.charAt(i) == quote) {
+                i = Math.min(skipQuoted(record, i + 1), length);
+            }
+            while (i < length && record.charAt(i) != delimiter) {
+                i++;
+            }
+            boolean quoted = quote != NO_QUOTE && i > start && record.charAt(start) == quote;
+            names.add(
+                    quoted
+                            ? unquote(record, start, i)
+                            : record.subSequence(start, i).toString());
+        } while (i++ < length);
+        return names;
+    }
+
+    /**
+     * Selects a column, by index or by header name, along with one of its formatters.
+     */
+    private record ColumnFormatter(int index, @Nullable String name, Function<String, String> formatter) {}
+
+    /**
+     * Builds a {@link DelimitedColumnNormalizer}.
+     */
+    public static final class Builder {
+
+        private final char delimiter;
+        private final char quote;
+        private final List<ColumnFormatter> columnFormatters = new ArrayList<>();
+        private boolean header;
+        private Charset charset = StandardCharsets.UTF_8;
+        private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+        @Nullable
+        private ForkJoinPool pool;
+
+        private Builder(char delimiter, char quote) {
+            this.delimiter = delimiter;
+            this.quote = quote;
+        }
+
+        /**
+         * Treats the first record as a header, copied as is and giving the names usable by
+         * {@link #column(String, UnaryOperator)}.
+         *
+         * @return this builder
+         */
+        public Builder withHeader() {
+            this.header = true;
+            return this;
+        }
+
+        /**
+         * Adds a formatter to a column, applied after the formatters added to it before.
+         *
+         * @param index the index of the column, from 0
+         * @param formatter the formatter to apply to every value of the column
+         * @return this builder
+         * @throws IllegalArgumentException if {@code index} is negative
+         */
+        public Builder column(int index, UnaryOperator<String> formatter) {
+            Preconditions.checkArgument(index >= 0, "Column index must be >= 0 but was [%s].", index);
+            columnFormatters.add(new ColumnFormatter(index, null, formatter));
+            return this;
+        }
+
+        /**
+         * Adds a formatter to a column named in the header, applied after the formatters added to it before.
+         *
+         * @param name the name of the column in the header
+         * @param formatter the formatter to apply to every value of the column
+         * @return this builder
+         */
+        public Builder column(String name, UnaryOperator<String> formatter) {
+            columnFormatters.add(new ColumnFormatter(-1, name, formatter));
+            return this;
+        }
+
+        /**
+         * Sets the charset of both the input and the output, UTF-8 by default.
+         *
+         * @param charset the charset to decode and encode with
+         * @return this builder
+         */
+        public Builder charset(Charset charset) {
+            this.charset = charset;
+            return this;
+        }
+
+        /**
+         * Sets the number of characters after which a chunk is cut at the next record end.
+         *
+         * @param chunkSize the minimum number of characters per chunk, {@value #DEFAULT_CHUNK_SIZE} by default
+         * @return this builder
+         * @throws IllegalArgumentException if {@code chunkSize} is not positive
+         */
+        public Builder chunkSize(int chunkSize) {
+            Preconditions.checkArgument(chunkSize > 0, "chunkSize must be > 0 but was [%s].", chunkSize);
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        /**
+         * Formats chunks in parallel on the given pool, while the calling thread reads and writes them.
+         *
+         * @param pool the pool to format chunks on, e.g. {@link ForkJoinPool#commonPool()}
+         * @return this builder
+         */
+        public Builder parallel(ForkJoinPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        /**
+         * Builds a normalizer with the current settings.
+         *
+         * @return a new normalizer
+         * @throws IllegalArgumentException if a column is selected by name without a header
+         */
+        public DelimitedColumnNormalizer build() {
+            Preconditions.checkArgument(
+                    header || columnFormatters.stream().allMatch(columnFormatter -> columnFormatter.name() == null),
+                    "Columns can only be selected by name in files with a header.");
+            return new DelimitedColumnNormalizer(this);
+        }
+    }
+
+    /**
+     * A chunk of whole records and the buffers to format and encode them, recycled from one chunk to the next.
+     */
+    private final class Chunk {
+
+        private final StringBuilder input = new StringBuilder(chunkSize + CHAR_BUFFER_SIZE);
+        private final StringBuilder output = new StringBuilder(chunkSize + CHAR_BUFFER_SIZE);
+        private final CharsetEncoder encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        private ByteBuffer encoded = ByteBuffer.allocate(BYTE_BUFFER_SIZE);
+        private int recordCount;
+
+        private Chunk process(Function<String, String>[] formatters) {
+            format(this, formatters);
+            encode(output);
+            return this;
+        }
+
+        private void encode(CharSequence text) {
+            CharBuffer chars = CharBuffer.wrap(text);
+            encoder.reset();
+            encoded.clear();
+            CoderResult result;
+            do {
+                result = chars.hasRemaining() ? encoder.encode(chars, encoded, true) : encoder.flush(encoded);
+                if (result.isError()) {
+                    throwEncodingException(result);
+                }
+                if (result.isOverflow()) {
+                    encoded = ByteBuffer.allocate(2 * encoded.capacity()).put(encoded.flip());
+                }
+            } while (chars.hasRemaining() || result.isOverflow());
+            encoded.flip();
+        }
+
+        private void throwEncodingException(CoderResult result) {
+            try {
+                result.throwException();
+            } catch (CharacterCodingException e) {
+                throw SystemUnhandledException.withCause(e)
+                        .message("Something went wrong while encoding records as [%s].", charset)
+                        .exception();
+            }
+        }
+    }
+
+    /**
+     * A normalization from one channel to another. Reading, cutting chunks and writing happen on the calling thread.
+     */
+    private final class Run {
+
+        private final ReadableByteChannel input;
+        private final WritableByteChannel output;
+        private final CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        private final ByteBuffer bytes = ByteBuffer.allocate(BYTE_BUFFER_SIZE);
+        private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+        private final StringBuilder pending = new StringBuilder();
+        private final RecordScanner scanner = new RecordScanner();
+        private boolean endOfInput;
+
+        private Run(ReadableByteChannel input, WritableByteChannel output) {
+            this.input = input;
+            this.output = output;
+        }
+
+        private long run() throws IOException {
+            Chunk chunk = new Chunk();
+            List<String> headerNames = List.of();
+            if (header && read(chunk.input, true)) {
+                headerNames = splitHeader(chunk.input);
+                chunk.encode(chunk.input);
+                write(chunk);
+            }
+            Function<String, String>[] formatters = resolveFormatters(headerNames);
+            long recordCount = 0;
+            if (pool == null) {
+                while (read(chunk.input, false)) {
+                    recordCount += write(chunk.process(formatters));
+                }
+                return recordCount;
+            }
+            int maxInFlight = 2 * pool.getParallelism();
+            ArrayDeque<Chunk> free = new ArrayDeque<>();
+            ArrayDeque<CompletableFuture<Chunk>> inFlight = new ArrayDeque<>();
+            free.push(chunk);
+            while (true) {
+                Chunk next = free.isEmpty() ? new Chunk() : free.pop();
+                if (!read(next.input, false)) {
+                    break;
+                }
+                inFlight.add(CompletableFuture.supplyAsync(() -> next.process(formatters), pool));
+                if (inFlight.size() >= maxInFlight) {
+                    Chunk done = join(inFlight.poll());
+                    recordCount += write(done);
+                    free.push(done);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                recordCount += write(join(inFlight.poll()));
+            }
+            return recordCount;
+        }
+
+        private Chunk join(CompletableFuture<Chunk> future) {
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+
+        private int write(Chunk chunk) throws IOException {
+            while (chunk.encoded.hasRemaining()) {
+                output.write(chunk.encoded);
+            }
+            return chunk.recordCount;
+        }
+
+        /**
+         * Fills {@code target} with whole records: the first one only, or as many as needed to reach the chunk size.
+         *
+         * @return whether any record was read
+         */
+        private boolean read(StringBuilder target, boolean firstRecordOnly) throws IOException {
+            target.setLength(0);
+            target.append(pending);
+            pending.setLength(0);
+            scanner.reset();
+            int scanned = 0;
+            int recordsEnd = -1;
+            while (true) {
+                int end = scanner.scan(target, scanned, target.length(), firstRecordOnly);
+                scanned = target.length();
+                if (end >= 0) {
+                    recordsEnd = end;
+                    if (firstRecordOnly || recordsEnd >= chunkSize) {
+                        break;
+                    }
+                }
+                if (!fill(target)) {
+                    recordsEnd = target.length();
+                    break;
+                }
+            }
+            pending.append(target, recordsEnd, target.length());
+            target.setLength(recordsEnd);
+            return recordsEnd > 0;
+        }
+
+        /**
+         * Reads and decodes more of the input into {@code target}.
+         *
+         * @return false if the input was already exhausted
+         */
+        private boolean fill(StringBuilder target) throws IOException {
+            if (endOfInput) {
+                return false;
+            }
+            endOfInput = input.read(bytes) < 0;
+            bytes.flip();
+            CoderResult result;
+            do {
+                result = decoder.decode(bytes, chars, endOfInput);
+                if (result.isError()) {
+                    result.throwException();
+                }
+                drain(target);
+            } while (result.isOverflow());
+            bytes.compact();
+            if (endOfInput) {
+                while (decoder.flush(chars).isOverflow()) {
+                    drain(target);
+                }
+                drain(target);
+            }
+            return true;
+        }
+
+        private void drain(StringBuilder target) {
+            chars.flip();
+            target.append(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining());
+            chars.clear();
+        }
+    }
+
+    /**
+     * Finds record ends, i.e. line feeds outside of quoted fields, in text fed piece by piece.
+     */
+    private final class RecordScanner {
+
+        private static final int FIELD_START = 0;
+        private static final int UNQUOTED = 1;
+        private static final int QUOTED = 2;
+        private static final int QUOTE_IN_QUOTED = 3;
+
+        private int state;
+
+        private void reset() {
+            state = FIELD_START;
+        }
+
+        /**
+         * Scans a range continuing the previous one.
+         *
+         * @return the index right after the last record end of the range, or the first one if {@code first} is set,
+         *         or -1 if there is none
+         */
+        private int scan(CharSequence text, int from, int to, boolean first) {
+            int recordsEnd = -1;
+            for (int i = from; i < to; i++) {
+                char c = text.charAt(i);
+                if (state == QUOTED) {
+                    if (c == quote) {
+                        state = QUOTE_IN_QUOTED;
+                    }
+                } else if (state == QUOTE_IN_QUOTED && c == quote) {
+                    state = QUOTED;
+                } else if (c == '\n') {
+                    state = FIELD_START;
+                    recordsEnd = i + 1;
+                    if (first) {
+                        return recordsEnd;
+                    }
+                } else if (c == delimiter) {
+                    state = FIELD_START;
+                } else if (state == FIELD_START && quote != NO_QUOTE && c == quote) {
+                    state = QUOTED;
+                } else {
+                    state = UNQUOTED;
+                }
+            }
+            return recordsEnd;
+        }
+    }
+}
@@ -2,12 +2,18 @@ package com.ziro.espresso.formatters;
 
 import com.google.common.base.Preconditions;
 import com.ziro.espresso.annotations.NonNullByDefault;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * A utility class that formats strings by ensuring they don't exceed a specified maximum length.
  * If a string exceeds the maximum length, it will be truncated and trimmed.
  *
+ * <p>The maximum length is either a number of chars, see {@link #of(int)}, or a number of bytes once encoded in
+ * UTF-8, see {@link #ofUtf8Bytes(int)}, matching the byte limit of a database column. Either way, strings are only
+ * cut between code points, never within a surrogate pair, and are measured without being encoded.
+ *
  * <p>This formatter is immutable and thread-safe. The maximum length is set during construction
  * and cannot be changed afterwards.
  *
@@ -15,6 +21,9 @@ import lombok.extern.slf4j.Slf4j;
  * <pre>{@code
  * MaxLengthFormatter formatter = MaxLengthFormatter.of(10);
  * String result = formatter.format("This is a long text"); // Returns "This is a"
+ *
+ * MaxLengthFormatter bytes = MaxLengthFormatter.ofUtf8Bytes(255);
+ * int length = bytes.formatUtf8(row.comment(), buffer); // Writes at most 255 bytes
  * }</pre>
  */
 @Slf4j
@@ -22,10 +31,11 @@ import lombok.extern.slf4j.Slf4j;
 public class MaxLengthFormatter {
 
     private final int maxLength;
+    private final boolean utf8Bytes;
 
-    private MaxLengthFormatter(int maxLength) {
-        Preconditions.checkArgument(maxLength > 0, "Max length must be > 0");
+    private MaxLengthFormatter(int maxLength, boolean utf8Bytes) {
         this.maxLength = maxLength;
+        this.utf8Bytes = utf8Bytes;
     }
 
     /**
@@ -36,7 +46,21 @@ public class MaxLengthFormatter {
      * @throws IllegalArgumentException if maxLength is 0 or negative
      */
     public static MaxLengthFormatter of(int maxLength) {
-        return new MaxLengthFormatter(maxLength);
+        Preconditions.checkArgument(maxLength > 0, "Max length must be > 0");
+        return new MaxLengthFormatter(maxLength, false);
+    }
+
+    /**
+     * Creates a new MaxLengthFormatter limiting formatted strings to a number of bytes once encoded in UTF-8.
+     * Unpaired surrogates count as one byte, as {@link String#getBytes} replaces them with '?'.
+     *
+     * @param maxBytes the maximum number of UTF-8 bytes allowed for formatted strings. Must be greater than 0.
+     * @return a new MaxLengthFormatter instance
+     * @throws IllegalArgumentException if maxBytes is 0 or negative
+     */
+    public static MaxLengthFormatter ofUtf8Bytes(int maxBytes) {
+        Preconditions.checkArgument(maxBytes > 0, "Max bytes must be > 0");
+        return new MaxLengthFormatter(maxBytes, true);
     }
 
     /**
@@ -51,12 +75,170 @@ public class MaxLengthFormatter {
      * @return the formatted string, truncated and trimmed if necessary
      */
     public String format(String value) {
-        if (value.length() > maxLength) {
-            log.debug("Formatting value [{}]", value);
-            String truncatedValue = value.substring(0, maxLength).trim();
-            log.debug("Truncated [{}] to [{}]", value, truncatedValue);
-            return truncatedValue;
+        int end = truncatedLength(value);
+        if (end == value.length()) {
+            return value;
+        }
+        log.debug("Formatting value [{}]", value);
+        int start = trimmedStart(value, end);
+        String truncatedValue = value.substring(start, trimmedEnd(value, start, end));
+        log.debug("Truncated [{}] to [{}]", value, truncatedValue);
+        return truncatedValue;
+    }
+
+    /**
+     * Formats a character sequence as {@link #format(String)} does, without copying it.
+     *
+     * @param value the character sequence to format
+     * @return {@code value} itself if it is within the maximum length, or its truncated and trimmed subsequence
+     */
+    public CharSequence format(CharSequence value) {
+        int end = truncatedLength(value);
+        if (end == value.length()) {
+            return value;
+        }
+        int start = trimmedStart(value, end);
+        return value.subSequence(start, trimmedEnd(value, start, end));
+    }
+
+    /**
+     * Formats a character sequence as {@link #format(String)} does, and writes the result encoded in UTF-8 to
+     * {@code target}, starting at its position. Only the formatted chars are encoded, straight into the array of a
+     * heap buffer, so a buffer reused from one value to the next is all this allocates. Direct buffers are written
+     * through a temporary array.
+     *
+     * @param value the character sequence to format
+     * @param target the buffer to write to, e.g. {@link ByteBuffer#wrap(byte[])} of a reused array
+     * @return the number of bytes written, at most the maximum length of a {@linkplain #ofUtf8Bytes(int) byte
+     *         budget}
+     * @throws BufferOverflowException if {@code target} has not enough room, in which case part of the value may
+     *                                 have been written, but its position is left unchanged
+     */
+    public int formatUtf8(CharSequence value, ByteBuffer target) {
+        int start = 0;
+        int end = truncatedLength(value);
+        if (end < value.length()) {
+            start = trimmedStart(value, end);
+            end = trimmedEnd(value, start, end);
+        }
+        if (!target.hasArray()) {
+            ByteBuffer bytes = ByteBuffer.allocate(3 * (end - start));
+            int byteCount = encodeUtf8(value, start, end, bytes.array(), 0, bytes.capacity());
+            target.put(bytes.array(), 0, byteCount);
+            return byteCount;
+        }
+        int offset = target.arrayOffset() + target.position();
+        int byteCount = encodeUtf8(value, start, end, target.array(), offset, target.arrayOffset() + target.limit());
+        target.position(target.position() + byteCount);
+        return byteCount;
+    }
+
+    /**
+     * Encodes a range of chars to UTF-8, as {@link String#getBytes} does.
+     *
+     * @return the number of bytes written
+     * @throws BufferOverflowException if they don't fit before {@code limit}, in which case part of them may have
+     *                                 been written
+     */
+    private static int encodeUtf8(CharSequence value, int start, int end, byte[] bytes, int offset, int limit) {
+        int position = offset;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                checkRoom(position, 1, limit);
+                bytes[position++] = (byte) c;
+            } else if (c < 0x800) {
+                checkRoom(position, 2, limit);
+                bytes[position++] = (byte) (0xC0 | (c >> 6));
+                bytes[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (isSurrogatePair(value, i, end)) {
+                checkRoom(position, 4, limit);
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                bytes[position++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                checkRoom(position, 1, limit);
+                bytes[position++] = (byte) '?';
+            } else {
+                checkRoom(position, 3, limit);
+                bytes[position++] = (byte) (0xE0 | (c >> 12));
+                bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return position - offset;
+    }
+
+    private static void checkRoom(int position, int byteCount, int limit) {
+        if (position + byteCount > limit) {
+            throw new BufferOverflowException();
+        }
+    }
+
+    /**
+     * Returns the length of the longest prefix within the maximum length that does not end within a surrogate pair,
+     * which is the length of the value if it is not to be truncated.
+     */
+    private int truncatedLength(CharSequence value) {
+        int length = value.length();
+        if (!utf8Bytes) {
+            if (length <= maxLength) {
+                return length;
+            }
+            return isSurrogatePair(value, maxLength - 1, length) ? maxLength - 1 : maxLength;
+        }
+        // A char never takes more than 3 bytes
+        if (length <= maxLength / 3) {
+            return length;
+        }
+        int byteCount = 0;
+        int i = 0;
+        while (i < length) {
+            char c = value.charAt(i);
+            int charCount = 1;
+            int size;
+            if (c < 0x80) {
+                size = 1;
+            } else if (c < 0x800) {
+                size = 2;
+            } else if (isSurrogatePair(value, i, length)) {
+                size = 4;
+                charCount = 2;
+            } else {
+                size = Character.isSurrogate(c) ? 1 : 3;
+            }
+            if (byteCount + size > maxLength) {
+                return i;
+            }
+            byteCount += size;
+            i += charCount;
+        }
+        return length;
+    }
+
+    private static boolean isSurrogatePair(CharSequence value, int index, int end) {
+        return Character.isHighSurrogate(value.charAt(index))
+                && index + 1 < end
+                && Character.isLowSurrogate(value.charAt(index + 1));
+    }
+
+    // Same as the start of String.trim()
+    private static int trimmedStart(CharSequence value, int end) {
+        int start = 0;
+        while (start < end && value.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    // Same as the end of String.trim()
+    private static int trimmedEnd(CharSequence value, int start, int end) {
+        int trimmedEnd = end;
+        while (trimmedEnd > start && value.charAt(trimmedEnd - 1) <= ' ') {
+            trimmedEnd--;
         }
-        return value;
+        return trimmedEnd;
     }
 }
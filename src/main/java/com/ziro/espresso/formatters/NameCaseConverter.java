@@ -1,38 +1,53 @@
 package com.ziro.espresso.formatters;
 
 import com.google.common.base.Strings;
-import java.util.regex.Matcher;
+import com.google.common.cache.Cache;
+import com.ziro.espresso.fluent.exceptions.SystemUnhandledException;
+import jakarta.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 /**
  * A utility class for converting strings to be properly cased.
  * Based on the Ruby NameCase gem: https://github.com/tenderlove/namecase
+ *
+ * <p>The input is tokenized once into words, as delimited by the regex word boundary {@code \b}, and every rule is
+ * then applied word by word in a single {@link StringBuilder}, so converting a name allocates little more than its
+ * result.
+ *
+ * <p>Bulk conversions of collections, arrays and streams reuse that buffer from one name to the next, and can be
+ * spread over a {@link ForkJoinPool} for large batches. {@link #toNameCase(CharSequence, Appendable)} writes a
+ * converted name straight into a caller supplied buffer.
+ *
+ * <p>Mac exceptions and particles come from a {@link NameCaseDictionary}, the {@linkplain NameCaseDictionary#defaults()
+ * default one} unless another is given.
  */
 public final class NameCaseConverter {
-    private static final String TENS = "(?:[Xx]{1,3}|[Xx][Ll]|[Ll][Xx]{0,3})?";
-    private static final String ONES = "(?:[Ii]{1,3}|[Ii][VvXx]|[Vv][Ii]{0,3})?";
 
-    // Pre-compile patterns for performance
-    private static final Pattern APOSTROPHE_S_END_PATTERN = Pattern.compile("'(\\w)\\b");
+    // Mac/Mc detection, only run on names with a word starting with "Mac"
     private static final Pattern MAC_MC_CHECK_PATTERN = Pattern.compile("\\bMac[A-Za-z]{2,}[^aciozj]\\b|\\bMc");
-    private static final Pattern MAC_MC_REPLACE_PATTERN = Pattern.compile("\\b(Ma?c)([A-Za-z]+)");
-    private static final Pattern ROMAN_NUMERAL_PATTERN = Pattern.compile("\\b(" + TENS + ONES + ")\\b");
-    private static final Pattern WORD_AND_APOSTROPHE_PATTERN = Pattern.compile("\\p{L}+");
-
-    // Patterns for "son/daughter of" rules (case-insensitive matching needed after initial lowercasing/casing)
-    private static final Pattern AL_PATTERN = Pattern.compile("\\bAl(?=\\s+\\w)");
-    private static final Pattern BIN_BINTI_BINTE_PATTERN = Pattern.compile("\\b(Bin|Binti|Binte)\\b");
-    private static final Pattern AP_PATTERN = Pattern.compile("\\bAp\\b");
-    private static final Pattern BEN_PATTERN = Pattern.compile("\\bBen(?=\\s+\\w)");
-    private static final Pattern DELLA_DELLE_PATTERN = Pattern.compile("\\bDell([ae])\\b");
-    private static final Pattern D_VOWEL_PATTERN = Pattern.compile("\\bD([aeiou])\\b");
-    private static final Pattern D_AS_OS_PATTERN = Pattern.compile("\\bD([ao]s)\\b");
-    private static final Pattern DE_LR_PATTERN = Pattern.compile("\\bDe([lr])\\b");
-    private static final Pattern EL_PATTERN = Pattern.compile("\\bEl\\b");
-    private static final Pattern LA_PATTERN = Pattern.compile("\\bLa\\b");
-    private static final Pattern L_EO_PATTERN = Pattern.compile("\\bL([eo])\\b");
-    private static final Pattern VAN_PATTERN = Pattern.compile("\\bVan(?=\\s+\\w)");
-    private static final Pattern VON_PATTERN = Pattern.compile("\\bVon\\b");
+
+    private static final int MAX_ROMAN_NUMERAL_LENGTH = 8;
+
+    /**
+     * Number of names below which bulk conversions given a pool run on the calling thread.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    /**
+     * Number of names converted by each task of a parallel bulk conversion.
+     */
+    private static final int CHUNK_SIZE = 1 << 10;
+
+    private static final int DEFAULT_CAPACITY = 64;
 
     private NameCaseConverter() {}
 
@@ -55,30 +70,249 @@ public final class NameCaseConverter {
         if (Strings.isNullOrEmpty(input)) {
             return input;
         }
+        return toNameCase(input, NameCaseDictionary.defaults());
+    }
 
-        String workingString = applyInitialCapitalization(input);
+    /**
+     * Converts a string to proper name case, as {@link #toNameCase(String)} does, with the Mac exceptions and
+     * particles of the given dictionary.
+     *
+     * @param input the string to be converted to name case. Can be null or empty.
+     * @param dictionary the Mac exceptions and particles to apply
+     * @return the input string converted to proper name case, or the original input if it's null or empty
+     */
+    public static String toNameCase(String input, NameCaseDictionary dictionary) {
+        if (Strings.isNullOrEmpty(input)) {
+            return input;
+        }
+        return new Tokens(input.length(), dictionary, null).convert(input).toString();
+    }
 
-        // Apply specific formatting rules
-        workingString = handleApostropheS(workingString);
-        workingString = handleIrishNames(workingString);
-        workingString = handleSonOfParticles(workingString);
-        workingString = handleRomanNumerals(workingString);
-        workingString = handleSpanishConjunctions(workingString);
+    /**
+     * Converts a character sequence to proper name case, as {@link #toNameCase(String)} does, and appends the result
+     * to {@code output}. Nothing is appended for an empty input.
+     *
+     * <p>This lets large imports write names straight into a {@link StringBuilder}, a {@link java.io.Writer} or any
+     * other buffer, without creating a String per name.
+     *
+     * @param input the character sequence to convert
+     * @param output where to append the converted input
+     * @throws SystemUnhandledException if appending to {@code output} fails
+     */
+    public static void toNameCase(CharSequence input, Appendable output) {
+        toNameCase(input, output, NameCaseDictionary.defaults());
+    }
 
-        return workingString;
+    /**
+     * Converts a character sequence to proper name case and appends the result to {@code output}, as
+     * {@link #toNameCase(CharSequence, Appendable)} does, with the Mac exceptions and particles of the given
+     * dictionary.
+     *
+     * @param input the character sequence to convert
+     * @param output where to append the converted input
+     * @param dictionary the Mac exceptions and particles to apply
+     * @throws SystemUnhandledException if appending to {@code output} fails
+     */
+    public static void toNameCase(CharSequence input, Appendable output, NameCaseDictionary dictionary) {
+        toNameCase(input, output, dictionary, null);
     }
 
-    private static String applyInitialCapitalization(String input) {
-        String[] words = input.split("\\b");
-        StringBuilder workingBuilder = new StringBuilder();
-        for (String word : words) {
-            if (WORD_AND_APOSTROPHE_PATTERN.matcher(word).matches()) {
-                workingBuilder.append(capitalizeFirst(word));
-            } else {
-                workingBuilder.append(word);
-            }
+    /**
+     * Creates a converter remembering the name case of up to {@code maxEntries} distinct words, for inputs where the
+     * same first names and surnames come back over and over.
+     *
+     * @param maxEntries the maximum number of words to remember
+     * @return a new converter, with an empty cache
+     * @throws IllegalArgumentException if {@code maxEntries} is not positive
+     * @see CachedNameCaseConverter
+     */
+    public static CachedNameCaseConverter cached(int maxEntries) {
+        return cached(maxEntries, NameCaseDictionary.defaults());
+    }
+
+    /**
+     * Creates a converter remembering the name case of up to {@code maxEntries} distinct words, as
+     * {@link #cached(int)} does, with the Mac exceptions and particles of the given dictionary.
+     *
+     * @param maxEntries the maximum number of words to remember
+     * @param dictionary the Mac exceptions and particles to apply
+     * @return a new converter, with an empty cache
+     * @throws IllegalArgumentException if {@code maxEntries} is not positive
+     */
+    public static CachedNameCaseConverter cached(int maxEntries, NameCaseDictionary dictionary) {
+        return new CachedNameCaseConverter(maxEntries, dictionary);
+    }
+
+    static void toNameCase(
+            CharSequence input,
+            Appendable output,
+            NameCaseDictionary dictionary,
+            @Nullable Cache<String, String> wordCache) {
+        Tokens tokens = new Tokens(input.length(), dictionary, wordCache);
+        tokens.convert(input);
+        try {
+            output.append(tokens.text);
+        } catch (IOException e) {
+            throw SystemUnhandledException.withCause(e)
+                    .message("Something went wrong while appending a name of length [%s].", input.length())
+                    .exception();
+        }
+    }
+
+    /**
+     * Converts every name of a collection to proper name case, as {@link #toNameCase(String)} does.
+     *
+     * <p>All names are converted with a single reusable buffer, so only their results are allocated.
+     *
+     * @param names the names to convert, which may contain null or empty names
+     * @return a new list of the converted names, in iteration order of {@code names}
+     */
+    public static List<String> toNameCase(Collection<String> names) {
+        return toNameCase(names, NameCaseDictionary.defaults());
+    }
+
+    /**
+     * Converts every name of a collection to proper name case, as {@link #toNameCase(Collection)} does, with the Mac
+     * exceptions and particles of the given dictionary.
+     *
+     * @param names the names to convert, which may contain null or empty names
+     * @param dictionary the Mac exceptions and particles to apply
+     * @return a new list of the converted names, in iteration order of {@code names}
+     */
+    public static List<String> toNameCase(Collection<String> names, NameCaseDictionary dictionary) {
+        return toNameCase(names, dictionary, null);
+    }
+
+    @Nullable
+    static String toNameCase(
+            @Nullable String input, NameCaseDictionary dictionary, @Nullable Cache<String, String> wordCache) {
+        return new Tokens(DEFAULT_CAPACITY, dictionary, wordCache).toNameCase(input);
+    }
+
+    static List<String> toNameCase(
+            Collection<String> names, NameCaseDictionary dictionary, @Nullable Cache<String, String> wordCache) {
+        List<String> converted = new ArrayList<>(names.size());
+        Tokens tokens = new Tokens(DEFAULT_CAPACITY, dictionary, wordCache);
+        for (String name : names) {
+            converted.add(tokens.toNameCase(name));
+        }
+        return converted;
+    }
+
+    /**
+     * Converts every name of a collection to proper name case, using the given pool for large collections.
+     *
+     * <p>The result is the same as {@link #toNameCase(Collection)}. When there are fewer than
+     * {@value #PARALLEL_THRESHOLD} names, this simply delegates to it on the calling thread. Otherwise the names are
+     * split into ranges converted by their own tasks on {@code pool}, each with its own buffer.
+     *
+     * @param names the names to convert, which may contain null or empty names
+     * @param pool the pool to run the conversions on, e.g. {@link ForkJoinPool#commonPool()}
+     * @return a new list of the converted names, in iteration order of {@code names}
+     */
+    public static List<String> toNameCase(Collection<String> names, ForkJoinPool pool) {
+        return toNameCase(names, pool, NameCaseDictionary.defaults());
+    }
+
+    /**
+     * Converts every name of a collection to proper name case, using the given pool for large collections, as
+     * {@link #toNameCase(Collection, ForkJoinPool)} does, with the Mac exceptions and particles of the given
+     * dictionary.
+     *
+     * @param names the names to convert, which may contain null or empty names
+     * @param pool the pool to run the conversions on, e.g. {@link ForkJoinPool#commonPool()}
+     * @param dictionary the Mac exceptions and particles to apply
+     * @return a new list of the converted names, in iteration order of {@code names}
+     */
+    public static List<String> toNameCase(Collection<String> names, ForkJoinPool pool, NameCaseDictionary dictionary) {
+        if (names.size() < PARALLEL_THRESHOLD) {
+            return toNameCase(names, dictionary);
+        }
+        return new ArrayList<>(Arrays.asList(toNameCase(names.toArray(new String[0]), pool, dictionary)));
+    }
+
+    /**
+     * Converts every name of an array to proper name case, as {@link #toNameCase(String)} does.
+     *
+     * @param names the names to convert, which may contain null or empty names
+     * @return a new array of the converted names, at the same indexes as in {@code names}
+     */
+    public static String[] toNameCase(String[] names) {
+        return toNameCase(names, NameCaseDictionary.defaults());
+    }
+
+    /**
+     * Converts every name of an array to proper name case, as {@link #toNameCase(String[])} does, with the Mac
+     * exceptions and particles of the given dictionary.
+     *
+     * @param names the names to convert, which may contain null or empty names
+     * @param dictionary the Mac exceptions and particles to apply
+     * @return a new array of the converted names, at the same indexes as in {@code names}
+     */
+    public static String[] toNameCase(String[] names, NameCaseDictionary dictionary) {
+        String[] converted = new String[names.length];
+        convert(names, converted, 0, names.length, dictionary);
+        return converted;
+    }
+
+    /**
+     * Converts every name of an array to proper name case, using the given pool for large arrays, as
+     * {@link #toNameCase(Collection, ForkJoinPool)} does.
+     *
+     * @param names the names to convert, which may contain null or empty names
+     * @param pool the pool to run the conversions on, e.g. {@link ForkJoinPool#commonPool()}
+     * @return a new array of the converted names, at the same indexes as in {@code names}
+     */
+    public static String[] toNameCase(String[] names, ForkJoinPool pool) {
+        return toNameCase(names, pool, NameCaseDictionary.defaults());
+    }
+
+    /**
+     * Converts every name of an array to proper name case, using the given pool for large arrays, as
+     * {@link #toNameCase(String[], ForkJoinPool)} does, with the Mac exceptions and particles of the given dictionary.
+     *
+     * @param names the names to convert, which may contain null or empty names
+     * @param pool the pool to run the conversions on, e.g. {@link ForkJoinPool#commonPool()}
+     * @param dictionary the Mac exceptions and particles to apply
+     * @return a new array of the converted names, at the same indexes as in {@code names}
+     */
+    public static String[] toNameCase(String[] names, ForkJoinPool pool, NameCaseDictionary dictionary) {
+        if (names.length < PARALLEL_THRESHOLD) {
+            return toNameCase(names, dictionary);
+        }
+        String[] converted = new String[names.length];
+        pool.invoke(new BulkConversion(names, converted, 0, names.length, dictionary));
+        return converted;
+    }
+
+    /**
+     * Lazily converts every name of a stream to proper name case, as {@link #toNameCase(String)} does. The returned
+     * stream is parallel if {@code names} is.
+     *
+     * @param names the names to convert, which may contain null or empty names
+     * @return a stream of the converted names
+     */
+    public static Stream<String> toNameCase(Stream<String> names) {
+        return names.map(NameCaseConverter::toNameCase);
+    }
+
+    /**
+     * Lazily converts every name of a stream to proper name case, as {@link #toNameCase(Stream)} does, with the Mac
+     * exceptions and particles of the given dictionary.
+     *
+     * @param names the names to convert, which may contain null or empty names
+     * @param dictionary the Mac exceptions and particles to apply
+     * @return a stream of the converted names
+     */
+    public static Stream<String> toNameCase(Stream<String> names, NameCaseDictionary dictionary) {
+        return names.map(name -> toNameCase(name, dictionary));
+    }
+
+    private static void convert(String[] names, String[] converted, int from, int to, NameCaseDictionary dictionary) {
+        Tokens tokens = new Tokens(DEFAULT_CAPACITY, dictionary, null);
+        for (int i = from; i < to; i++) {
+            converted[i] = tokens.toNameCase(names[i]);
         }
-        return workingBuilder.toString();
     }
 
     private static String capitalizeFirst(String str) {
@@ -91,86 +325,464 @@ public final class NameCaseConverter {
         return Character.toUpperCase(str.charAt(0)) + str.substring(1).toLowerCase();
     }
 
-    private static String handleApostropheS(String input) {
-        StringBuilder sb = new StringBuilder();
-        Matcher matcher = APOSTROPHE_S_END_PATTERN.matcher(input);
-        while (matcher.find()) {
-            matcher.appendReplacement(
-                    sb, Matcher.quoteReplacement("'" + matcher.group(1).toLowerCase()));
-        }
-        matcher.appendTail(sb);
-        return sb.toString();
-    }
-
-    private static String handleIrishNames(String input) {
-        String workingString = input;
-        if (MAC_MC_CHECK_PATTERN.matcher(workingString).find()) {
-            StringBuilder sbIrish = new StringBuilder();
-            Matcher irishMatcher = MAC_MC_REPLACE_PATTERN.matcher(workingString);
-            while (irishMatcher.find()) {
-                String prefix = irishMatcher.group(1);
-                String namePart = irishMatcher.group(2);
-                irishMatcher.appendReplacement(sbIrish, Matcher.quoteReplacement(prefix + capitalizeFirst(namePart)));
-            }
-            irishMatcher.appendTail(sbIrish);
-            workingString = sbIrish.toString();
-
-            workingString = workingString.replace("MacEdo", "Macedo");
-            workingString = workingString.replace("MacEvicius", "Macevicius");
-            workingString = workingString.replace("MacHado", "Machado");
-            workingString = workingString.replace("MacHar", "Machar");
-            workingString = workingString.replace("MacHin", "Machin");
-            workingString = workingString.replace("MacHlin", "Machlin");
-            workingString = workingString.replace("MacIas", "Macias");
-            workingString = workingString.replace("MacIulis", "Maciulis");
-            workingString = workingString.replace("MacKie", "Mackie");
-            workingString = workingString.replace("MacKle", "Mackle");
-            workingString = workingString.replace("MacKlin", "Macklin");
-            workingString = workingString.replace("MacKmin", "Mackmin");
-            workingString = workingString.replace("MacQuarie", "Macquarie");
-            workingString = workingString.replace("Macmurdo", "MacMurdo");
-        }
-        return workingString;
-    }
-
-    private static String handleSonOfParticles(String input) {
-        String workingString = input;
-        workingString = AL_PATTERN.matcher(workingString).replaceAll("al");
-        workingString = BIN_BINTI_BINTE_PATTERN.matcher(workingString).replaceAll(mr -> mr.group(1)
-                .toLowerCase());
-        workingString = AP_PATTERN.matcher(workingString).replaceAll("ap");
-        workingString = BEN_PATTERN.matcher(workingString).replaceAll("ben");
-        workingString = DELLA_DELLE_PATTERN.matcher(workingString).replaceAll("dell$1");
-        workingString = D_VOWEL_PATTERN.matcher(workingString).replaceAll("d$1");
-        workingString = D_AS_OS_PATTERN.matcher(workingString).replaceAll("d$1");
-        workingString = DE_LR_PATTERN.matcher(workingString).replaceAll("de$1");
-        workingString = EL_PATTERN.matcher(workingString).replaceAll("el");
-        workingString = LA_PATTERN.matcher(workingString).replaceAll("la");
-        workingString = L_EO_PATTERN.matcher(workingString).replaceAll("l$1");
-        workingString = VAN_PATTERN.matcher(workingString).replaceAll("van");
-        workingString = VON_PATTERN.matcher(workingString).replaceAll("von");
-        return workingString;
-    }
-
-    private static String handleRomanNumerals(String input) {
-        StringBuilder sb = new StringBuilder();
-        Matcher matcher = ROMAN_NUMERAL_PATTERN.matcher(input);
-        while (matcher.find()) {
-            String match = matcher.group(1);
-            if (!Strings.isNullOrEmpty(match)) {
-                matcher.appendReplacement(sb, Matcher.quoteReplacement(match.toUpperCase()));
-            }
-        }
-        matcher.appendTail(sb);
-        return sb.toString();
-    }
-
-    private static String handleSpanishConjunctions(String input) {
-        String workingString = input;
-        for (String conj : new String[] {"Y", "E", "I"}) {
-            Pattern conjPattern = Pattern.compile("\\b" + conj + "\\b", Pattern.CASE_INSENSITIVE);
-            workingString = conjPattern.matcher(workingString).replaceAll(conj.toLowerCase());
-        }
-        return workingString;
+    /**
+     * Returns whether the default locale maps ASCII letters like {@link Character#toUpperCase(char)} and
+     * {@link Character#toLowerCase(char)} do. Only the Turkish, Azerbaijani and Lithuanian locales have special
+     * casing rules, so for all others ASCII words are cased without going through {@link String#toLowerCase()}.
+     */
+    private static boolean hasPlainAsciiCasing(Locale locale) {
+        String language = locale.getLanguage();
+        return !language.equals("tr") && !language.equals("az") && !language.equals("lt");
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    // Same as \w
+    private static boolean isAsciiWordCharacter(char c) {
+        return isAsciiLetter(c) || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    // Same as \s
+    private static boolean isAsciiWhitespace(char c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+
+    private static char toAsciiUpperCase(char c) {
+        return c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c;
+    }
+
+    private static char toAsciiLowerCase(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    /**
+     * Returns whether the code point right before {@code index} is part of a word, as seen by the regex word boundary
+     * {@code \b}: a letter, a digit, an underscore, or a non-spacing mark following one of those.
+     */
+    private static boolean isWordBefore(CharSequence text, int index) {
+        char c = text.charAt(index - 1);
+        if (c < 0x80) {
+            return isAsciiWordCharacter(c);
+        }
+        int codePoint = Character.codePointBefore(text, index);
+        return isWordCodePoint(codePoint)
+                || (Character.getType(codePoint) == Character.NON_SPACING_MARK && hasBaseCharacter(text, index - 1));
+    }
+
+    /**
+     * Returns whether the code point at {@code index} is part of a word, as seen by the regex word boundary
+     * {@code \b}.
+     */
+    private static boolean isWordAt(CharSequence text, int index) {
+        char c = text.charAt(index);
+        if (c < 0x80) {
+            return isAsciiWordCharacter(c);
+        }
+        int codePoint = Character.codePointAt(text, index);
+        return isWordCodePoint(codePoint)
+                || (Character.getType(codePoint) == Character.NON_SPACING_MARK && hasBaseCharacter(text, index));
+    }
+
+    private static boolean isWordCodePoint(int codePoint) {
+        return codePoint == '_' || Character.isLetterOrDigit(codePoint);
+    }
+
+    private static boolean hasBaseCharacter(CharSequence text, int index) {
+        for (int i = index; i >= 0; i--) {
+            int codePoint = Character.codePointAt(text, i);
+            if (Character.isLetterOrDigit(codePoint)) {
+                return true;
+            }
+            if (Character.getType(codePoint) != Character.NON_SPACING_MARK) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether a word, in any case, is a Roman numeral up to 89 (LXXXIX), i.e. optional tens among X, XX, XXX,
+     * XL, L, LX, LXX, LXXX followed by optional units among I, II, III, IV, IX, V, VI, VII, VIII.
+     */
+    private static boolean isRomanNumeral(CharSequence text, int start, int end) {
+        int i = start;
+        char c = toAsciiLowerCase(text.charAt(i));
+        if (c == 'l') {
+            i = skip(text, i + 1, end, 'x', 3);
+        } else if (c == 'x') {
+            i = i + 1 < end && toAsciiLowerCase(text.charAt(i + 1)) == 'l' ? i + 2 : skip(text, i + 1, end, 'x', 2);
+        }
+        if (i < end) {
+            c = toAsciiLowerCase(text.charAt(i));
+            if (c == 'v') {
+                i = skip(text, i + 1, end, 'i', 3);
+            } else if (c == 'i') {
+                char next = i + 1 < end ? toAsciiLowerCase(text.charAt(i + 1)) : 0;
+                i = next == 'v' || next == 'x' ? i + 2 : skip(text, i + 1, end, 'i', 2);
+            }
+        }
+        return i == end;
+    }
+
+    private static int skip(CharSequence text, int start, int end, char lowerCase, int max) {
+        int i = start;
+        while (i < end && i - start < max && toAsciiLowerCase(text.charAt(i)) == lowerCase) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Converts a range of names, splitting it in halves until ranges are small enough to be converted by a single
+     * task with its own buffer.
+     */
+    private static final class BulkConversion extends RecursiveAction {
+
+        private final String[] names;
+        private final String[] converted;
+        private final int from;
+        private final int to;
+        private final NameCaseDictionary dictionary;
+
+        private BulkConversion(String[] names, String[] converted, int from, int to, NameCaseDictionary dictionary) {
+            this.names = names;
+            this.converted = converted;
+            this.from = from;
+            this.to = to;
+            this.dictionary = dictionary;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK_SIZE) {
+                convert(names, converted, from, to, dictionary);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(
+                    new BulkConversion(names, converted, from, middle, dictionary),
+                    new BulkConversion(names, converted, middle, to, dictionary));
+        }
+    }
+
+    /**
+     * The name being converted, along with the bounds of its words. Words are maximal runs of word characters, as
+     * delimited by {@code \b}, so a rule written as a regex anchored on {@code \b} on both sides is a test on a
+     * whole word here.
+     */
+    private static final class Tokens {
+
+        private final StringBuilder text;
+        private int[] wordBounds = new int[16];
+        private boolean[] cachedWords = new boolean[8];
+        private int wordCount;
+        private boolean plainAsciiCasing;
+        private boolean retokenized;
+
+        private final NameCaseDictionary dictionary;
+
+        @Nullable
+        private final Cache<String, String> wordCache;
+
+        // Converts cache misses, created on the first one
+        @Nullable
+        private Tokens wordTokens;
+
+        private Tokens(int capacity, NameCaseDictionary dictionary, @Nullable Cache<String, String> wordCache) {
+            this.text = new StringBuilder(capacity);
+            this.dictionary = dictionary;
+            this.wordCache = wordCache;
+        }
+
+        @Nullable
+        private String toNameCase(@Nullable String input) {
+            return Strings.isNullOrEmpty(input) ? input : convert(input).toString();
+        }
+
+        /**
+         * Converts the input into {@link #text}, replacing the previous conversion.
+         */
+        private StringBuilder convert(CharSequence input) {
+            text.setLength(0);
+            wordCount = 0;
+            if (input.length() == 0) {
+                return text;
+            }
+            plainAsciiCasing = hasPlainAsciiCasing(Locale.getDefault());
+            retokenized = tokenize(input, true);
+            if (retokenized) {
+                // A case mapping turned a letter into something else, so words have to be found again
+                wordCount = 0;
+                tokenize(text, false);
+            }
+            boolean irish = hasIrishPrefix();
+            for (int word = 0; word < wordCount; word++) {
+                if (cachedWords[word]) {
+                    continue;
+                }
+                int start = wordBounds[2 * word];
+                int end = wordBounds[2 * word + 1];
+                applyApostropheRule(start, end);
+                if (irish) {
+                    applyIrishRules(start, end);
+                }
+                applyParticleRules(start, end);
+                applyRomanNumeralRule(start, end);
+                applyConjunctionRule(start, end);
+            }
+            return text;
+        }
+
+        /**
+         * Splits the input on word boundaries. When copying the input, words made of letters only are capitalized on
+         * the way; otherwise, the text is only scanned for word bounds.
+         *
+         * @return whether capitalizing a word produced something else than letters or combining marks, in which case
+         *         the recorded word bounds may be wrong
+         */
+        private boolean tokenize(CharSequence input, boolean copy) {
+            boolean changedWords = false;
+            int length = input.length();
+            int start = 0;
+            boolean word = isWordAt(input, 0);
+            boolean nextWord = word;
+            for (int i = 1; i <= length; i++) {
+                // Before an ASCII character, this is what was found for that character on the previous iteration
+                boolean previousWord = input.charAt(i - 1) < 0x80 ? nextWord : isWordBefore(input, i);
+                nextWord = i < length && isWordAt(input, i);
+                if (i < length && previousWord == nextWord) {
+                    continue;
+                }
+                if (copy) {
+                    int textStart = text.length();
+                    if (word) {
+                        boolean cached = appendCachedWord(input, start, i);
+                        if (!cached) {
+                            changedWords |= appendWord(input, start, i);
+                        }
+                        addWord(textStart, text.length(), cached);
+                    } else {
+                        text.append(input, start, i);
+                    }
+                } else if (word) {
+                    addWord(start, i, false);
+                }
+                start = i;
+                word = nextWord;
+            }
+            return changedWords;
+        }
+
+        private boolean appendWord(CharSequence input, int start, int end) {
+            boolean ascii = true;
+            for (int i = start; i < end; ) {
+                int codePoint = Character.codePointAt(input, i);
+                if (!Character.isLetter(codePoint)) {
+                    text.append(input, start, end);
+                    return false;
+                }
+                ascii &= codePoint < 0x80;
+                i += Character.charCount(codePoint);
+            }
+            if (ascii && plainAsciiCasing) {
+                text.append(toAsciiUpperCase(input.charAt(start)));
+                for (int i = start + 1; i < end; i++) {
+                    text.append(toAsciiLowerCase(input.charAt(i)));
+                }
+                return false;
+            }
+            String capitalized = capitalizeFirst(input.subSequence(start, end).toString());
+            text.append(capitalized);
+            return capitalized
+                    .codePoints()
+                    .anyMatch(c -> !Character.isLetter(c) && Character.getType(c) != Character.NON_SPACING_MARK);
+        }
+
+        /**
+         * Appends the name case of a word from the word cache, converting and caching it on a miss. Only words whose
+         * name case does not depend on the rest of the name are cached: single letters, which may follow an
+         * apostrophe, words with a Mac/Mc prefix or holding a Mac exception, and particles depending on the next word
+         * are converted in place instead, as are all words under locales with special casing rules.
+         *
+         * @return whether the word was appended, and is final
+         */
+        private boolean appendCachedWord(CharSequence input, int start, int end) {
+            if (wordCache == null || !plainAsciiCasing || end - start < 2 || dependsOnContext(input, start, end)) {
+                return false;
+            }
+            String word = cacheKey(input, start, end);
+            String nameCase = wordCache.getIfPresent(word);
+            if (nameCase == null) {
+                if (wordTokens == null) {
+                    wordTokens = new Tokens(DEFAULT_CAPACITY, dictionary, null);
+                }
+                nameCase = wordTokens.convert(word).toString();
+                if (wordTokens.retokenized) {
+                    return false;
+                }
+                wordCache.put(word, nameCase);
+            }
+            text.append(nameCase);
+            return true;
+        }
+
+        /**
+         * Returns the word in lower case if it is only made of ASCII letters, since its name case then does not depend
+         * on its case, or the word as is otherwise.
+         */
+        private static String cacheKey(CharSequence input, int start, int end) {
+            char[] key = new char[end - start];
+            for (int i = start; i < end; i++) {
+                char c = input.charAt(i);
+                if (!isAsciiLetter(c)) {
+                    return input.subSequence(start, end).toString();
+                }
+                key[i - start] = toAsciiLowerCase(c);
+            }
+            return new String(key);
+        }
+
+        private boolean dependsOnContext(CharSequence input, int start, int end) {
+            if (toAsciiLowerCase(input.charAt(start)) == 'm') {
+                char second = toAsciiLowerCase(input.charAt(start + 1));
+                char third = end - start > 2 ? toAsciiLowerCase(input.charAt(start + 2)) : 0;
+                if (second == 'c' || (second == 'a' && third == 'c')) {
+                    return true;
+                }
+            }
+            NameCaseDictionary.Particle particle = dictionary.particle(input, start, end);
+            return (particle != null && particle.leading()) || dictionary.mayContainMacException(input, start, end);
+        }
+
+        private void addWord(int start, int end, boolean cached) {
+            if (2 * wordCount == wordBounds.length) {
+                wordBounds = Arrays.copyOf(wordBounds, 2 * wordBounds.length);
+                cachedWords = Arrays.copyOf(cachedWords, 2 * cachedWords.length);
+            }
+            cachedWords[wordCount] = cached;
+            wordBounds[2 * wordCount] = start;
+            wordBounds[2 * wordCount + 1] = end;
+            wordCount++;
+        }
+
+        // Same as finding '(\w)\b and lower casing the group
+        private void applyApostropheRule(int start, int end) {
+            if (end - start == 1 && start > 0 && text.charAt(start - 1) == '\'') {
+                char c = text.charAt(start);
+                if (isAsciiWordCharacter(c)) {
+                    text.setCharAt(start, toLowerCase(c));
+                }
+            }
+        }
+
+        // Same as finding \bMac[A-Za-z]{2,}[^aciozj]\b|\bMc anywhere in the name
+        private boolean hasIrishPrefix() {
+            boolean mac = false;
+            for (int word = 0; word < wordCount; word++) {
+                int start = wordBounds[2 * word];
+                int end = wordBounds[2 * word + 1];
+                if (startsWith(start, end, "Mc")) {
+                    return true;
+                }
+                mac |= startsWith(start, end, "Mac");
+            }
+            return mac && MAC_MC_CHECK_PATTERN.matcher(text).find();
+        }
+
+        // Same as replacing \b(Ma?c)([A-Za-z]+) with the prefix and the capitalized rest, then the Mac exceptions
+        private void applyIrishRules(int start, int end) {
+            int prefixLength = startsWith(start, end, "Mac") ? 3 : startsWith(start, end, "Mc") ? 2 : 0;
+            int nameStart = start + prefixLength;
+            if (prefixLength > 0 && nameStart < end && isAsciiLetter(text.charAt(nameStart))) {
+                int nameEnd = nameStart + 1;
+                while (nameEnd < end && isAsciiLetter(text.charAt(nameEnd))) {
+                    nameEnd++;
+                }
+                if (plainAsciiCasing) {
+                    text.setCharAt(nameStart, toAsciiUpperCase(text.charAt(nameStart)));
+                    for (int i = nameStart + 1; i < nameEnd; i++) {
+                        text.setCharAt(i, toAsciiLowerCase(text.charAt(i)));
+                    }
+                } else {
+                    overwrite(nameStart, capitalizeFirst(text.substring(nameStart, nameEnd)));
+                }
+            }
+            for (int i = start; i < end; ) {
+                String exception = dictionary.macExceptionAt(text, i, end);
+                if (exception == null) {
+                    i++;
+                } else {
+                    overwrite(i, exception);
+                    i += exception.length();
+                }
+            }
+        }
+
+        private void applyParticleRules(int start, int end) {
+            NameCaseDictionary.Particle particle = dictionary.particle(text, start, end);
+            if (particle != null && (!particle.leading() || isFollowedByWord(end))) {
+                overwrite(start, particle.word());
+            }
+        }
+
+        // Same as the lookahead (?=\s+\w)
+        private boolean isFollowedByWord(int end) {
+            int i = end;
+            while (i < text.length() && isAsciiWhitespace(text.charAt(i))) {
+                i++;
+            }
+            return i > end && i < text.length() && isAsciiWordCharacter(text.charAt(i));
+        }
+
+        private void applyRomanNumeralRule(int start, int end) {
+            if (end - start <= MAX_ROMAN_NUMERAL_LENGTH && isRomanNumeral(text, start, end)) {
+                if (plainAsciiCasing) {
+                    for (int i = start; i < end; i++) {
+                        text.setCharAt(i, toAsciiUpperCase(text.charAt(i)));
+                    }
+                } else {
+                    overwrite(start, text.substring(start, end).toUpperCase());
+                }
+            }
+        }
+
+        // Same as replacing \b[YEI]\b, case-insensitively, with its lower case
+        private void applyConjunctionRule(int start, int end) {
+            if (end - start == 1) {
+                char c = toAsciiLowerCase(text.charAt(start));
+                if (c == 'y' || c == 'e' || c == 'i') {
+                    text.setCharAt(start, toLowerCase(toAsciiUpperCase(c)));
+                }
+            }
+        }
+
+        // Same as String.valueOf(c).toLowerCase() for an ASCII character
+        private char toLowerCase(char c) {
+            return plainAsciiCasing
+                    ? toAsciiLowerCase(c)
+                    : String.valueOf(c).toLowerCase().charAt(0);
+        }
+
+        private boolean startsWith(int start, int end, String prefix) {
+            return end - start >= prefix.length() && regionMatches(start, prefix);
+        }
+
+        private boolean regionMatches(int start, String str) {
+            for (int i = 0; i < str.length(); i++) {
+                if (text.charAt(start + i) != str.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Case mappings of ASCII letters and exceptions never change the length of a word
+        private void overwrite(int start, String replacement) {
+            for (int i = 0; i < replacement.length(); i++) {
+                text.setCharAt(start + i, replacement.charAt(i));
+            }
+        }
     }
 }
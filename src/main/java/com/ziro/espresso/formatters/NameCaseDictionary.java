@@ -0,0 +1,405 @@
+package com.ziro.espresso.formatters;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Resources;
+import com.ziro.espresso.fluent.exceptions.SystemUnhandledException;
+import jakarta.annotation.Nullable;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The words and word fragments {@link NameCaseConverter} treats specially, on top of its built-in capitalization,
+ * apostrophe, Roman numeral and conjunction rules:
+ * <ul>
+ *   <li>Mac exceptions, fixing the case of names the Mac/Mc rules get wrong, e.g. "MacHado" back to "Machado". They
+ *   are only applied to names with a Mac/Mc prefix, once those rules have run.</li>
+ *   <li>Particles, e.g. "della" or "von", lower cased when they make up a whole word.</li>
+ *   <li>Leading particles, e.g. "al" or "van", only lower cased when followed by whitespace and another word.</li>
+ * </ul>
+ *
+ * <p>A dictionary is compiled once into tries, so the cost of converting a name depends on the length of its words
+ * and of the longest entry, not on the number of entries. Mac exceptions are matched, case-sensitively, in a single
+ * left to right pass over each word: where several exceptions start at the same position the longest one wins, and
+ * replaced text is not matched again. Particles are matched ignoring case.
+ *
+ * <p>Dictionaries are built from code or from classpath resources, holding one entry per line:
+ * <pre>
+ * # Comments and blank lines are ignored
+ * mac-exception MacHado Machado
+ * particle della
+ * leading-particle van
+ * </pre>
+ *
+ * <p>The {@linkplain #defaults() default dictionary} is loaded from {@code name-case-dictionary.txt}, next to this
+ * class. Instances are immutable and thread-safe.
+ *
+ * <p>Example usage:
+ * <pre>{@code
+ * NameCaseDictionary dictionary = NameCaseDictionary.builder()
+ *     .addAll(NameCaseDictionary.defaults())
+ *     .load("name-case/portuguese.txt")
+ *     .macException("MacHell", "Machell")
+ *     .particle("ter")
+ *     .build();
+ * String name = NameCaseConverter.toNameCase("MACHELL TER HORST", dictionary);
+ * }</pre>
+ */
+public final class NameCaseDictionary {
+
+    private static final String DEFAULT_RESOURCE_NAME = "name-case-dictionary.txt";
+
+    private static final String MAC_EXCEPTION = "mac-exception";
+    private static final String PARTICLE = "particle";
+    private static final String LEADING_PARTICLE = "leading-particle";
+
+    private static final Splitter FIELD_SPLITTER =
+            Splitter.on(CharMatcher.whitespace()).omitEmptyStrings();
+
+    private static final NameCaseDictionary DEFAULTS = builder()
+            .load(Resources.getResource(NameCaseDictionary.class, DEFAULT_RESOURCE_NAME))
+            .build();
+
+    private final ImmutableMap<String, String> macExceptions;
+    private final ImmutableMap<String, Particle> particles;
+
+    private final Trie<String> macExceptionTrie = new Trie<>(false);
+    private final Trie<String> foldedMacExceptionTrie = new Trie<>(true);
+    private final Trie<Particle> particleTrie = new Trie<>(true);
+
+    private NameCaseDictionary(Map<String, String> macExceptions, Map<String, Particle> particles) {
+        this.macExceptions = ImmutableMap.copyOf(macExceptions);
+        this.particles = ImmutableMap.copyOf(particles);
+        this.macExceptions.forEach((pattern, replacement) -> {
+            macExceptionTrie.put(pattern, replacement);
+            foldedMacExceptionTrie.put(pattern, replacement);
+        });
+        this.particles.forEach(particleTrie::put);
+    }
+
+    /**
+     * Returns the dictionary used by {@link NameCaseConverter#toNameCase(String)}, with the Mac exceptions and
+     * particles of the Ruby NameCase gem.
+     *
+     * @return the default dictionary
+     */
+    public static NameCaseDictionary defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Creates a builder for an empty dictionary. Use {@link Builder#addAll(NameCaseDictionary)} with
+     * {@link #defaults()} to extend the default rules rather than replace them.
+     *
+     * @return a new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the number of Mac exceptions of this dictionary.
+     *
+     * @return the number of Mac exceptions
+     */
+    public int macExceptionCount() {
+        return macExceptions.size();
+    }
+
+    /**
+     * Returns the number of particles of this dictionary, leading or not.
+     *
+     * @return the number of particles
+     */
+    public int particleCount() {
+        return particles.size();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("macExceptions", macExceptions.size())
+                .add("particles", particles.size())
+                .toString();
+    }
+
+    /**
+     * Returns the replacement of the longest Mac exception starting at {@code start} and ending before {@code end},
+     * or null if none does.
+     */
+    @Nullable
+    String macExceptionAt(CharSequence text, int start, int end) {
+        return macExceptionTrie.longestPrefix(text, start, end);
+    }
+
+    /**
+     * Returns whether a word could hold a Mac exception once cased, i.e. whether one of them appears in it, ignoring
+     * case.
+     */
+    boolean mayContainMacException(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (foldedMacExceptionTrie.longestPrefix(text, i, end) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the particle made up by a whole word, ignoring case, or null if the word is not a particle.
+     */
+    @Nullable
+    Particle particle(CharSequence text, int start, int end) {
+        return particleTrie.get(text, start, end);
+    }
+
+    /**
+     * A particle, in lower case.
+     */
+    record Particle(String word, boolean leading) {}
+
+    /**
+     * Builds a {@link NameCaseDictionary}. An entry replaces any earlier one with the same Mac exception pattern, or
+     * the same particle ignoring case, so that loaded rules can be overridden.
+     */
+    public static final class Builder {
+
+        private final Map<String, String> macExceptions = new LinkedHashMap<>();
+        private final Map<String, Particle> particles = new LinkedHashMap<>();
+
+        private Builder() {}
+
+        /**
+         * Adds a Mac exception, replacing {@code pattern} with {@code replacement} within names with a Mac/Mc prefix.
+         * Both must be the same letters, only differing in case.
+         *
+         * @param pattern the letters to find, case-sensitively, e.g. "MacHado"
+         * @param replacement the same letters in their proper case, e.g. "Machado"
+         * @return this builder
+         * @throws IllegalArgumentException if the pattern is not only made of letters, or the replacement is not the
+         *                                  same letters
+         */
+        public Builder macException(String pattern, String replacement) {
+            Preconditions.checkArgument(
+                    isLetters(pattern), "Mac exception pattern must be made of letters but was [%s].", pattern);
+            Preconditions.checkArgument(
+                    pattern.length() == replacement.length() && pattern.equalsIgnoreCase(replacement),
+                    "Mac exception replacement must only change the case of [%s] but was [%s].",
+                    pattern,
+                    replacement);
+            macExceptions.put(pattern, replacement);
+            return this;
+        }
+
+        /**
+         * Adds a particle, lower cased when it makes up a whole word.
+         *
+         * @param word the particle, in any case, e.g. "della"
+         * @return this builder
+         * @throws IllegalArgumentException if the particle is not only made of letters
+         */
+        public Builder particle(String word) {
+            return particle(word, false);
+        }
+
+        /**
+         * Adds a leading particle, lower cased when it makes up a whole word followed by whitespace and another word.
+         *
+         * @param word the particle, in any case, e.g. "van"
+         * @return this builder
+         * @throws IllegalArgumentException if the particle is not only made of letters
+         */
+        public Builder leadingParticle(String word) {
+            return particle(word, true);
+        }
+
+        /**
+         * Adds every entry of another dictionary, e.g. of {@link NameCaseDictionary#defaults()}.
+         *
+         * @param dictionary the dictionary to copy entries from
+         * @return this builder
+         */
+        public Builder addAll(NameCaseDictionary dictionary) {
+            macExceptions.putAll(dictionary.macExceptions);
+            particles.putAll(dictionary.particles);
+            return this;
+        }
+
+        /**
+         * Adds the entries of a resource file in the classpath.
+         *
+         * @param resourceName the name of the resource to load
+         * @return this builder
+         * @throws IllegalArgumentException if the resource cannot be found, or holds an invalid entry
+         * @throws SystemUnhandledException if the resource cannot be read
+         */
+        public Builder load(String resourceName) {
+            return load(Resources.getResource(resourceName));
+        }
+
+        /**
+         * Builds a dictionary from the entries added so far.
+         *
+         * @return a new dictionary
+         */
+        public NameCaseDictionary build() {
+            return new NameCaseDictionary(macExceptions, particles);
+        }
+
+        private Builder load(URL url) {
+            List<String> lines;
+            try {
+                lines = Resources.readLines(url, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw SystemUnhandledException.withCause(e)
+                        .message("Something went wrong while trying to load a name case dictionary from [url=%s].", url)
+                        .exception();
+            }
+            for (int i = 0; i < lines.size(); i++) {
+                String line = lines.get(i).strip();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    addEntry(FIELD_SPLITTER.splitToList(line), url, i + 1);
+                }
+            }
+            return this;
+        }
+
+        private void addEntry(List<String> fields, URL url, int lineNumber) {
+            String type = fields.get(0);
+            if (type.equals(MAC_EXCEPTION) && fields.size() == 3) {
+                macException(fields.get(1), fields.get(2));
+            } else if (type.equals(PARTICLE) && fields.size() == 2) {
+                particle(fields.get(1));
+            } else if (type.equals(LEADING_PARTICLE) && fields.size() == 2) {
+                leadingParticle(fields.get(1));
+            } else {
+                throw new IllegalArgumentException(String.format(
+                        "Invalid name case dictionary entry [%s] at [%s:%s].",
+                        String.join(" ", fields), url, lineNumber));
+            }
+        }
+
+        private Builder particle(String word, boolean leading) {
+            Preconditions.checkArgument(isLetters(word), "Particle must be made of letters but was [%s].", word);
+            String lowerCase = Trie.fold(word);
+            particles.put(lowerCase, new Particle(lowerCase, leading));
+            return this;
+        }
+
+        private static boolean isLetters(String str) {
+            return !str.isEmpty() && str.codePoints().allMatch(Character::isLetter);
+        }
+    }
+
+    /**
+     * A trie of words, looked up in time proportional to the length of the text matched, whatever its size. Children
+     * are kept in arrays sorted by character.
+     */
+    private static final class Trie<V> {
+
+        private final boolean ignoreCase;
+        private final Node<V> root = new Node<>();
+
+        private Trie(boolean ignoreCase) {
+            this.ignoreCase = ignoreCase;
+        }
+
+        /**
+         * Lower cases a string char by char, so that it keeps its length.
+         */
+        private static String fold(String str) {
+            char[] chars = str.toCharArray();
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = Character.toLowerCase(chars[i]);
+            }
+            return new String(chars);
+        }
+
+        private void put(String key, V value) {
+            Node<V> node = root;
+            for (int i = 0; i < key.length(); i++) {
+                node = node.childOrAdd(charAt(key, i));
+            }
+            node.value = value;
+        }
+
+        // The value of the whole range, if it is a key
+        @Nullable
+        private V get(CharSequence text, int start, int end) {
+            Node<V> node = root;
+            for (int i = start; i < end && node != null; i++) {
+                node = node.child(charAt(text, i));
+            }
+            return node == null ? null : node.value;
+        }
+
+        // The value of the longest key starting the range
+        @Nullable
+        private V longestPrefix(CharSequence text, int start, int end) {
+            V value = null;
+            Node<V> node = root;
+            for (int i = start; i < end; i++) {
+                node = node.child(charAt(text, i));
+                if (node == null) {
+                    break;
+                }
+                if (node.value != null) {
+                    value = node.value;
+                }
+            }
+            return value;
+        }
+
+        private char charAt(CharSequence text, int index) {
+            char c = text.charAt(index);
+            return ignoreCase ? Character.toLowerCase(c) : c;
+        }
+    }
+
+    private static final class Node<V> {
+
+        private char[] labels = new char[0];
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Node<V>[] children = new Node[0];
+
+        @Nullable
+        private V value;
+
+        @Nullable
+        private Node<V> child(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            return index >= 0 ? children[index] : null;
+        }
+
+        private Node<V> childOrAdd(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insertion = -index - 1;
+            Node<V> child = new Node<>();
+            labels = insert(labels, insertion, label);
+            children = Arrays.copyOf(children, children.length + 1);
+            System.arraycopy(children, insertion, children, insertion + 1, children.length - insertion - 1);
+            children[insertion] = child;
+            return child;
+        }
+
+        private static char[] insert(char[] array, int index, char c) {
+            char[] copy = new char[array.length + 1];
+            System.arraycopy(array, 0, copy, 0, index);
+            copy[index] = c;
+            System.arraycopy(array, index, copy, index + 1, array.length - index);
+            return copy;
+        }
+    }
+}
@@ -1,11 +1,21 @@
 package com.ziro.espresso.okhttp3;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.common.base.MoreObjects;
 import com.ziro.espresso.fluent.exceptions.SystemUnhandledException;
+import com.ziro.espresso.okhttp3.OkHttpClientFactory.Profile;
+import jakarta.annotation.Nullable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Base64;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.FormBody;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -18,35 +28,58 @@ import okhttp3.ResponseBody;
  * This class handles the token request and response processing for obtaining access tokens
  * from an OAuth 2.0 authorization server.
  *
- * <p>The factory uses OkHttp client for HTTP communication and expects JSON responses
- * from the authorization server.
+ * <p>The factory uses an OkHttp client for HTTP communication and expects JSON responses
+ * from the authorization server. A factory reuses its client, and with it the client's connection
+ * pool and dispatcher, so that token requests to the same server share warm connections. Use
+ * {@link #shared()} unless requests need a client of their own, see {@link #of(OkHttpClient)}.
  *
  * <p>Example usage:
  * <pre>{@code
- * String token = JwtTokenFactory.createAccessToken(
- *     "read write",
+ * OAuth2ClientAccessTokenRequestParameters params = new OAuth2ClientAccessTokenRequestParameters(
+ *     "https://auth-server.com/oauth/token",
  *     "client123",
  *     "secret456",
- *     "https://auth-server.com/oauth/token"
+ *     "read write"
  * );
+ * String token = JwtTokenFactory.shared().createAccessToken(params);
+ * CompletableFuture<String> futureToken = JwtTokenFactory.shared().createAccessTokenAsync(params);
  * }</pre>
  */
 public class JwtTokenFactory {
 
-    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
     private static final int SUCCESS_STATUS_CODE = 200;
 
+    private final OkHttpClient client;
+
+    private JwtTokenFactory(OkHttpClient client) {
+        this.client = client;
+    }
+
     /**
-     * Creates an access token by making an OAuth 2.0 client credentials grant request
-     * to the specified authorization server.
+     * Returns the factory shared by this JVM, whose client is derived from the
+     * {@linkplain Profile#LOW_LATENCY low-latency} shared client.
      *
-     * <p>The method performs the following steps:
-     * <ol>
-     *   <li>Constructs an OAuth 2.0 token request with client credentials
-     *   <li>Sends the request to the authorization server
-     *   <li>Validates the response status code
-     *   <li>Parses the JSON response to extract the access token
-     * </ol>
+     * @return the shared JwtTokenFactory instance
+     */
+    public static JwtTokenFactory shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    /**
+     * Creates a new JwtTokenFactory sending token requests through the specified client, e.g. one derived from
+     * an application client with {@link OkHttpClient#newBuilder()} to share its connection pool and dispatcher.
+     *
+     * @param client the client to send token requests through
+     * @return a new JwtTokenFactory instance
+     */
+    public static JwtTokenFactory of(OkHttpClient client) {
+        return new JwtTokenFactory(Objects.requireNonNull(client, "client should not be null"));
+    }
+
+    /**
+     * Creates an access token by making an OAuth 2.0 client credentials grant request
+     * to the specified authorization server, through the {@linkplain #shared() shared} factory.
      *
      * @param scope The OAuth 2.0 scope(s) being requested. Multiple scopes should be
      *             space-delimited
@@ -60,41 +93,226 @@ public class JwtTokenFactory {
      * @throws SystemUnhandledException If the response status code is not 200 or if
      *         the response cannot be parsed properly
      * @throws NullPointerException If the response body is null
+     * @see #createAccessToken(OAuth2ClientAccessTokenRequestParameters)
      */
     public static String createAccessToken(String scope, String clientId, String clientSecret, String tokenUrl)
             throws IOException {
-        OkHttpClient client = new OkHttpClient().newBuilder().build();
+        OAuth2ClientAccessTokenRequestParameters params =
+                new OAuth2ClientAccessTokenRequestParameters(tokenUrl, clientId, clientSecret, scope);
+        return shared().createAccessToken(params);
+    }
 
+    /**
+     * Creates an access token by making an OAuth 2.0 client credentials grant request
+     * to the specified authorization server.
+     *
+     * <p>The method performs the following steps:
+     * <ol>
+     *   <li>Constructs an OAuth 2.0 token request with client credentials
+     *   <li>Sends the request to the authorization server
+     *   <li>Validates the response status code
+     *   <li>Parses the JSON response to extract the access token
+     * </ol>
+     *
+     * @param params The parameters of the token request, including client credentials,
+     *               scope, and token endpoint URL
+     * @return The JWT access token string
+     * @throws IOException If there is an error in the network communication
+     * @throws SystemUnhandledException If the response status code is not 200 or if
+     *         the response cannot be parsed properly
+     * @throws NullPointerException If the response body is null
+     */
+    public String createAccessToken(OAuth2ClientAccessTokenRequestParameters params) throws IOException {
+        return fetchAccessToken(params).value();
+    }
+
+    /**
+     * Creates an access token as {@link #createAccessToken(OAuth2ClientAccessTokenRequestParameters)} does, without
+     * blocking the calling thread. The request is run by the dispatcher of the client, and cancelling the returned
+     * future cancels it.
+     *
+     * @param params The parameters of the token request, including client credentials,
+     *               scope, and token endpoint URL
+     * @return a future completed with the JWT access token string, or exceptionally with the
+     *         {@link IOException} or {@link SystemUnhandledException} that the blocking method would throw
+     */
+    public CompletableFuture<String> createAccessTokenAsync(OAuth2ClientAccessTokenRequestParameters params) {
+        CompletableFuture<AccessToken> accessToken = fetchAccessTokenAsync(params);
+        CompletableFuture<String> value = accessToken.thenApply(AccessToken::value);
+        value.whenComplete((token, e) -> {
+            if (e instanceof CancellationException) {
+                accessToken.cancel(false);
+            }
+        });
+        return value;
+    }
+
+    AccessToken fetchAccessToken(OAuth2ClientAccessTokenRequestParameters params) throws IOException {
+        try (Response response = client.newCall(newTokenRequest(params)).execute()) {
+            return readAccessToken(response);
+        }
+    }
+
+    CompletableFuture<AccessToken> fetchAccessTokenAsync(OAuth2ClientAccessTokenRequestParameters params) {
+        CompletableFuture<AccessToken> accessToken = new CompletableFuture<>();
+        Call call = client.newCall(newTokenRequest(params));
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                accessToken.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    accessToken.complete(readAccessToken(response));
+                } catch (IOException | RuntimeException e) {
+                    accessToken.completeExceptionally(e);
+                }
+            }
+        });
+        accessToken.whenComplete((token, e) -> {
+            if (e instanceof CancellationException) {
+                call.cancel();
+            }
+        });
+        return accessToken;
+    }
+
+    private static Request newTokenRequest(OAuth2ClientAccessTokenRequestParameters params) {
         RequestBody requestBody = new FormBody.Builder()
                 .addEncoded("grant_type", "client_credentials")
-                .addEncoded("scope", scope)
-                .addEncoded("client_id", clientId)
-                .addEncoded("client_secret", clientSecret)
+                .addEncoded("scope", params.scope())
+                .addEncoded("client_id", params.clientId())
+                .addEncoded("client_secret", params.clientSecret())
                 .build();
 
-        Request request = new Request.Builder()
-                .url(tokenUrl)
+        return new Request.Builder()
+                .url(params.tokenUrl())
                 .addHeader("Content-Type", "application/x-www-form-urlencoded")
                 .addHeader("Accept", "application/json")
                 .post(requestBody)
                 .build();
+    }
+
+    private static AccessToken readAccessToken(Response response) throws IOException {
+        ResponseBody responseBody = Objects.requireNonNull(response.body(), "responseBody should not be null");
+        if (response.code() != SUCCESS_STATUS_CODE) {
+            throw SystemUnhandledException.asRootCause()
+                    .message(
+                            "Failed to obtain access token from Authorization Server. "
+                                    + "The Authorization Server returned [status_code=%s, response=%s].",
+                            response.code(), responseBody.string())
+                    .exception();
+        }
+        return parseAccessToken(responseBody.byteStream());
+    }
+
+    /**
+     * Reads the access token of a token response and how long it is valid for, streaming through the response
+     * rather than reading it into a tree.
+     *
+     * <p>The lifetime is the shorter of the {@code expires_in} field of the response and the time left until the
+     * {@code exp} claim of the token, if it is a JWT.
+     *
+     * @param in the JSON token response
+     * @return the value of its {@code access_token} field and its lifetime, if known
+     * @throws IOException If the response cannot be read or is not valid JSON
+     * @throws SystemUnhandledException If the response is not a JSON object with an {@code access_token} string
+     */
+    static AccessToken parseAccessToken(InputStream in) throws IOException {
+        String value = null;
+        Duration lifetime = null;
+        try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String fieldName = parser.currentName();
+                    JsonToken fieldValue = parser.nextToken();
+                    if ("access_token".equals(fieldName) && fieldValue == JsonToken.VALUE_STRING) {
+                        value = parser.getText();
+                    } else if ("expires_in".equals(fieldName) && fieldValue.isNumeric()) {
+                        lifetime = Duration.ofSeconds(parseSeconds(parser));
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+        if (value == null) {
+            throw SystemUnhandledException.asRootCause()
+                    .message("Failed to obtain access token from Authorization Server. "
+                            + "The response has no [access_token].")
+                    .exception();
+        }
+        Long expiration = parseExpirationClaim(value);
+        if (expiration != null) {
+            // A claim before the epoch has passed as much as one at the epoch, and could not be subtracted from
+            Duration timeLeft = Duration.ofSeconds(Math.max(expiration, 0) - System.currentTimeMillis() / 1000);
+            if (lifetime == null || timeLeft.compareTo(lifetime) < 0) {
+                lifetime = timeLeft;
+            }
+        }
+        return new AccessToken(value, lifetime);
+    }
 
-        Call call = client.newCall(request);
-        try (Response response = call.execute()) {
-            ResponseBody responseBody = Objects.requireNonNull(response.body(), "responseBody should not be null");
-            String responseAsString = new String(responseBody.bytes());
-
-            if (response.code() != SUCCESS_STATUS_CODE) {
-                throw SystemUnhandledException.asRootCause()
-                        .message(
-                                "Failed to obtain access token from Authorization Server. "
-                                        + "The Authorization Server returned [status_code=%s, response=%s].",
-                                response.code(), responseAsString)
-                        .exception();
+    /**
+     * Returns the {@code exp} claim of a JWT, in seconds since the epoch, or null if the token is not a JWT or has
+     * no such claim. The signature of the token is not verified, the claim is only used to know when to renew it.
+     */
+    @Nullable
+    private static Long parseExpirationClaim(String token) {
+        int payloadStart = token.indexOf('.') + 1;
+        int payloadEnd = token.indexOf('.', payloadStart);
+        if (payloadStart == 0 || payloadEnd < 0) {
+            return null;
+        }
+        try (JsonParser parser =
+                JSON_FACTORY.createParser(Base64.getUrlDecoder().decode(token.substring(payloadStart, payloadEnd)))) {
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String fieldName = parser.currentName();
+                    if (parser.nextToken().isNumeric() && "exp".equals(fieldName)) {
+                        return parseSeconds(parser);
+                    }
+                    parser.skipChildren();
+                }
             }
+        } catch (IOException | IllegalArgumentException e) {
+            // Not a JWT, the token is opaque to clients
+        }
+        return null;
+    }
 
-            JsonNode jwtJsonObject = OBJECT_MAPPER.readTree(responseAsString);
-            return jwtJsonObject.get("access_token").asText();
+    /**
+     * Reads the current numeric value of a parser as whole seconds, saturating values out of the range of a long
+     * rather than failing on them, as whoever uses them bounds them anyway.
+     */
+    private static long parseSeconds(JsonParser parser) throws IOException {
+        return (long) parser.getDoubleValue();
+    }
+
+    /**
+     * An access token and how long it is valid for from the time it was received.
+     *
+     * @param value the access token
+     * @param lifetime how long the token is valid for, or null if neither the response nor the token tell. It is
+     *                 taken as given, and may be zero, negative if the token already expired by the local clock, or
+     *                 longer than any token is ever used for
+     */
+    record AccessToken(String value, @Nullable Duration lifetime) {
+
+        @Override
+        public String toString() {
+            // Intentionally excluded token
+            return MoreObjects.toStringHelper(this).add("lifetime", lifetime).toString();
         }
     }
+
+    private static class SharedHolder {
+        private static final OkHttpClient CLIENT = OkHttpClientFactory.newClientBuilder(Profile.LOW_LATENCY)
+                // Limits of its own, so that calls waiting for a token never hold the slots the token request needs
+                .dispatcher(OkHttpClientFactory.newDispatcher(Profile.LOW_LATENCY))
+                .build();
+        private static final JwtTokenFactory INSTANCE = new JwtTokenFactory(CLIENT);
+    }
 }
@@ -1,48 +1,105 @@
 package com.ziro.espresso.okhttp3;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
 import com.ziro.espresso.fluent.exceptions.SystemUnhandledException;
+import jakarta.annotation.Nullable;
 import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * Manages OAuth 2.0 client access tokens with caching capabilities.
- * This utility class provides centralized access token management with automatic
- * token caching and expiration handling.
+ * This class provides centralized access token management with automatic
+ * token caching, renewal and expiration handling.
  *
- * <p>Access tokens are cached for 60 minutes from their creation time to minimize
- * the number of token requests to the authorization server. The cache automatically
- * evicts expired tokens.
+ * <p>Access tokens are cached for as long as the authorization server says they are valid, see
+ * {@link JwtTokenFactory}, minus a safety margin, so that a token is never sent just as it expires. Tokens the
+ * server gives no lifetime for are cached for 60 minutes from their creation time. Whatever the server says, tokens
+ * are cached for at least 5 seconds, so that tokens received already expired, e.g. because the local clock is ahead of
+ * the server's, are not requested again for every request, and at most 24 hours.
  *
- * <p>The class uses Guava's Cache implementation for token storage and implements
- * a thread-safe approach to token management.
+ * <p>Tokens are renewed ahead of their expiry: once a token has been cached for a fraction of its lifetime, the next
+ * request for it starts fetching its replacement in the background, and keeps using it until the replacement is
+ * received. Token requests are then only made on the request path when no valid token is cached, e.g. for the very
+ * first request, and concurrent requests for the same token wait on a single token request.
+ *
+ * <p>Example usage:
+ * <pre>{@code
+ * OAuth2ClientAccessTokens accessTokens = OAuth2ClientAccessTokens.builder()
+ *     .safetyMargin(Duration.ofSeconds(30))
+ *     .refreshAhead(0.5)
+ *     .build();
+ * String token = accessTokens.get(params);
+ * }</pre>
+ *
+ * <p>This class is thread-safe. Token requests go through the dispatcher of the client of the
+ * {@linkplain Builder#tokenFactory(JwtTokenFactory) token factory}, which should not be the dispatcher of the clients
+ * the tokens are for, as requests waiting for a token would then hold dispatcher slots the token request needs.
  */
+@Slf4j
 public class OAuth2ClientAccessTokens {
 
+    public static final Duration DEFAULT_SAFETY_MARGIN = Duration.ofSeconds(60);
+    public static final double DEFAULT_REFRESH_AHEAD = 0.75;
+    public static final Duration DEFAULT_LIFETIME = Duration.ofMinutes(60);
+    public static final Duration DEFAULT_MIN_RENEWAL_AGE = Duration.ofSeconds(10);
+
+    private static final long MIN_USABLE_LIFETIME_NANOS = Duration.ofSeconds(5).toNanos();
+    private static final Duration MAX_LIFETIME = Duration.ofHours(24);
+
+    private final Function<OAuth2ClientAccessTokenRequestParameters, CompletableFuture<JwtTokenFactory.AccessToken>>
+            tokenFetcher;
+    private final long safetyMarginNanos;
+    private final double refreshAhead;
+    private final long defaultLifetimeNanos;
+    private final long minRenewalAgeNanos;
+    private final Ticker ticker;
+    private final Map<OAuth2ClientAccessTokenRequestParameters, CachedAccessToken> accessTokens =
+            new ConcurrentHashMap<>();
+    private final Map<OAuth2ClientAccessTokenRequestParameters, CompletableFuture<CachedAccessToken>> pendingFetches =
+            new ConcurrentHashMap<>();
+
+    private OAuth2ClientAccessTokens(Builder builder) {
+        this.tokenFetcher = builder.tokenFetcher;
+        this.safetyMarginNanos = lifetimeNanos(builder.safetyMargin);
+        this.refreshAhead = builder.refreshAhead;
+        this.defaultLifetimeNanos = lifetimeNanos(builder.defaultLifetime);
+        this.minRenewalAgeNanos = lifetimeNanos(builder.minRenewalAge);
+        this.ticker = builder.ticker;
+    }
+
     /**
-     * Cache for storing access tokens with a 60-minute expiration policy.
-     * The key is the string representation of OAuth2ClientAccessTokenRequestParameters,
-     * and the value is the corresponding access token.
+     * Returns the access tokens shared by this JVM, managed with the default settings of {@link #builder()}.
+     *
+     * @return the shared OAuth2ClientAccessTokens instance
      */
-    private static final Cache<String, String> ACCESS_TOKENS_CACHE =
-            CacheBuilder.newBuilder().expireAfterWrite(Duration.ofMinutes(60)).build();
+    public static OAuth2ClientAccessTokens shared() {
+        return SharedHolder.INSTANCE;
+    }
 
     /**
-     * Private constructor to prevent instantiation of this utility class.
+     * Creates a new builder of access tokens with their own cache, fetching tokens through
+     * {@link JwtTokenFactory#shared()}.
+     *
+     * @return a new Builder instance
      */
-    private OAuth2ClientAccessTokens() {}
+    public static Builder builder() {
+        return new Builder();
+    }
 
     /**
      * Retrieves an OAuth 2.0 access token for the specified parameters, using cached
      * tokens when available and valid.
      *
-     * <p>This method first checks the cache for an existing valid token. If no valid
-     * token is found, it requests a new one using the {@link JwtTokenFactory} and
-     * caches it for future use.
-     *
-     * <p>The method is thread-safe and handles concurrent requests efficiently through
-     * the underlying cache implementation.
+     * <p>This method first checks the cache for a valid token, and starts renewing it in the background if it is due
+     * for renewal. If no valid token is found, it requests a new one and waits for it, along with any other thread
+     * requesting the same token.
      *
      * @param oauth2ClientAccessTokenRequestParams The parameters required for obtaining
      *                                            an access token, including client credentials,
@@ -51,15 +108,32 @@ public class OAuth2ClientAccessTokens {
      * @throws SystemUnhandledException if token acquisition fails for any reason, wrapping
      *                                 the original cause of the failure
      */
-    static String getAccessToken(OAuth2ClientAccessTokenRequestParameters oauth2ClientAccessTokenRequestParams) {
+    public String get(OAuth2ClientAccessTokenRequestParameters oauth2ClientAccessTokenRequestParams) {
+        return cachedAccessToken(oauth2ClientAccessTokenRequestParams).value();
+    }
+
+    /**
+     * Returns the cached access token for the specified parameters as {@link #get} does, along with its
+     * authorization header value, so that neither has to be computed again for every request.
+     */
+    CachedAccessToken cachedAccessToken(OAuth2ClientAccessTokenRequestParameters oauth2ClientAccessTokenRequestParams) {
+        long now = ticker.read();
+        CachedAccessToken accessToken = accessTokens.get(oauth2ClientAccessTokenRequestParams);
+        if (accessToken != null && now - accessToken.expiresAt < 0) {
+            if (now - accessToken.refreshAt >= 0) {
+                refreshAhead(oauth2ClientAccessTokenRequestParams, accessToken, now);
+            }
+            return accessToken;
+        }
         try {
-            return ACCESS_TOKENS_CACHE.get(
-                    oauth2ClientAccessTokenRequestParams.toString(),
-                    () -> JwtTokenFactory.createAccessToken(
-                            oauth2ClientAccessTokenRequestParams.scope(),
-                            oauth2ClientAccessTokenRequestParams.clientId(),
-                            oauth2ClientAccessTokenRequestParams.clientSecret(),
-                            oauth2ClientAccessTokenRequestParams.tokenUrl()));
+            return fetch(oauth2ClientAccessTokenRequestParams, accessToken).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw SystemUnhandledException.withCause(e)
+                    .message(
+                            "Interrupted while waiting for access token for [%s].",
+                            oauth2ClientAccessTokenRequestParams)
+                    .exception();
         } catch (ExecutionException e) {
             throw SystemUnhandledException.withCause(e.getCause())
                     .message(
@@ -68,4 +142,282 @@ public class OAuth2ClientAccessTokens {
                     .exception();
         }
     }
+
+    /**
+     * Retrieves a new OAuth 2.0 access token for the specified parameters, after the authorization server rejected
+     * the given one, e.g. because it was revoked before its expiry.
+     *
+     * <p>The rejected token is evicted from the cache, so that no further request is sent with it, and a single new
+     * token is requested for all the threads renewing it or waiting for it. Threads renewing a token that was already
+     * replaced get the replacement without any new token request.
+     *
+     * <p>A token rejected less than {@linkplain Builder#minRenewalAge(Duration) 10 seconds} after it was received is
+     * not renewed, and is returned as is: the server rejects it for another reason than its expiry or revocation,
+     * e.g. a missing scope, and would reject a new token as well.
+     *
+     * @param oauth2ClientAccessTokenRequestParams The parameters required for obtaining
+     *                                            an access token, including client credentials,
+     *                                            scope, and token endpoint URL
+     * @param rejectedAccessToken the access token the authorization server rejected
+     * @return The new access token string
+     * @throws SystemUnhandledException if token acquisition fails for any reason, wrapping
+     *                                 the original cause of the failure
+     */
+    public String renew(
+            OAuth2ClientAccessTokenRequestParameters oauth2ClientAccessTokenRequestParams, String rejectedAccessToken) {
+        CachedAccessToken accessToken = accessTokens.get(oauth2ClientAccessTokenRequestParams);
+        if (accessToken != null && accessToken.value.equals(rejectedAccessToken)) {
+            return renewCachedAccessToken(oauth2ClientAccessTokenRequestParams, accessToken)
+                    .value();
+        }
+        return get(oauth2ClientAccessTokenRequestParams);
+    }
+
+    /**
+     * Renews a cached access token as {@link #renew} does, comparing it by identity rather than by value. The
+     * rejected token itself is returned when it is too recent to be renewed.
+     */
+    CachedAccessToken renewCachedAccessToken(
+            OAuth2ClientAccessTokenRequestParameters oauth2ClientAccessTokenRequestParams,
+            CachedAccessToken rejectedAccessToken) {
+        if (ticker.read() - rejectedAccessToken.receivedAt >= minRenewalAgeNanos) {
+            accessTokens.remove(oauth2ClientAccessTokenRequestParams, rejectedAccessToken);
+        }
+        return cachedAccessToken(oauth2ClientAccessTokenRequestParams);
+    }
+
+    private void refreshAhead(
+            OAuth2ClientAccessTokenRequestParameters params, CachedAccessToken accessToken, long now) {
+        if (pendingFetches.containsKey(params)) {
+            return;
+        }
+        fetch(params, accessToken).whenComplete((newAccessToken, e) -> {
+            if (e != null) {
+                // Try again once half of the time left has passed, rather than on every request
+                accessToken.refreshAt = now + (accessToken.expiresAt - now) / 2;
+                log.warn("Failed to renew access token for [{}] ahead of its expiry.", params, e);
+            }
+        });
+    }
+
+    /**
+     * Fetches a token to replace {@code staleAccessToken}, unless it is already being fetched or has just been
+     * replaced, and caches it once received.
+     */
+    private CompletableFuture<CachedAccessToken> fetch(
+            OAuth2ClientAccessTokenRequestParameters params, @Nullable CachedAccessToken staleAccessToken) {
+        CompletableFuture<CachedAccessToken> fetched = new CompletableFuture<>();
+        CompletableFuture<CachedAccessToken> pendingFetch = pendingFetches.putIfAbsent(params, fetched);
+        if (pendingFetch != null) {
+            return pendingFetch;
+        }
+        CachedAccessToken currentAccessToken = accessTokens.get(params);
+        if (currentAccessToken != null && currentAccessToken != staleAccessToken) {
+            pendingFetches.remove(params, fetched);
+            fetched.complete(currentAccessToken);
+            return fetched;
+        }
+        CompletableFuture<JwtTokenFactory.AccessToken> accessToken;
+        try {
+            accessToken = tokenFetcher.apply(params);
+        } catch (RuntimeException e) {
+            accessToken = CompletableFuture.failedFuture(e);
+        }
+        accessToken.whenComplete((receivedAccessToken, e) -> {
+            CachedAccessToken cachedAccessToken = null;
+            Throwable failure = e;
+            if (failure == null) {
+                try {
+                    cachedAccessToken = cache(params, receivedAccessToken);
+                    // Cached before the fetch is removed, so that it is found by whoever no longer finds the fetch
+                    accessTokens.put(params, cachedAccessToken);
+                } catch (RuntimeException cacheFailure) {
+                    failure = cacheFailure;
+                }
+            }
+            // Removed and completed whatever happened, as every request for the token waits on it until then
+            pendingFetches.remove(params, fetched);
+            if (failure == null) {
+                fetched.complete(cachedAccessToken);
+            } else {
+                fetched.completeExceptionally(failure);
+            }
+        });
+        return fetched;
+    }
+
+    private CachedAccessToken cache(
+            OAuth2ClientAccessTokenRequestParameters params, JwtTokenFactory.AccessToken accessToken) {
+        long now = ticker.read();
+        Duration lifetime = accessToken.lifetime();
+        long lifetimeNanos = lifetime == null ? defaultLifetimeNanos : lifetimeNanos(lifetime);
+        // Keep at least half of short lifetimes rather than expire tokens as soon as they are received
+        long usableNanos = lifetimeNanos - Math.min(safetyMarginNanos, lifetimeNanos / 2);
+        if (usableNanos < MIN_USABLE_LIFETIME_NANOS) {
+            if (lifetimeNanos == 0) {
+                log.warn("Access token for [{}] was received with no time left [lifetime={}].", params, lifetime);
+            }
+            usableNanos = MIN_USABLE_LIFETIME_NANOS;
+        }
+        return new CachedAccessToken(
+                accessToken.value(), now, now + (long) (usableNanos * refreshAhead), now + usableNanos);
+    }
+
+    /**
+     * Returns a lifetime in nanoseconds, bounded by 0 and 24 hours so that it can be added to any tick.
+     */
+    private static long lifetimeNanos(Duration lifetime) {
+        if (lifetime.isNegative()) {
+            return 0;
+        }
+        return lifetime.compareTo(MAX_LIFETIME) > 0 ? MAX_LIFETIME.toNanos() : lifetime.toNanos();
+    }
+
+    static final class CachedAccessToken {
+
+        private final String value;
+        private final String authorization;
+        private final long receivedAt;
+        private final long expiresAt;
+        private volatile long refreshAt;
+
+        private CachedAccessToken(String value, long receivedAt, long refreshAt, long expiresAt) {
+            this.value = value;
+            this.authorization = "Bearer " + value;
+            this.receivedAt = receivedAt;
+            this.refreshAt = refreshAt;
+            this.expiresAt = expiresAt;
+        }
+
+        String value() {
+            return value;
+        }
+
+        /**
+         * Returns the value of the Authorization header sending this token.
+         */
+        String authorization() {
+            return authorization;
+        }
+    }
+
+    /**
+     * A builder of {@link OAuth2ClientAccessTokens}.
+     */
+    public static class Builder {
+
+        private Function<OAuth2ClientAccessTokenRequestParameters, CompletableFuture<JwtTokenFactory.AccessToken>>
+                tokenFetcher = params -> JwtTokenFactory.shared().fetchAccessTokenAsync(params);
+        private Duration safetyMargin = DEFAULT_SAFETY_MARGIN;
+        private double refreshAhead = DEFAULT_REFRESH_AHEAD;
+        private Duration defaultLifetime = DEFAULT_LIFETIME;
+        private Duration minRenewalAge = DEFAULT_MIN_RENEWAL_AGE;
+        private Ticker ticker = Ticker.systemTicker();
+
+        private Builder() {}
+
+        /**
+         * Sets the factory requesting tokens from the authorization server.
+         *
+         * @param tokenFactory the factory requesting tokens, {@link JwtTokenFactory#shared()} by default
+         * @return this builder
+         */
+        public Builder tokenFactory(JwtTokenFactory tokenFactory) {
+            this.tokenFetcher = tokenFactory::fetchAccessTokenAsync;
+            return this;
+        }
+
+        /**
+         * Sets how long before their expiry tokens stop being used. At most half of the lifetime of a token is
+         * taken off, so that tokens with short lifetimes can still be cached.
+         *
+         * @param safetyMargin the time taken off the lifetime of tokens, 60 seconds by default
+         * @return this builder
+         * @throws IllegalArgumentException if safetyMargin is negative
+         */
+        public Builder safetyMargin(Duration safetyMargin) {
+            Preconditions.checkArgument(
+                    !safetyMargin.isNegative(), "Safety margin must not be negative but was [%s].", safetyMargin);
+            this.safetyMargin = safetyMargin;
+            return this;
+        }
+
+        /**
+         * Sets the fraction of their lifetime after which tokens are renewed in the background. A fraction of 1
+         * only renews tokens once they have expired, on the request path.
+         *
+         * @param refreshAhead the fraction of the lifetime of tokens, once the safety margin is taken off, after which
+         *                     they are renewed, 0.75 by default
+         * @return this builder
+         * @throws IllegalArgumentException if refreshAhead is not greater than 0 and at most 1
+         */
+        public Builder refreshAhead(double refreshAhead) {
+            Preconditions.checkArgument(
+                    refreshAhead > 0 && refreshAhead <= 1,
+                    "Refresh ahead fraction must be > 0 and <= 1 but was [%s].",
+                    refreshAhead);
+            this.refreshAhead = refreshAhead;
+            return this;
+        }
+
+        /**
+         * Sets the lifetime of tokens the authorization server gives no lifetime for.
+         *
+         * @param defaultLifetime the lifetime of tokens without expiry, 60 minutes by default
+         * @return this builder
+         * @throws IllegalArgumentException if defaultLifetime is not positive
+         */
+        public Builder defaultLifetime(Duration defaultLifetime) {
+            Preconditions.checkArgument(
+                    defaultLifetime.compareTo(Duration.ZERO) > 0,
+                    "Default lifetime must be > 0 but was [%s].",
+                    defaultLifetime);
+            this.defaultLifetime = defaultLifetime;
+            return this;
+        }
+
+        /**
+         * Sets how long after they were received rejected tokens are renewed, rather than taken as rejected for
+         * another reason than their expiry or revocation, which a new token would not fix either.
+         *
+         * @param minRenewalAge the time after which a rejected token is renewed, 10 seconds by default
+         * @return this builder
+         * @throws IllegalArgumentException if minRenewalAge is negative
+         */
+        public Builder minRenewalAge(Duration minRenewalAge) {
+            Preconditions.checkArgument(
+                    !minRenewalAge.isNegative(),
+                    "Minimum renewal age must not be negative but was [%s].",
+                    minRenewalAge);
+            this.minRenewalAge = minRenewalAge;
+            return this;
+        }
+
+        @VisibleForTesting
+        Builder tokenFetcher(
+                Function<OAuth2ClientAccessTokenRequestParameters, CompletableFuture<JwtTokenFactory.AccessToken>>
+                        tokenFetcher) {
+            this.tokenFetcher = tokenFetcher;
+            return this;
+        }
+
+        @VisibleForTesting
+        Builder ticker(Ticker ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        /**
+         * Builds access tokens with an empty cache.
+         *
+         * @return a new OAuth2ClientAccessTokens instance
+         */
+        public OAuth2ClientAccessTokens build() {
+            return new OAuth2ClientAccessTokens(this);
+        }
+    }
+
+    private static class SharedHolder {
+        private static final OAuth2ClientAccessTokens INSTANCE = builder().build();
+    }
 }
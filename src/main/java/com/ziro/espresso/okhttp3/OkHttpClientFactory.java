@@ -1,20 +1,31 @@
 package com.ziro.espresso.okhttp3;
 
-import com.google.common.base.Joiner;
+import com.google.common.collect.Maps;
 import com.ziro.espresso.fluent.exceptions.SystemUnhandledException;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.cert.X509Certificate;
-import java.util.ArrayList;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.ConnectionPool;
 import okhttp3.Credentials;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
 import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
 
 /**
  * Factory class for creating and configuring OkHttp clients and their components.
@@ -23,19 +34,59 @@ import okhttp3.Request;
  *
  * <p>This factory includes support for:
  * <ul>
+ *   <li>Shared clients tuned for a {@link Profile}
  *   <li>Basic Authentication
  *   <li>OAuth 2.0 Bearer token authentication
  *   <li>Custom SSL/TLS configurations
  *   <li>Path prefix handling (/services/)
  * </ul>
+ *
+ * <p>Clients of all profiles are derived from one root client, and share its connection pool and the threads
+ * running asynchronous calls, rather than each client having its own. Clients needing interceptors or SSL/TLS
+ * configurations of their own should be built from {@link #newClientBuilder(Profile)} to keep sharing them.
+ *
+ * <p>Example usage:
+ * <pre>{@code
+ * OkHttpClient client = OkHttpClientFactory.newClientBuilder(OkHttpClientFactory.Profile.LOW_LATENCY)
+ *     .addInterceptor(OkHttpClientFactory.buildOAuth2Interceptor(params))
+ *     .build();
+ * }</pre>
  */
+@Slf4j
 public class OkHttpClientFactory {
 
+    private static final int UNAUTHORIZED_STATUS_CODE = 401;
+    private static final String SERVICES_PATH_PREFIX = "/services";
+    private static final int MAX_IDLE_CONNECTIONS = 32;
+    private static final Duration KEEP_ALIVE_DURATION = Duration.ofMinutes(5);
+
     /**
      * Private constructor to prevent instantiation of this utility class.
      */
     private OkHttpClientFactory() {}
 
+    /**
+     * Returns the client shared by this JVM for the specified profile. Its dispatcher limits the number of
+     * asynchronous calls across all the clients derived from it.
+     *
+     * @param profile the profile the client is tuned for
+     * @return the shared OkHttpClient of the profile
+     */
+    public static OkHttpClient sharedClient(Profile profile) {
+        return SharedClients.BY_PROFILE.get(profile);
+    }
+
+    /**
+     * Creates a builder of clients derived from the shared client of the specified profile, sharing its connection
+     * pool and dispatcher, to add interceptors or SSL/TLS configurations to.
+     *
+     * @param profile the profile the client is tuned for
+     * @return a new OkHttpClient.Builder
+     */
+    public static OkHttpClient.Builder newClientBuilder(Profile profile) {
+        return sharedClient(profile).newBuilder();
+    }
+
     /**
      * Creates an interceptor that adds Basic Authentication headers to requests.
      *
@@ -44,9 +95,10 @@ public class OkHttpClientFactory {
      * @return an Interceptor that adds Basic Authentication headers
      */
     public static Interceptor buildBasicAuthInterceptor(String username, String password) {
+        String authorization = Credentials.basic(username, password);
         return chain -> {
             Request request = newRequestBuilder(chain.request())
-                    .addHeader("Authorization", Credentials.basic(username, password))
+                    .header("Authorization", authorization)
                     .build();
             return chain.proceed(request);
         };
@@ -61,12 +113,55 @@ public class OkHttpClientFactory {
      */
     public static Interceptor buildOAuth2Interceptor(
             OAuth2ClientAccessTokenRequestParameters oauth2ClientAccessTokenRequestParams) {
+        return buildOAuth2Interceptor(oauth2ClientAccessTokenRequestParams, OAuth2ClientAccessTokens.shared());
+    }
+
+    /**
+     * Creates an interceptor that adds OAuth 2.0 Bearer token authentication headers to requests.
+     * The token is retrieved and renewed by the specified access tokens, e.g. built with a different
+     * safety margin or refresh-ahead fraction than the shared ones.
+     *
+     * <p>When a request is rejected with a 401 status code, e.g. because its token was revoked before its expiry,
+     * the token is {@linkplain OAuth2ClientAccessTokens#renew renewed} and the request is retried once with the new
+     * token, as an {@link okhttp3.Authenticator} would. Concurrent rejections share a single token request. If the
+     * token cannot be renewed, was received too recently to be, see
+     * {@link OAuth2ClientAccessTokens.Builder#minRenewalAge(Duration)}, or the request body cannot be sent twice, the
+     * 401 response is returned as is.
+     *
+     * @param oauth2ClientAccessTokenRequestParams parameters for OAuth 2.0 token requests
+     * @param accessTokens the access tokens to retrieve the token from
+     * @return an Interceptor that adds OAuth 2.0 Bearer token headers
+     */
+    public static Interceptor buildOAuth2Interceptor(
+            OAuth2ClientAccessTokenRequestParameters oauth2ClientAccessTokenRequestParams,
+            OAuth2ClientAccessTokens accessTokens) {
         return chain -> {
-            String accessToken = OAuth2ClientAccessTokens.getAccessToken(oauth2ClientAccessTokenRequestParams);
+            OAuth2ClientAccessTokens.CachedAccessToken accessToken =
+                    accessTokens.cachedAccessToken(oauth2ClientAccessTokenRequestParams);
             Request request = newRequestBuilder(chain.request())
-                    .addHeader("Authorization", String.format("Bearer %s", accessToken))
+                    .header("Authorization", accessToken.authorization())
                     .build();
-            return chain.proceed(request);
+            Response response = chain.proceed(request);
+            RequestBody requestBody = request.body();
+            if (response.code() != UNAUTHORIZED_STATUS_CODE || (requestBody != null && requestBody.isOneShot())) {
+                return response;
+            }
+            OAuth2ClientAccessTokens.CachedAccessToken renewedAccessToken;
+            try {
+                renewedAccessToken =
+                        accessTokens.renewCachedAccessToken(oauth2ClientAccessTokenRequestParams, accessToken);
+            } catch (SystemUnhandledException e) {
+                log.warn("Failed to renew access token rejected by [{}].", request.url(), e);
+                return response;
+            }
+            if (renewedAccessToken == accessToken) {
+                log.debug("Not renewing access token rejected by [{}] right after it was received.", request.url());
+                return response;
+            }
+            response.close();
+            return chain.proceed(request.newBuilder()
+                    .header("Authorization", renewedAccessToken.authorization())
+                    .build());
         };
     }
 
@@ -105,6 +200,7 @@ public class OkHttpClientFactory {
 
     /**
      * Modifies the request builder to add the /services/ prefix and default headers.
+     * Headers already set on the request are kept rather than duplicated.
      *
      * @param request the original request to modify
      * @return a new Request.Builder with modified path and default headers
@@ -112,17 +208,131 @@ public class OkHttpClientFactory {
     private static Request.Builder newRequestBuilder(Request request) {
         // The request will be a path like "/admin/dial-plan-group-management",
         // we want "/services/admin/dial-plan-group-management"
-        List<String> newPathSegments = new ArrayList<>(request.url().encodedPathSegments());
-        newPathSegments.add(0, "services");
-        return request.newBuilder()
-                .url(request.url()
-                        .newBuilder()
-                        .encodedPath("/" + Joiner.on("/").join(newPathSegments))
-                        .build())
-                // In order to be able to download files, we need to accept octet-stream.
-                // As for uploading, that is handled in the individual request itself.
-                .addHeader("Accept", "application/json, application/octet-stream")
-                .addHeader("Content-Type", "application/json");
+        HttpUrl url = request.url();
+        HttpUrl servicesUrl = url.newBuilder()
+                .encodedPath(SERVICES_PATH_PREFIX + url.encodedPath())
+                .build();
+        Request.Builder requestBuilder = request.newBuilder().url(servicesUrl);
+        // In order to be able to download files, we need to accept octet-stream.
+        // As for uploading, that is handled in the individual request itself.
+        if (request.header("Accept") == null) {
+            requestBuilder.header("Accept", "application/json, application/octet-stream");
+        }
+        if (request.header("Content-Type") == null) {
+            requestBuilder.header("Content-Type", "application/json");
+        }
+        return requestBuilder;
+    }
+
+    /**
+     * Creates a dispatcher with the limits of the specified profile, running calls on the threads shared by all
+     * profiles.
+     */
+    static Dispatcher newDispatcher(Profile profile) {
+        Dispatcher dispatcher = new Dispatcher(SharedClients.ROOT.dispatcher().executorService());
+        dispatcher.setMaxRequests(profile.maxRequests);
+        dispatcher.setMaxRequestsPerHost(profile.maxRequestsPerHost);
+        return dispatcher;
+    }
+
+    /**
+     * The profiles of the shared clients, setting how many asynchronous calls they run at once, which protocols
+     * they prefer and how long they wait. Synchronous calls are not limited by dispatchers.
+     */
+    public enum Profile {
+
+        /**
+         * For short API calls on the request path, failing fast rather than holding up the request, over HTTP/2
+         * when the server supports it.
+         */
+        LOW_LATENCY(
+                128,
+                32,
+                List.of(Protocol.HTTP_2, Protocol.HTTP_1_1),
+                Duration.ofSeconds(2),
+                Duration.ofSeconds(10),
+                Duration.ofSeconds(10),
+                Duration.ofSeconds(15),
+                Duration.ZERO),
+
+        /**
+         * For large uploads and downloads, over HTTP/1.1 so that concurrent transfers to a host use connections of
+         * their own rather than share a single HTTP/2 connection.
+         */
+        BULK(
+                64,
+                16,
+                List.of(Protocol.HTTP_1_1),
+                Duration.ofSeconds(5),
+                Duration.ofSeconds(60),
+                Duration.ofSeconds(60),
+                Duration.ZERO,
+                Duration.ZERO),
+
+        /**
+         * For long-lived responses, e.g. server-sent events, which are never timed out while they are read, but
+         * whose HTTP/2 connections are pinged to detect when they are lost.
+         */
+        STREAMING(
+                256,
+                64,
+                List.of(Protocol.HTTP_2, Protocol.HTTP_1_1),
+                Duration.ofSeconds(5),
+                Duration.ZERO,
+                Duration.ofSeconds(30),
+                Duration.ZERO,
+                Duration.ofSeconds(30));
+
+        private final int maxRequests;
+        private final int maxRequestsPerHost;
+        private final List<Protocol> protocols;
+        private final Duration connectTimeout;
+        private final Duration readTimeout;
+        private final Duration writeTimeout;
+        private final Duration callTimeout;
+        private final Duration pingInterval;
+
+        Profile(
+                int maxRequests,
+                int maxRequestsPerHost,
+                List<Protocol> protocols,
+                Duration connectTimeout,
+                Duration readTimeout,
+                Duration writeTimeout,
+                Duration callTimeout,
+                Duration pingInterval) {
+            this.maxRequests = maxRequests;
+            this.maxRequestsPerHost = maxRequestsPerHost;
+            this.protocols = protocols;
+            this.connectTimeout = connectTimeout;
+            this.readTimeout = readTimeout;
+            this.writeTimeout = writeTimeout;
+            this.callTimeout = callTimeout;
+            this.pingInterval = pingInterval;
+        }
+
+        private OkHttpClient newClient(OkHttpClient root) {
+            return root.newBuilder()
+                    .dispatcher(newDispatcher(this))
+                    .protocols(protocols)
+                    .connectTimeout(connectTimeout)
+                    .readTimeout(readTimeout)
+                    .writeTimeout(writeTimeout)
+                    .callTimeout(callTimeout)
+                    .pingInterval(pingInterval)
+                    .build();
+        }
+    }
+
+    private static class SharedClients {
+
+        private static final OkHttpClient ROOT = new OkHttpClient.Builder()
+                .connectionPool(
+                        new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_DURATION.toMinutes(), TimeUnit.MINUTES))
+                .build();
+
+        private static final Map<Profile, OkHttpClient> BY_PROFILE = Arrays.stream(Profile.values())
+                .collect(Maps.toImmutableEnumMap(profile -> profile, profile -> profile.newClient(ROOT)));
     }
 
     /**
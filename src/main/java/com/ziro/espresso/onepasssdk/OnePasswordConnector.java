@@ -32,7 +32,8 @@ import retrofit2.converter.jackson.JacksonConverterFactory;
  *
  * <p>This connector manages secure connections to the 1Password Connect Server with configurable
  * SSL/TLS settings and authentication. It uses default timeout values for connection (3s),
- * read (30s), and write (30s) operations.
+ * read (30s), and write (30s) operations. Its client is derived from the low-latency shared client
+ * of {@link OkHttpClientFactory}, sharing its connection pool and dispatcher.
  *
  * <p>Example usage:
  * <pre>{@code
@@ -129,11 +130,14 @@ public class OnePasswordConnector {
                 .addConverterFactory(JacksonConverterFactory.create(objectMapper))
                 .addCallAdapterFactory(new SynchronousCallAdapterFactory<>());
 
-        OkHttpClient.Builder okHttpClientBuilder = new OkHttpClient.Builder();
+        OkHttpClient.Builder okHttpClientBuilder =
+                OkHttpClientFactory.newClientBuilder(OkHttpClientFactory.Profile.LOW_LATENCY);
         okHttpClientBuilder
                 .connectTimeout(DEFAULT_CONNECTION_TIMEOUT.getSeconds(), TimeUnit.SECONDS)
                 .readTimeout(DEFAULT_READ_TIMEOUT.getSeconds(), TimeUnit.SECONDS)
                 .writeTimeout(DEFAULT_WRITE_TIMEOUT.getSeconds(), TimeUnit.SECONDS)
+                // Otherwise the call timeout of the shared client would cut reads short of their own timeout
+                .callTimeout(0, TimeUnit.SECONDS)
                 .hostnameVerifier((s, sslSession) -> s.equalsIgnoreCase(sslSession.getPeerHost()));
 
         SSLSocketFactory sslSocketFactory = OkHttpClientFactory.buildSocketFactory(trustManager);
@@ -0,0 +1,47 @@
+package com.ziro.espresso.streams;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * Groups consecutive elements of a source spliterator into lists of up to {@code batchSize} elements, pulling only
+ * as many elements as the current batch needs.
+ */
+final class BatchingSpliterator<T> extends Spliterators.AbstractSpliterator<List<T>> {
+
+    /**
+     * Caps the capacity batches are allocated with, so that a huge batch size does not allocate a huge array for
+     * a short stream.
+     */
+    static final int MAX_INITIAL_CAPACITY = 1024;
+
+    private final Spliterator<T> source;
+    private final int batchSize;
+
+    BatchingSpliterator(Spliterator<T> source, int batchSize) {
+        super(estimateBatchCount(source.estimateSize(), batchSize), (source.characteristics() & ORDERED) | NONNULL);
+        this.source = source;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super List<T>> action) {
+        List<T> batch = new ArrayList<>(Math.min(batchSize, MAX_INITIAL_CAPACITY));
+        while (batch.size() < batchSize && source.tryAdvance(batch::add)) {
+            // Keeps pulling until the batch is full or the source is exhausted
+        }
+        if (batch.isEmpty()) {
+            return false;
+        }
+        action.accept(Collections.unmodifiableList(batch));
+        return true;
+    }
+
+    private static long estimateBatchCount(long sourceSize, int batchSize) {
+        return sourceSize == Long.MAX_VALUE ? Long.MAX_VALUE : (sourceSize + batchSize - 1) / batchSize;
+    }
+}
@@ -0,0 +1,328 @@
+package com.ziro.espresso.streams;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import jakarta.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A HyperLogLog sketch, estimating the number of distinct elements of a stream in a few kilobytes of memory
+ * instead of a set holding all of them.
+ *
+ * <p>Every element is hashed to 64 bits. The first {@code precision} bits pick one of 2<sup>precision</sup>
+ * registers, which remembers the longest run of leading zeros seen in the remaining bits. The estimate is derived
+ * from all registers with Ertl's improved estimator, which stays unbiased from tiny to very large cardinalities
+ * without the empirical correction tables of HyperLogLog++.
+ *
+ * <p>The relative standard error is about {@code 1.04 / sqrt(2^precision)}, e.g. 0.81% with the default precision
+ * of 14 for 16 KiB of registers, and 0.41% with 16 for 64 KiB.
+ *
+ * <p>Sketches with the same precision can be {@linkplain #merge merged}, giving the same result as a single
+ * sketch fed with both inputs. Partial sketches of parallel streams, or of different services, can therefore be
+ * combined, the latter after a round trip through {@link #toByteArray()} and {@link #fromByteArray(byte[])}.
+ *
+ * <p>Instances are mutable and not thread-safe.
+ *
+ * <p>Example usage:
+ * <pre>{@code
+ * HyperLogLog users = events.stream().map(Event::userId).collect(MoreCollectors.toHyperLogLog(14));
+ * long distinctUsers = users.estimate();
+ *
+ * byte[] partial = users.toByteArray();
+ * }</pre>
+ *
+ * @see MoreCollectors#toHyperLogLog(int)
+ */
+public final class HyperLogLog {
+
+    /**
+     * The precision used by {@link #create()}.
+     */
+    public static final int DEFAULT_PRECISION = 14;
+
+    public static final int MIN_PRECISION = 4;
+
+    public static final int MAX_PRECISION = 18;
+
+    /**
+     * Leading bytes of the serialized form ("ZHLL"), so that unrelated data is rejected early.
+     */
+    private static final int SERIAL_COOKIE = 0x5A484C4C;
+
+    private static final int REGISTER_BITS = 6;
+
+    private final int precision;
+    private final byte[] registers;
+
+    private HyperLogLog(int precision, byte[] registers) {
+        this.precision = precision;
+        this.registers = registers;
+    }
+
+    /**
+     * Creates an empty sketch with the {@linkplain #DEFAULT_PRECISION default precision}.
+     *
+     * @return a new sketch
+     */
+    public static HyperLogLog create() {
+        return withPrecision(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Creates an empty sketch using 2<sup>precision</sup> registers.
+     *
+     * @param precision the number of hash bits used to pick a register, between {@value #MIN_PRECISION} and
+     *                  {@value #MAX_PRECISION}
+     * @return a new sketch
+     * @throws IllegalArgumentException if {@code precision} is out of range
+     */
+    public static HyperLogLog withPrecision(int precision) {
+        Preconditions.checkArgument(
+                precision >= MIN_PRECISION && precision <= MAX_PRECISION,
+                "precision must be between [%s] and [%s] but was [%s].",
+                MIN_PRECISION,
+                MAX_PRECISION,
+                precision);
+        return new HyperLogLog(precision, new byte[1 << precision]);
+    }
+
+    /**
+     * Reads a sketch written by {@link #toByteArray()}.
+     *
+     * @param bytes the serialized sketch
+     * @return the deserialized sketch
+     * @throws IllegalArgumentException if {@code bytes} is not a serialized sketch
+     */
+    public static HyperLogLog fromByteArray(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        Preconditions.checkArgument(
+                bytes.length > Integer.BYTES && buffer.getInt() == SERIAL_COOKIE,
+                "Bytes do not hold a serialized HyperLogLog.");
+        int precision = buffer.get();
+        Preconditions.checkArgument(
+                precision >= MIN_PRECISION
+                        && precision <= MAX_PRECISION
+                        && buffer.remaining() == packedSizeInBytes(1 << precision),
+                "Bytes do not hold a serialized HyperLogLog.");
+        byte[] registers = new byte[1 << precision];
+        int maxValue = Long.SIZE - precision + 1;
+        long bits = 0;
+        int bitCount = 0;
+        for (int i = 0; i < registers.length; i++) {
+            if (bitCount < REGISTER_BITS) {
+                bits = (bits << Byte.SIZE) | (buffer.get() & 0xFF);
+                bitCount += Byte.SIZE;
+            }
+            bitCount -= REGISTER_BITS;
+            registers[i] = (byte) ((bits >>> bitCount) & ((1 << REGISTER_BITS) - 1));
+            Preconditions.checkArgument(
+                    registers[i] <= maxValue,
+                    "Registers of a serialized HyperLogLog of precision [%s] must be <= [%s] but register [%s] is [%s].",
+                    precision,
+                    maxValue,
+                    i,
+                    registers[i]);
+        }
+        return new HyperLogLog(precision, registers);
+    }
+
+    /**
+     * Adds an element, hashed from its {@link Object#hashCode()}.
+     *
+     * <p>Elements with equal hash codes are counted once, so this is only as good as the element's hash code. For
+     * very large cardinalities, in the billions, or for elements with a weak hash code, use {@link #addHash(long)}
+     * with a proper 64 bit hash instead, e.g. from Guava's {@code Hashing.murmur3_128()}.
+     *
+     * @param element the element to add, may be null
+     */
+    public void add(@Nullable Object element) {
+        addHash(mix(Objects.hashCode(element)));
+    }
+
+    /**
+     * Adds an element by its 64 bit hash. The hash must be well distributed over all 64 bits.
+     *
+     * @param hash the hash of the element to add
+     */
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (Long.SIZE - precision));
+        int maxValue = Long.SIZE - precision + 1;
+        int value = Math.min(Long.numberOfLeadingZeros(hash << precision) + 1, maxValue);
+        if (value > registers[index]) {
+            registers[index] = (byte) value;
+        }
+    }
+
+    /**
+     * Merges another sketch into this one, which then estimates the distinct count of both inputs together. The
+     * other sketch is left unchanged.
+     *
+     * @param other the sketch to merge, with the same precision
+     * @return this sketch
+     * @throws IllegalArgumentException if the precisions differ
+     */
+    public HyperLogLog merge(HyperLogLog other) {
+        Preconditions.checkArgument(
+                precision == other.precision,
+                "Cannot merge a HyperLogLog of precision [%s] into one of precision [%s].",
+                other.precision,
+                precision);
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns the estimated number of distinct elements added so far.
+     *
+     * @return the estimate, 0 for an empty sketch
+     */
+    public long estimate() {
+        int maxValue = Long.SIZE - precision + 1;
+        int[] histogram = new int[maxValue + 1];
+        for (byte register : registers) {
+            histogram[register]++;
+        }
+        int m = registers.length;
+        if (histogram[0] == m) {
+            return 0;
+        }
+        double denominator = m * tau(1 - (double) histogram[maxValue] / m);
+        for (int value = maxValue - 1; value >= 1; value--) {
+            denominator = 0.5 * (denominator + histogram[value]);
+        }
+        denominator += m * sigma((double) histogram[0] / m);
+        double alpha = 1 / (2 * Math.log(2));
+        return Math.round(alpha * m * m / denominator);
+    }
+
+    /**
+     * Returns the precision of this sketch.
+     *
+     * @return the number of hash bits used to pick a register
+     */
+    public int precision() {
+        return precision;
+    }
+
+    /**
+     * Returns the relative standard error of the estimates of this sketch, {@code 1.04 / sqrt(2^precision)}.
+     *
+     * @return the relative standard error, e.g. 0.0081 for 0.81%
+     */
+    public double relativeStandardError() {
+        return 1.04 / Math.sqrt(registers.length);
+    }
+
+    /**
+     * Returns the number of bytes {@link #toByteArray()} will produce.
+     *
+     * @return the serialized size
+     */
+    public int serializedSizeInBytes() {
+        return Integer.BYTES + Byte.BYTES + packedSizeInBytes(registers.length);
+    }
+
+    /**
+     * Serializes this sketch in a compact binary form, packing registers on 6 bits, that can be read back with
+     * {@link #fromByteArray(byte[])}.
+     *
+     * @return the serialized sketch
+     */
+    public byte[] toByteArray() {
+        ByteBuffer buffer = ByteBuffer.allocate(serializedSizeInBytes());
+        buffer.putInt(SERIAL_COOKIE);
+        buffer.put((byte) precision);
+        long bits = 0;
+        int bitCount = 0;
+        for (byte register : registers) {
+            bits = (bits << REGISTER_BITS) | register;
+            bitCount += REGISTER_BITS;
+            while (bitCount >= Byte.SIZE) {
+                bitCount -= Byte.SIZE;
+                buffer.put((byte) (bits >>> bitCount));
+            }
+        }
+        if (bitCount > 0) {
+            buffer.put((byte) (bits << (Byte.SIZE - bitCount)));
+        }
+        return buffer.array();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        return o instanceof HyperLogLog other
+                && precision == other.precision
+                && Arrays.equals(registers, other.registers);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * precision + Arrays.hashCode(registers);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("precision", precision)
+                .add("estimate", estimate())
+                .toString();
+    }
+
+    private static int packedSizeInBytes(int registerCount) {
+        return (registerCount * REGISTER_BITS + Byte.SIZE - 1) / Byte.SIZE;
+    }
+
+    /**
+     * Spreads a 32 bit hash code over 64 bits, with the finalization step of MurmurHash3.
+     */
+    private static long mix(int hashCode) {
+        long hash = hashCode;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static double sigma(double x) {
+        if (x == 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double y = 1;
+        double z = x;
+        double previous;
+        do {
+            x *= x;
+            previous = z;
+            z += x * y;
+            y += y;
+        } while (z != previous);
+        return z;
+    }
+
+    private static double tau(double x) {
+        if (x == 0 || x == 1) {
+            return 0;
+        }
+        double y = 1;
+        double z = 1 - x;
+        double previous;
+        do {
+            x = Math.sqrt(x);
+            previous = z;
+            y *= 0.5;
+            z -= Math.pow(1 - x, 2) * y;
+        } while (z != previous);
+        return z / 3;
+    }
+}
@@ -1,9 +1,20 @@
 package com.ziro.espresso.streams;
 
 import com.google.common.base.Preconditions;
+import jakarta.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collector;
-import java.util.stream.Collectors;
 
 /**
  * Utility class providing specialized collectors for Java Stream API operations
@@ -12,9 +23,18 @@ import java.util.stream.Collectors;
  * <p>This class contains collectors that are particularly useful when working with
  * streams where you need to ensure specific collection requirements, such as
  * exactly one element or at most one element.
+ *
+ * <p>It also contains bounded ranking collectors, such as top k or all elements sharing
+ * the smallest key, and sketch collectors for approximate distinct counts and quantiles,
+ * which only retain what the result needs instead of the whole stream.
+ *
+ * <p>Finally, it contains indexing and grouping collectors that accumulate into one private
+ * map per worker of a parallel stream and merge them once at the end.
  */
 public final class MoreCollectors {
 
+    private static final String DUPLICATE_KEY_TEMPLATE = "Expected unique '%s' keys but got duplicate key [%s].";
+
     private MoreCollectors() {}
 
     /**
@@ -22,6 +42,8 @@ public final class MoreCollectors {
      *
      * <p>This collector is useful in scenarios where you expect a stream to contain
      * precisely one element, and want to fail fast if this constraint is violated.
+     * It only ever holds one element and throws as soon as a second one is collected,
+     * so it runs in constant memory, also on parallel streams.
      *
      * <pre>{@code
      * String result = stream.collect(MoreCollectors.exactlyOne("user"));
@@ -35,12 +57,13 @@ public final class MoreCollectors {
      *         one element, with a message including the provided description
      */
     public static <T> Collector<T, Object, T> exactlyOne(String description) {
-        return Collectors.collectingAndThen(Collectors.toList(), list -> {
-            Preconditions.checkState(
-                    list.size() == 1,
-                    "Expected exactly [1] '%s' match but got [%s].".formatted(description, list.size()));
-            return list.get(0);
-        });
+        return singleElement(
+                "Expected exactly [1] '%s' match but got at least [2].",
+                description, holder -> {
+                    Preconditions.checkState(
+                            holder.present, "Expected exactly [1] '%s' match but got [0].", description);
+                    return holder.element;
+                });
     }
 
     /**
@@ -49,7 +72,9 @@ public final class MoreCollectors {
      * <p>This collector provides a more strict alternative to {@code findFirst()}
      * by explicitly validating that no more than one element exists in the stream.
      * While {@code findFirst()} silently ignores additional elements, this collector
-     * will fail if multiple elements are present.
+     * will fail if multiple elements are present. It only ever holds one element and
+     * throws as soon as a second one is collected, so it runs in constant memory, also on
+     * parallel streams.
      *
      * <pre>{@code
      * Optional<String> result = stream.collect(MoreCollectors.atMostOne("user"));
@@ -64,10 +89,542 @@ public final class MoreCollectors {
      *         with a message including the provided description
      */
     public static <T> Collector<T, Object, Optional<T>> atMostOne(String description) {
-        return Collectors.collectingAndThen(Collectors.toList(), list -> {
-            Preconditions.checkState(
-                    list.size() <= 1, "Expected at most [1] '%s' but got [%s].".formatted(description, list.size()));
-            return list.isEmpty() ? Optional.empty() : Optional.of(list.get(0));
-        });
+        return singleElement(
+                "Expected at most [1] '%s' but got at least [2].",
+                description, holder -> holder.present ? Optional.of(holder.element) : Optional.empty());
+    }
+
+    /**
+     * Creates a collector that keeps the {@code k} greatest elements of the stream according to the given
+     * comparator, returned from greatest to least.
+     *
+     * <p>This is a bounded alternative to {@code sorted(comparator.reversed()).limit(k)}: elements go through a
+     * heap of at most {@code k} entries, so collecting {@code n} elements takes O(n log k) time and O(k) memory
+     * instead of sorting the whole stream. Parallel streams are supported, partial heaps being merged into one
+     * another. Among elements that compare equal, which ones are kept is unspecified.
+     *
+     * <pre>{@code
+     * List<Account> biggest = accounts.stream()
+     *         .collect(MoreCollectors.topK(100, Comparator.comparing(Account::balance)));
+     * }</pre>
+     *
+     * @param k The maximum number of elements to keep, may be 0
+     * @param comparator The comparator used to rank elements
+     * @param <T> The type of elements in the stream
+     * @return A collector yielding a new list of at most {@code k} elements, greatest first
+     * @throws IllegalArgumentException if {@code k} is negative
+     */
+    public static <T> Collector<T, Object, List<T>> topK(int k, Comparator<? super T> comparator) {
+        Preconditions.checkArgument(k >= 0, "k must be >= 0 but was [%s].", k);
+        Preconditions.checkNotNull(comparator, "comparator must not be null.");
+        return hideAccumulator(Collector.<T, TopKHeap<T>, List<T>>of(
+                () -> new TopKHeap<>(k, comparator), TopKHeap::add, TopKHeap::merge, TopKHeap::toSortedList));
+    }
+
+    /**
+     * Creates a collector that keeps the {@code k} least elements of the stream according to the given
+     * comparator, returned from least to greatest.
+     *
+     * <p>This is the counterpart of {@link #topK(int, Comparator)}, and a bounded alternative to
+     * {@code sorted(comparator).limit(k)} with the same O(n log k) time and O(k) memory.
+     *
+     * <pre>{@code
+     * List<Request> fastest = requests.stream()
+     *         .collect(MoreCollectors.bottomK(10, Comparator.comparing(Request::duration)));
+     * }</pre>
+     *
+     * @param k The maximum number of elements to keep, may be 0
+     * @param comparator The comparator used to rank elements
+     * @param <T> The type of elements in the stream
+     * @return A collector yielding a new list of at most {@code k} elements, least first
+     * @throws IllegalArgumentException if {@code k} is negative
+     */
+    public static <T> Collector<T, Object, List<T>> bottomK(int k, Comparator<? super T> comparator) {
+        Preconditions.checkNotNull(comparator, "comparator must not be null.");
+        return topK(k, Collections.reverseOrder(comparator));
+    }
+
+    /**
+     * Creates a collector that returns every element whose key is the smallest of the stream.
+     *
+     * <p>Unlike {@code min(comparing(keyFunction))}, ties are not dropped: all elements sharing the smallest key
+     * are returned, in encounter order. Elements are processed in a single pass, the key function being applied
+     * once per element, and only the current minimum and its ties are retained.
+     *
+     * <pre>{@code
+     * List<Task> nextDue = tasks.stream().collect(MoreCollectors.allMinBy(Task::dueDate));
+     * }</pre>
+     *
+     * @param keyFunction The function extracting the key elements are compared on
+     * @param <T> The type of elements in the stream
+     * @param <K> The type of the key
+     * @return A collector yielding a new list of the elements with the smallest key, empty for an empty stream
+     */
+    public static <T, K extends Comparable<? super K>> Collector<T, Object, List<T>> allMinBy(
+            Function<? super T, ? extends K> keyFunction) {
+        return allExtremesBy(keyFunction, Comparator.<K>reverseOrder());
+    }
+
+    /**
+     * Creates a collector that returns every element whose key is the largest of the stream.
+     *
+     * <p>Unlike {@code max(comparing(keyFunction))}, ties are not dropped: all elements sharing the largest key
+     * are returned, in encounter order. Elements are processed in a single pass, the key function being applied
+     * once per element, and only the current maximum and its ties are retained.
+     *
+     * <pre>{@code
+     * List<Player> winners = players.stream().collect(MoreCollectors.allMaxBy(Player::score));
+     * }</pre>
+     *
+     * @param keyFunction The function extracting the key elements are compared on
+     * @param <T> The type of elements in the stream
+     * @param <K> The type of the key
+     * @return A collector yielding a new list of the elements with the largest key, empty for an empty stream
+     */
+    public static <T, K extends Comparable<? super K>> Collector<T, Object, List<T>> allMaxBy(
+            Function<? super T, ? extends K> keyFunction) {
+        return allExtremesBy(keyFunction, Comparator.<K>naturalOrder());
+    }
+
+    /**
+     * Creates a collector that feeds the elements of the stream into a {@link HyperLogLog} sketch, for estimating
+     * their distinct count in bounded memory instead of collecting them into a set.
+     *
+     * <p>Elements are hashed from their {@link Object#hashCode()}; see {@link #toHyperLogLog(int, ToLongFunction)}
+     * for supplying a 64 bit hash. The collector is unordered and merges partial sketches of parallel streams. The
+     * returned sketch can be merged further, e.g. with the partial sketches of other services.
+     *
+     * <pre>{@code
+     * long distinctUsers = events.stream().map(Event::userId).collect(MoreCollectors.toHyperLogLog(14)).estimate();
+     * }</pre>
+     *
+     * @param precision The precision of the sketch, see {@link HyperLogLog#withPrecision(int)}
+     * @param <T> The type of elements in the stream
+     * @return A collector yielding a new sketch of the stream's elements
+     * @throws IllegalArgumentException if {@code precision} is out of range
+     */
+    public static <T> Collector<T, Object, HyperLogLog> toHyperLogLog(int precision) {
+        HyperLogLog.withPrecision(precision);
+        return hideAccumulator(Collector.<T, HyperLogLog>of(
+                () -> HyperLogLog.withPrecision(precision),
+                HyperLogLog::add,
+                HyperLogLog::merge,
+                Collector.Characteristics.UNORDERED));
+    }
+
+    /**
+     * Creates a collector that feeds the elements of the stream into a {@link HyperLogLog} sketch, hashing them with
+     * the given function.
+     *
+     * <p>This is {@link #toHyperLogLog(int)} for elements whose {@link Object#hashCode()} is too weak, or for
+     * cardinalities in the billions where 32 bit hash codes collide too often.
+     *
+     * <pre>{@code
+     * HashFunction murmur = Hashing.murmur3_128();
+     * HyperLogLog emails = users.stream()
+     *         .map(User::email)
+     *         .collect(MoreCollectors.toHyperLogLog(16, email -> murmur.hashUnencodedChars(email).asLong()));
+     * }</pre>
+     *
+     * @param precision The precision of the sketch, see {@link HyperLogLog#withPrecision(int)}
+     * @param hashFunction The function computing a well distributed 64 bit hash of an element
+     * @param <T> The type of elements in the stream
+     * @return A collector yielding a new sketch of the stream's elements
+     * @throws IllegalArgumentException if {@code precision} is out of range
+     */
+    public static <T> Collector<T, Object, HyperLogLog> toHyperLogLog(
+            int precision, ToLongFunction<? super T> hashFunction) {
+        HyperLogLog.withPrecision(precision);
+        Preconditions.checkNotNull(hashFunction, "hashFunction must not be null.");
+        return hideAccumulator(Collector.<T, HyperLogLog>of(
+                () -> HyperLogLog.withPrecision(precision),
+                (sketch, element) -> sketch.addHash(hashFunction.applyAsLong(element)),
+                HyperLogLog::merge,
+                Collector.Characteristics.UNORDERED));
+    }
+
+    /**
+     * Creates a collector that feeds a value of each element into a {@link QuantileSketch}, for estimating
+     * percentiles in bounded memory instead of sorting the whole stream.
+     *
+     * <p>The collector is unordered and merges partial sketches of parallel streams. The returned sketch can be
+     * merged further, e.g. with the partial sketches of other services.
+     *
+     * <pre>{@code
+     * double p99 = requests.stream()
+     *         .collect(MoreCollectors.toQuantileSketch(200, request -> request.duration().toMillis()))
+     *         .quantile(0.99);
+     * }</pre>
+     *
+     * @param k The accuracy of the sketch, see {@link QuantileSketch#withAccuracy(int)}
+     * @param valueFunction The function extracting the value to summarize, never NaN
+     * @param <T> The type of elements in the stream
+     * @return A collector yielding a new sketch of the extracted values
+     * @throws IllegalArgumentException if {@code k} is out of range
+     */
+    public static <T> Collector<T, Object, QuantileSketch> toQuantileSketch(
+            int k, ToDoubleFunction<? super T> valueFunction) {
+        QuantileSketch.withAccuracy(k);
+        Preconditions.checkNotNull(valueFunction, "valueFunction must not be null.");
+        return hideAccumulator(Collector.<T, QuantileSketch>of(
+                () -> QuantileSketch.withAccuracy(k),
+                (sketch, element) -> sketch.add(valueFunction.applyAsDouble(element)),
+                QuantileSketch::merge,
+                Collector.Characteristics.UNORDERED));
+    }
+
+    /**
+     * Creates a collector that indexes the elements of the stream by a key expected to be unique, failing as soon as
+     * two elements share a key.
+     *
+     * <p>This is the indexing counterpart of {@link #exactlyOne(String)}: where
+     * {@code Collectors.toMap(keyFunction, identity())} reports a duplicate key without context, this collector
+     * fails with a message naming what was indexed and the duplicate key. It accumulates like
+     * {@link #groupingByPartitioned(Function, int)}, so it scales on parallel streams.
+     *
+     * <pre>{@code
+     * Map<String, User> usersByEmail = users.stream().collect(MoreCollectors.toUniqueIndex(User::email, "user email"));
+     * }</pre>
+     *
+     * @param keyFunction The function extracting the unique key of an element, never null
+     * @param description A descriptive string used in the exception message to identify the keys
+     * @param <T> The type of elements in the stream, which must not contain null elements
+     * @param <K> The type of keys
+     * @return A collector yielding a new mutable map from each key to its element
+     * @throws NullPointerException if an element or its key is null
+     * @throws IllegalStateException if two elements share a key, with a message including the provided description
+     *         and the duplicate key
+     */
+    public static <T, K> Collector<T, Object, Map<K, T>> toUniqueIndex(
+            Function<? super T, ? extends K> keyFunction, String description) {
+        Preconditions.checkNotNull(keyFunction, "keyFunction must not be null.");
+        return hideAccumulator(Collector.<T, Partitions<K, T>, Map<K, T>>of(
+                Partitions::new,
+                (partitions, element) -> {
+                    Preconditions.checkNotNull(element, "Expected non null '%s' elements.", description);
+                    K key = partitions.checkKey(keyFunction.apply(element), description);
+                    Preconditions.checkState(
+                            !partitions.own.containsKey(key), DUPLICATE_KEY_TEMPLATE, description, key);
+                    partitions.own.put(key, element);
+                },
+                Partitions::combine,
+                partitions -> partitions.merge(partitions.size(), (merged, key, element) -> {
+                    Preconditions.checkState(
+                            merged.putIfAbsent(key, element) == null, DUPLICATE_KEY_TEMPLATE, description, key);
+                })));
+    }
+
+    /**
+     * Creates a collector grouping the elements of the stream by key, like {@code Collectors.groupingBy(keyFunction)},
+     * but built to scale on parallel streams.
+     *
+     * <p>Each worker of a parallel stream groups its own share of the elements into a private map, without any
+     * contention, and those partial maps are only merged once at the end, in parallel, into a map presized for
+     * {@code expectedKeys}. {@code Collectors.groupingBy} instead merges partial maps pairwise, copying entries at
+     * every level, and {@code Collectors.groupingByConcurrent} makes all workers contend on a single
+     * {@link ConcurrentHashMap}. On a sequential stream, the elements are grouped into a single map with no merge.
+     *
+     * <pre>{@code
+     * Map<String, List<Order>> ordersByCustomer = orders.parallelStream()
+     *         .collect(MoreCollectors.groupingByPartitioned(Order::customerId, 100_000));
+     * }</pre>
+     *
+     * @param keyFunction The function extracting the key of an element, never null
+     * @param expectedKeys The expected number of distinct keys, to presize the merged map
+     * @param <T> The type of elements in the stream
+     * @param <K> The type of keys
+     * @return A collector yielding a new mutable map from each key to its elements; with a parallel stream, the
+     *         elements of a key are in no particular order
+     * @throws IllegalArgumentException if {@code expectedKeys} is negative
+     * @throws NullPointerException if the key of an element is null
+     */
+    public static <T, K> Collector<T, Object, Map<K, List<T>>> groupingByPartitioned(
+            Function<? super T, ? extends K> keyFunction, int expectedKeys) {
+        return groupingByPartitioned(keyFunction, Function.identity(), expectedKeys);
+    }
+
+    /**
+     * Creates a collector grouping values extracted from the elements of the stream by key, like
+     * {@code Collectors.groupingBy(keyFunction, Collectors.mapping(valueFunction, Collectors.toList()))}, but built
+     * to scale on parallel streams as described in {@link #groupingByPartitioned(Function, int)}.
+     *
+     * <pre>{@code
+     * Map<String, List<String>> emailsByDomain = users.parallelStream()
+     *         .collect(MoreCollectors.groupingByPartitioned(User::domain, User::email, 1_000));
+     * }</pre>
+     *
+     * @param keyFunction The function extracting the key of an element, never null
+     * @param valueFunction The function extracting the value of an element
+     * @param expectedKeys The expected number of distinct keys, to presize the merged map
+     * @param <T> The type of elements in the stream
+     * @param <K> The type of keys
+     * @param <V> The type of values
+     * @return A collector yielding a new mutable map from each key to its values; with a parallel stream, the values
+     *         of a key are in no particular order
+     * @throws IllegalArgumentException if {@code expectedKeys} is negative
+     * @throws NullPointerException if the key of an element is null
+     */
+    public static <T, K, V> Collector<T, Object, Map<K, List<V>>> groupingByPartitioned(
+            Function<? super T, ? extends K> keyFunction,
+            Function<? super T, ? extends V> valueFunction,
+            int expectedKeys) {
+        Preconditions.checkNotNull(keyFunction, "keyFunction must not be null.");
+        Preconditions.checkNotNull(valueFunction, "valueFunction must not be null.");
+        Preconditions.checkArgument(expectedKeys >= 0, "expectedKeys must be >= 0 but was [%s].", expectedKeys);
+        return hideAccumulator(Collector.<T, Partitions<K, List<V>>, Map<K, List<V>>>of(
+                Partitions::new,
+                (partitions, element) -> partitions
+                        .own
+                        .computeIfAbsent(
+                                partitions.checkKey(keyFunction.apply(element), "grouping"), key -> new ArrayList<>())
+                        .add(valueFunction.apply(element)),
+                Partitions::combine,
+                partitions -> partitions.merge(
+                        expectedKeys,
+                        (merged, key, values) -> merged.merge(key, values, (existing, more) -> {
+                            existing.addAll(more);
+                            return existing;
+                        })),
+                Collector.Characteristics.UNORDERED));
+    }
+
+    /**
+     * Builds a collector that keeps at most one element in a fixed-size holder and throws as soon as a second
+     * element reaches it, either in the accumulator or when parallel partial results are combined. A stream with
+     * too many matches therefore fails on the second one instead of being buffered to the end.
+     */
+    private static <T, R> Collector<T, Object, R> singleElement(
+            String tooManyTemplate, String description, Function<SingleElementHolder<T>, R> finisher) {
+        return hideAccumulator(Collector.<T, SingleElementHolder<T>, R>of(
+                () -> new SingleElementHolder<>(tooManyTemplate, description),
+                SingleElementHolder::add,
+                SingleElementHolder::merge,
+                finisher));
+    }
+
+    private static <T, K> Collector<T, Object, List<T>> allExtremesBy(
+            Function<? super T, ? extends K> keyFunction, Comparator<? super K> keyComparator) {
+        Preconditions.checkNotNull(keyFunction, "keyFunction must not be null.");
+        return hideAccumulator(Collector.<T, Extremes<T, K>, List<T>>of(
+                () -> new Extremes<>(keyFunction, keyComparator),
+                Extremes::add,
+                Extremes::merge,
+                extremes -> extremes.elements));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T, R> Collector<T, Object, R> hideAccumulator(Collector<T, ?, R> collector) {
+        return (Collector<T, Object, R>) collector;
+    }
+
+    private static final class SingleElementHolder<T> {
+
+        private final String tooManyTemplate;
+        private final String description;
+
+        @Nullable
+        private T element;
+
+        private boolean present;
+
+        private SingleElementHolder(String tooManyTemplate, String description) {
+            this.tooManyTemplate = tooManyTemplate;
+            this.description = description;
+        }
+
+        private void add(@Nullable T newElement) {
+            Preconditions.checkState(!present, tooManyTemplate, description);
+            element = newElement;
+            present = true;
+        }
+
+        private SingleElementHolder<T> merge(SingleElementHolder<T> other) {
+            if (other.present) {
+                add(other.element);
+            }
+            return this;
+        }
+    }
+
+    /**
+     * A binary min-heap of at most {@code k} elements. Its root is the least of the kept elements, so a new element
+     * only has to beat the root to get in, replacing it with a single sift down.
+     */
+    private static final class TopKHeap<T> {
+
+        private static final int MAX_INITIAL_CAPACITY = 256;
+
+        private final int k;
+        private final Comparator<? super T> comparator;
+        private Object[] heap;
+        private int size;
+
+        private TopKHeap(int k, Comparator<? super T> comparator) {
+            this.k = k;
+            this.comparator = comparator;
+            this.heap = new Object[Math.min(k, MAX_INITIAL_CAPACITY)];
+        }
+
+        private void add(T element) {
+            if (size < k) {
+                if (size == heap.length) {
+                    heap = Arrays.copyOf(heap, (int) Math.min(k, 2L * size));
+                }
+                siftUp(size++, element);
+            } else if (k > 0 && comparator.compare(element, elementAt(0)) > 0) {
+                siftDown(0, element);
+            }
+        }
+
+        private TopKHeap<T> merge(TopKHeap<T> other) {
+            TopKHeap<T> larger = size >= other.size ? this : other;
+            TopKHeap<T> smaller = larger == this ? other : this;
+            for (int i = 0; i < smaller.size; i++) {
+                larger.add(smaller.elementAt(i));
+            }
+            return larger;
+        }
+
+        private List<T> toSortedList() {
+            List<T> sorted = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                sorted.add(elementAt(i));
+            }
+            sorted.sort(Collections.reverseOrder(comparator));
+            return sorted;
+        }
+
+        private void siftUp(int index, T element) {
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                T parentElement = elementAt(parent);
+                if (comparator.compare(element, parentElement) >= 0) {
+                    break;
+                }
+                heap[index] = parentElement;
+                index = parent;
+            }
+            heap[index] = element;
+        }
+
+        private void siftDown(int index, T element) {
+            int half = size >>> 1;
+            while (index < half) {
+                int child = 2 * index + 1;
+                T childElement = elementAt(child);
+                int right = child + 1;
+                if (right < size && comparator.compare(elementAt(right), childElement) < 0) {
+                    child = right;
+                    childElement = elementAt(right);
+                }
+                if (comparator.compare(element, childElement) <= 0) {
+                    break;
+                }
+                heap[index] = childElement;
+                index = child;
+            }
+            heap[index] = element;
+        }
+
+        @SuppressWarnings("unchecked")
+        private T elementAt(int index) {
+            return (T) heap[index];
+        }
+    }
+
+    /**
+     * The elements sharing the best key seen so far, "best" being the greatest according to the key comparator.
+     */
+    private static final class Extremes<T, K> {
+
+        private final Function<? super T, ? extends K> keyFunction;
+        private final Comparator<? super K> keyComparator;
+        private final List<T> elements = new ArrayList<>();
+
+        @Nullable
+        private K key;
+
+        private Extremes(Function<? super T, ? extends K> keyFunction, Comparator<? super K> keyComparator) {
+            this.keyFunction = keyFunction;
+            this.keyComparator = keyComparator;
+        }
+
+        private void add(T element) {
+            K elementKey = keyFunction.apply(element);
+            if (elements.isEmpty()) {
+                key = elementKey;
+                elements.add(element);
+                return;
+            }
+            int comparison = keyComparator.compare(elementKey, key);
+            if (comparison > 0) {
+                key = elementKey;
+                elements.clear();
+                elements.add(element);
+            } else if (comparison == 0) {
+                elements.add(element);
+            }
+        }
+
+        private Extremes<T, K> merge(Extremes<T, K> other) {
+            if (other.elements.isEmpty()) {
+                return this;
+            }
+            if (elements.isEmpty()) {
+                return other;
+            }
+            int comparison = keyComparator.compare(other.key, key);
+            if (comparison > 0) {
+                return other;
+            }
+            if (comparison == 0) {
+                elements.addAll(other.elements);
+            }
+            return this;
+        }
+    }
+
+    /**
+     * The partial maps of a partitioned collector, one per worker of a parallel stream. Each worker only ever writes
+     * to its own map; combining partial results just gathers the maps, which are merged once by the finisher.
+     */
+    private static final class Partitions<K, V> {
+
+        private final Map<K, V> own = new HashMap<>();
+        private final List<Map<K, V>> all = new ArrayList<>(List.of(own));
+
+        private K checkKey(@Nullable K key, String description) {
+            return Preconditions.checkNotNull(key, "Expected a non null '%s' key.", description);
+        }
+
+        private int size() {
+            return all.stream().mapToInt(Map::size).sum();
+        }
+
+        private Partitions<K, V> combine(Partitions<K, V> other) {
+            all.addAll(other.all);
+            return this;
+        }
+
+        /**
+         * Returns the only partial map as is, or merges all of them into a concurrent map presized for the largest of
+         * {@code expectedKeys} and the size of the largest partial map, one partial map per task.
+         */
+        private Map<K, V> merge(int expectedKeys, PartitionMerger<K, V> merger) {
+            if (all.size() == 1) {
+                return own;
+            }
+            int largestPartition = all.stream().mapToInt(Map::size).max().orElse(0);
+            ConcurrentHashMap<K, V> merged = new ConcurrentHashMap<>(Math.max(expectedKeys, largestPartition));
+            all.parallelStream()
+                    .forEach(partition -> partition.forEach((key, value) -> merger.merge(merged, key, value)));
+            return merged;
+        }
+    }
+
+    @FunctionalInterface
+    private interface PartitionMerger<K, V> {
+
+        void merge(ConcurrentHashMap<K, V> merged, K key, V value);
     }
 }
@@ -0,0 +1,556 @@
+package com.ziro.espresso.streams;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.ziro.espresso.fluent.exceptions.SystemUnhandledException;
+import jakarta.annotation.Nullable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.Cleaner;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Utility class providing stream stages that the Java Stream API lacks.
+ *
+ * <p>{@link #mapConcurrent(Stream, int, Function)} maps a stream through a blocking function, e.g. a call to a
+ * remote service, with a bounded number of calls in flight. Unlike {@code parallelStream()}, this does not tie the
+ * calls to the common {@link java.util.concurrent.ForkJoinPool}, whose parallelism is sized for CPU bound work.
+ *
+ * <p>{@link #batches(Stream, int)}, {@link #batches(Stream, int, Duration)} and {@link #slidingWindows(Stream, int)}
+ * group consecutive elements into lists, e.g. for bulk writes. They are lazy stages that only hold the current batch
+ * or window, so they run in constant memory over arbitrarily large inputs.
+ *
+ * <p>{@link #paginate(Object, Function, Function, Function, int)} streams the items of a paginated API, optionally
+ * fetching the next pages in the background while the current one is consumed.
+ */
+public final class MoreStreams {
+
+    /**
+     * {@code Executors.newVirtualThreadPerTaskExecutor()}, looked up at runtime as it only exists from Java 21 on,
+     * or null when running on an older Java version.
+     */
+    @Nullable
+    private static final MethodHandle NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findVirtualThreadPerTaskExecutor();
+
+    private static final long PLATFORM_THREAD_KEEP_ALIVE_SECONDS = 30;
+
+    private MoreStreams() {}
+
+    /**
+     * Returns a stream of the results of applying the given blocking function to the elements of the given stream,
+     * with at most {@code maxConcurrency} calls running at the same time. Results come out in the encounter order of
+     * the source stream.
+     *
+     * <p>Calls run on virtual threads when the JVM supports them (Java 21 and later), and on a dedicated pool of
+     * {@code maxConcurrency} daemon platform threads otherwise. Elements are pulled from the source lazily: at most
+     * {@code maxConcurrency} elements are in flight or waiting to be consumed at any time, so a slow consumer never
+     * causes unbounded buffering. In encounter order, a slow element holds back the ones after it even if they are
+     * done; see {@link #mapConcurrentUnordered(Stream, int, Function)} when order does not matter.
+     *
+     * <p>As soon as any call fails, the remaining calls are cancelled by interrupting their threads, no more
+     * elements are pulled from the source, and the failure is rethrown to the consumer of the returned stream.
+     * Unchecked exceptions and errors are rethrown as is. Closing the returned stream, e.g. with
+     * try-with-resources after a short-circuiting operation, also cancels the calls still running and closes the
+     * source stream.
+     *
+     * <pre>{@code
+     * List<Account> accounts = MoreStreams.mapConcurrent(accountIds.stream(), 16, accountsClient::getAccount)
+     *         .toList();
+     * }</pre>
+     *
+     * @param stream The source stream
+     * @param maxConcurrency The maximum number of calls to run at the same time, at least 1
+     * @param mapper The blocking function to apply to each element
+     * @param <T> The type of elements of the source stream
+     * @param <R> The type of elements of the returned stream
+     * @return A new sequential stream of the results, in encounter order
+     * @throws IllegalArgumentException if {@code maxConcurrency} is lower than 1
+     */
+    public static <T, R> Stream<R> mapConcurrent(
+            Stream<T> stream, int maxConcurrency, Function<? super T, ? extends R> mapper) {
+        return mapConcurrent(stream, maxConcurrency, mapper, true);
+    }
+
+    /**
+     * Returns a stream of the results of applying the given blocking function to the elements of the given stream,
+     * with at most {@code maxConcurrency} calls running at the same time. Results come out as soon as they are
+     * ready, in no particular order.
+     *
+     * <p>This behaves like {@link #mapConcurrent(Stream, int, Function)}, except that a slow call never holds back
+     * the results of faster ones, which keeps all {@code maxConcurrency} slots busy when call durations vary.
+     *
+     * <pre>{@code
+     * Map<String, Item> items = MoreStreams.mapConcurrentUnordered(titles.stream(), 8, connector::getItem)
+     *         .collect(Collectors.toMap(Item::getTitle, Function.identity()));
+     * }</pre>
+     *
+     * @param stream The source stream
+     * @param maxConcurrency The maximum number of calls to run at the same time, at least 1
+     * @param mapper The blocking function to apply to each element
+     * @param <T> The type of elements of the source stream
+     * @param <R> The type of elements of the returned stream
+     * @return A new sequential stream of the results, in completion order
+     * @throws IllegalArgumentException if {@code maxConcurrency} is lower than 1
+     */
+    public static <T, R> Stream<R> mapConcurrentUnordered(
+            Stream<T> stream, int maxConcurrency, Function<? super T, ? extends R> mapper) {
+        return mapConcurrent(stream, maxConcurrency, mapper, false);
+    }
+
+    /**
+     * Returns a stream of consecutive batches of {@code batchSize} elements of the given stream, the last batch
+     * holding the remaining elements.
+     *
+     * <p>Batches are built lazily as the returned stream is consumed, so only one batch is held in memory at a time
+     * whatever the size of the source. Each batch is a new unmodifiable list that can safely be kept; see
+     * {@link #forEachBatch(Stream, int, Consumer)} for reusing a single buffer instead.
+     *
+     * <pre>{@code
+     * MoreStreams.batches(records.stream(), 500).forEach(bulkClient::write);
+     * }</pre>
+     *
+     * @param stream The source stream
+     * @param batchSize The maximum number of elements per batch, at least 1
+     * @param <T> The type of elements of the source stream
+     * @return A new stream of non-empty batches
+     * @throws IllegalArgumentException if {@code batchSize} is lower than 1
+     */
+    public static <T> Stream<List<T>> batches(Stream<T> stream, int batchSize) {
+        Preconditions.checkArgument(batchSize >= 1, "batchSize must be >= 1 but was [%s].", batchSize);
+        return StreamSupport.stream(new BatchingSpliterator<>(stream.spliterator(), batchSize), stream.isParallel())
+                .onClose(stream::close);
+    }
+
+    /**
+     * Returns a stream of batches of the given stream, each batch being emitted as soon as it holds
+     * {@code maxBatchSize} elements or {@code maxWait} after its first element arrived, whichever comes first.
+     *
+     * <p>This suits sources that produce elements irregularly, e.g. a queue of events: a full batch is sent right
+     * away, and a few stragglers never wait more than {@code maxWait} for a batch to fill up. To honour the time
+     * limit while the source is blocked, elements are pulled from it by a background thread, a virtual thread when
+     * available, and handed over through a buffer of {@code maxBatchSize} elements, or 1024 for larger batch sizes,
+     * so memory stays bounded. A failure of the source is rethrown to the consumer after the elements read before
+     * it. Closing the returned stream stops the background thread and closes the source stream, which is otherwise
+     * only stopped once the returned stream is garbage collected.
+     *
+     * <pre>{@code
+     * try (Stream<List<Event>> batches = MoreStreams.batches(events, 1_000, Duration.ofMillis(200))) {
+     *     batches.forEach(eventSink::publish);
+     * }
+     * }</pre>
+     *
+     * @param stream The source stream
+     * @param maxBatchSize The maximum number of elements per batch, at least 1
+     * @param maxWait The maximum time to wait for a batch to fill up after its first element, positive
+     * @param <T> The type of elements of the source stream
+     * @return A new sequential stream of non-empty batches, in encounter order
+     * @throws IllegalArgumentException if {@code maxBatchSize} is lower than 1 or {@code maxWait} is not positive
+     */
+    public static <T> Stream<List<T>> batches(Stream<T> stream, int maxBatchSize, Duration maxWait) {
+        Preconditions.checkArgument(maxBatchSize >= 1, "maxBatchSize must be >= 1 but was [%s].", maxBatchSize);
+        Preconditions.checkArgument(
+                !maxWait.isNegative() && !maxWait.isZero(), "maxWait must be positive but was [%s].", maxWait);
+        TimedBatchingSpliterator<T> spliterator =
+                new TimedBatchingSpliterator<>(stream.spliterator(), maxBatchSize, maxWait);
+        return StreamSupport.stream(spliterator, false)
+                .onClose(spliterator::cancel)
+                .onClose(stream::close);
+    }
+
+    /**
+     * Passes consecutive batches of {@code batchSize} elements of the given stream to the given action, reusing a
+     * single buffer for all batches.
+     *
+     * <p>Unlike {@link #batches(Stream, int)}, no list is allocated per batch. The list passed to the action is an
+     * unmodifiable view of that buffer: it is only valid during the call, and must be copied if it has to be kept.
+     * Elements are processed in encounter order, even for a parallel stream.
+     *
+     * <pre>{@code
+     * MoreStreams.forEachBatch(rows, 500, batch -> statement.executeBatch(batch));
+     * }</pre>
+     *
+     * @param stream The source stream
+     * @param batchSize The maximum number of elements per batch, at least 1
+     * @param action The action to run on each non-empty batch
+     * @param <T> The type of elements of the source stream
+     * @throws IllegalArgumentException if {@code batchSize} is lower than 1
+     */
+    public static <T> void forEachBatch(Stream<T> stream, int batchSize, Consumer<? super List<T>> action) {
+        Preconditions.checkArgument(batchSize >= 1, "batchSize must be >= 1 but was [%s].", batchSize);
+        List<T> buffer = new ArrayList<>(batchSize);
+        List<T> batch = Collections.unmodifiableList(buffer);
+        stream.forEachOrdered(element -> {
+            buffer.add(element);
+            if (buffer.size() == batchSize) {
+                action.accept(batch);
+                buffer.clear();
+            }
+        });
+        if (!buffer.isEmpty()) {
+            action.accept(batch);
+        }
+    }
+
+    /**
+     * Returns a stream of the sliding windows of {@code windowSize} consecutive elements of the given stream, each
+     * window starting one element after the previous one.
+     *
+     * <p>For instance, the windows of size 3 of {@code [1, 2, 3, 4]} are {@code [1, 2, 3]} and {@code [2, 3, 4]}.
+     * A stream with fewer than {@code windowSize} elements has no window. Only the current window is held in memory.
+     *
+     * <pre>{@code
+     * List<Double> movingAverages = MoreStreams.slidingWindows(prices.stream(), 7)
+     *         .map(week -> week.stream().mapToDouble(Double::doubleValue).average().orElseThrow())
+     *         .toList();
+     * }</pre>
+     *
+     * @param stream The source stream
+     * @param windowSize The number of elements per window, at least 1
+     * @param <T> The type of elements of the source stream
+     * @return A new stream of windows, each a new unmodifiable list
+     * @throws IllegalArgumentException if {@code windowSize} is lower than 1
+     */
+    public static <T> Stream<List<T>> slidingWindows(Stream<T> stream, int windowSize) {
+        return slidingWindows(stream, windowSize, 1);
+    }
+
+    /**
+     * Returns a stream of the sliding windows of {@code windowSize} consecutive elements of the given stream, each
+     * window starting {@code step} elements after the previous one.
+     *
+     * <p>With a {@code step} equal to {@code windowSize}, this returns the full batches of
+     * {@link #batches(Stream, int)}; with a larger {@code step}, elements between windows are skipped. Trailing
+     * elements that do not fill a whole window are dropped.
+     *
+     * @param stream The source stream
+     * @param windowSize The number of elements per window, at least 1
+     * @param step The number of elements between the starts of two consecutive windows, at least 1
+     * @param <T> The type of elements of the source stream
+     * @return A new stream of windows, each a new unmodifiable list
+     * @throws IllegalArgumentException if {@code windowSize} or {@code step} is lower than 1
+     */
+    public static <T> Stream<List<T>> slidingWindows(Stream<T> stream, int windowSize, int step) {
+        Preconditions.checkArgument(windowSize >= 1, "windowSize must be >= 1 but was [%s].", windowSize);
+        Preconditions.checkArgument(step >= 1, "step must be >= 1 but was [%s].", step);
+        return StreamSupport.stream(
+                        new SlidingWindowSpliterator<>(stream.spliterator(), windowSize, step), stream.isParallel())
+                .onClose(stream::close);
+    }
+
+    /**
+     * Returns a stream of the items of a paginated API, fetching each page on the consuming thread when its first
+     * item is needed.
+     *
+     * <p>This is {@link #paginate(Object, Function, Function, Function, int)} with a prefetch depth of 0, which needs
+     * no background thread and so no closing. Pass a positive prefetch depth to hide the latency of each round trip
+     * behind the consumption of the previous pages.
+     *
+     * <pre>{@code
+     * Stream<Account> accounts = MoreStreams.paginate(
+     *         null,
+     *         cursor -> accountsApi.listAccounts(cursor, 500),
+     *         AccountPage::accounts,
+     *         page -> Optional.ofNullable(page.nextCursor()));
+     * }</pre>
+     *
+     * @param firstCursor The cursor of the first page, passed as is to {@code fetchPage}, may be null
+     * @param fetchPage The blocking function fetching the page at a cursor
+     * @param pageItems The function extracting the items of a page
+     * @param nextCursor The function extracting the cursor of the next page, empty on the last page
+     * @param <C> The type of cursors, e.g. a continuation token or a page number
+     * @param <P> The type of pages
+     * @param <T> The type of items
+     * @return A new sequential stream of the items of all pages, in order
+     */
+    public static <C, P, T> Stream<T> paginate(
+            @Nullable C firstCursor,
+            Function<? super C, ? extends P> fetchPage,
+            Function<? super P, ? extends Collection<? extends T>> pageItems,
+            Function<? super P, ? extends Optional<? extends C>> nextCursor) {
+        return paginate(firstCursor, fetchPage, pageItems, nextCursor, 0);
+    }
+
+    /**
+     * Returns a stream of the items of a paginated API, fetching up to {@code prefetchDepth} pages ahead in the
+     * background while the current one is being consumed.
+     *
+     * <p>Pages are fetched lazily, the first one when the first item is needed, and one after the other since each
+     * page gives the cursor of the next. With a positive {@code prefetchDepth}, a background thread, a virtual thread
+     * when available, follows the cursors ahead of the consumer, so at most {@code prefetchDepth + 1} pages are held
+     * in memory. With 0, pages are fetched on the consuming thread when needed, without any background thread.
+     *
+     * <p>A failure to fetch a page is rethrown to the consumer once it has consumed the items of the pages before it.
+     * Closing the returned stream, e.g. with try-with-resources after a short-circuiting operation, stops the
+     * background fetches. A stream that is not closed only has them stopped once it is garbage collected.
+     *
+     * <pre>{@code
+     * try (Stream<Item> items = MoreStreams.paginate(
+     *         0,
+     *         page -> itemsApi.listItems(page, 1_000),
+     *         ItemPage::items,
+     *         page -> page.isLast() ? Optional.empty() : Optional.of(page.number() + 1),
+     *         2)) {
+     *     MoreStreams.forEachBatch(items, 500, repository::saveAll);
+     * }
+     * }</pre>
+     *
+     * @param firstCursor The cursor of the first page, passed as is to {@code fetchPage}, may be null
+     * @param fetchPage The blocking function fetching the page at a cursor
+     * @param pageItems The function extracting the items of a page
+     * @param nextCursor The function extracting the cursor of the next page, empty on the last page
+     * @param prefetchDepth The maximum number of pages to fetch ahead of the one being consumed, 0 to disable
+     *                      prefetching
+     * @param <C> The type of cursors, e.g. a continuation token or a page number
+     * @param <P> The type of pages
+     * @param <T> The type of items
+     * @return A new sequential stream of the items of all pages, in order
+     * @throws IllegalArgumentException if {@code prefetchDepth} is negative
+     */
+    public static <C, P, T> Stream<T> paginate(
+            @Nullable C firstCursor,
+            Function<? super C, ? extends P> fetchPage,
+            Function<? super P, ? extends Collection<? extends T>> pageItems,
+            Function<? super P, ? extends Optional<? extends C>> nextCursor,
+            int prefetchDepth) {
+        Preconditions.checkArgument(prefetchDepth >= 0, "prefetchDepth must be >= 0 but was [%s].", prefetchDepth);
+        PaginatingSpliterator<C, P, T> spliterator =
+                new PaginatingSpliterator<>(firstCursor, fetchPage, pageItems, nextCursor, prefetchDepth);
+        return StreamSupport.stream(spliterator, false).onClose(spliterator::cancel);
+    }
+
+    private static <T, R> Stream<R> mapConcurrent(
+            Stream<T> stream, int maxConcurrency, Function<? super T, ? extends R> mapper, boolean ordered) {
+        Preconditions.checkArgument(maxConcurrency >= 1, "maxConcurrency must be >= 1 but was [%s].", maxConcurrency);
+        Preconditions.checkNotNull(mapper, "mapper must not be null.");
+        ConcurrentMappingSpliterator<T, R> spliterator =
+                new ConcurrentMappingSpliterator<>(stream.spliterator(), maxConcurrency, mapper, ordered);
+        return StreamSupport.stream(spliterator, false)
+                .onClose(spliterator::cancel)
+                .onClose(stream::close);
+    }
+
+    @Nullable
+    private static MethodHandle findVirtualThreadPerTaskExecutor() {
+        try {
+            return MethodHandles.publicLookup()
+                    .findStatic(
+                            Executors.class,
+                            "newVirtualThreadPerTaskExecutor",
+                            MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns an executor for blocking background work with up to {@code maxConcurrency} tasks at a time, on virtual
+     * threads when available and on daemon platform threads otherwise.
+     */
+    static ExecutorService newExecutor(int maxConcurrency) {
+        if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null) {
+            try {
+                return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invokeExact();
+            } catch (Throwable e) {
+                throw SystemUnhandledException.withCause(e)
+                        .message("Failed to create a virtual thread executor.")
+                        .exception();
+            }
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                maxConcurrency,
+                maxConcurrency,
+                PLATFORM_THREAD_KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("espresso-streams-%d")
+                        .setDaemon(true)
+                        .build());
+        // Lets the threads of a stream that was abandoned without being closed die once idle, which those blocked on
+        // its consumer only are once interrupted, see newExecutor(int, Object)
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Returns an executor as {@link #newExecutor(int)} does, which is shut down now, interrupting its tasks, once
+     * {@code owner} becomes unreachable. Its tasks must not hold {@code owner}, or it would never become unreachable.
+     */
+    static ExecutorService newExecutor(int maxConcurrency, Object owner) {
+        ExecutorService executor = newExecutor(maxConcurrency);
+        CleanerHolder.CLEANER.register(owner, executor::shutdownNow);
+        return executor;
+    }
+
+    /**
+     * Returns the given failure of a background task, to be rethrown to the consumer of a stream: unchecked
+     * exceptions as is, errors thrown right away, and checked exceptions wrapped with the given message.
+     */
+    static RuntimeException unchecked(Throwable cause, String message) {
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        if (cause instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        return SystemUnhandledException.withCause(cause).message(message).exception();
+    }
+
+    private static class CleanerHolder {
+        private static final Cleaner CLEANER = Cleaner.create();
+    }
+
+    /**
+     * Pulls elements from the source as slots free up, and hands out results either in submission order, waiting on
+     * the oldest call, or in completion order, waiting on a queue the calls put themselves into when done. Either
+     * way, the wait also ends as soon as any call fails.
+     */
+    private static final class ConcurrentMappingSpliterator<T, R> extends Spliterators.AbstractSpliterator<R> {
+
+        private final Spliterator<T> source;
+        private final int maxConcurrency;
+        private final Function<? super T, ? extends R> mapper;
+        private final boolean ordered;
+        private final Deque<CompletableFuture<R>> inSubmissionOrder = new ArrayDeque<>();
+        private final BlockingQueue<CompletableFuture<R>> inCompletionOrder = new LinkedBlockingQueue<>();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final CompletableFuture<Void> failed = new CompletableFuture<>();
+
+        @Nullable
+        private ExecutorService executor;
+
+        private int inFlight;
+        private boolean sourceExhausted;
+        private boolean done;
+
+        private ConcurrentMappingSpliterator(
+                Spliterator<T> source, int maxConcurrency, Function<? super T, ? extends R> mapper, boolean ordered) {
+            super(Long.MAX_VALUE, ordered ? Spliterator.ORDERED : 0);
+            this.source = source;
+            this.maxConcurrency = maxConcurrency;
+            this.mapper = mapper;
+            this.ordered = ordered;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super R> action) {
+            if (done) {
+                return false;
+            }
+            while (inFlight < maxConcurrency && !sourceExhausted && failure.get() == null) {
+                sourceExhausted = !source.tryAdvance(this::submit);
+            }
+            if (inFlight == 0) {
+                finish();
+                return failIfFailed();
+            }
+            CompletableFuture<R> next = ordered ? awaitOldest() : awaitFirstCompleted();
+            failIfFailed();
+            inFlight--;
+            action.accept(next.join());
+            return true;
+        }
+
+        private void cancel() {
+            done = true;
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+
+        private void submit(T element) {
+            if (executor == null) {
+                executor = newExecutor(maxConcurrency);
+            }
+            CompletableFuture<R> future = new CompletableFuture<>();
+            inFlight++;
+            if (ordered) {
+                inSubmissionOrder.addLast(future);
+            }
+            executor.execute(() -> {
+                try {
+                    future.complete(mapper.apply(element));
+                } catch (Throwable e) {
+                    // Signals the failure before completing the future, so it is seen by whoever the future wakes up
+                    failure.compareAndSet(null, e);
+                    failed.complete(null);
+                    future.completeExceptionally(e);
+                }
+                if (!ordered) {
+                    inCompletionOrder.add(future);
+                }
+            });
+        }
+
+        private CompletableFuture<R> awaitOldest() {
+            CompletableFuture<R> oldest = inSubmissionOrder.removeFirst();
+            await(CompletableFuture.anyOf(oldest, failed));
+            return oldest;
+        }
+
+        private CompletableFuture<R> awaitFirstCompleted() {
+            try {
+                return inCompletionOrder.take();
+            } catch (InterruptedException e) {
+                throw interrupted(e);
+            }
+        }
+
+        private void await(CompletableFuture<?> future) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                throw interrupted(e);
+            } catch (ExecutionException e) {
+                // Failures are reported by failIfFailed
+            }
+        }
+
+        private boolean failIfFailed() {
+            Throwable cause = failure.get();
+            if (cause == null) {
+                return false;
+            }
+            cancel();
+            throw unchecked(cause, "Failed to map an element concurrently.");
+        }
+
+        private RuntimeException interrupted(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+            return SystemUnhandledException.withCause(e)
+                    .message("Interrupted while waiting for a concurrently mapped element.")
+                    .exception();
+        }
+
+        private void finish() {
+            done = true;
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.ziro.espresso.streams;
+
+import jakarta.annotation.Nullable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Streams the items of a paginated API page after page.
+ *
+ * <p>With a prefetch depth of 0, pages are fetched on the consuming thread when their first item is needed.
+ * Otherwise, a background fetcher follows the cursors ahead of the consumer and hands pages over through a queue.
+ * The fetcher needs a permit for each page it fetches and the consumer gives one back whenever it moves to the
+ * next page, so at most {@code prefetchDepth} pages are fetched or waiting beyond the one being consumed.
+ *
+ * <p>The fetcher only holds the {@link Pages} it fetches into, never the spliterator, so that a stream abandoned
+ * without being closed becomes unreachable and has its fetcher stopped, rather than left waiting for a permit.
+ */
+final class PaginatingSpliterator<C, P, T> extends Spliterators.AbstractSpliterator<T> {
+
+    /**
+     * Marks the last page, or a failure, in the queue.
+     */
+    private static final Object END = new Object();
+
+    private final Function<? super P, ? extends Collection<? extends T>> pageItems;
+    private final int prefetchDepth;
+    private final Pages<C, P> pages;
+
+    @Nullable
+    private ExecutorService fetcher;
+
+    private Iterator<? extends T> items = Collections.emptyIterator();
+    private boolean done;
+
+    PaginatingSpliterator(
+            @Nullable C firstCursor,
+            Function<? super C, ? extends P> fetchPage,
+            Function<? super P, ? extends Collection<? extends T>> pageItems,
+            Function<? super P, ? extends Optional<? extends C>> nextCursor,
+            int prefetchDepth) {
+        super(Long.MAX_VALUE, ORDERED);
+        this.pageItems = pageItems;
+        this.prefetchDepth = prefetchDepth;
+        this.pages = new Pages<>(firstCursor, fetchPage, nextCursor, prefetchDepth);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        while (!items.hasNext()) {
+            if (done) {
+                return false;
+            }
+            P page = prefetchDepth == 0 ? fetchNextPage() : takeNextPage();
+            if (page == null) {
+                return false;
+            }
+            items = pageItems.apply(page).iterator();
+        }
+        action.accept(items.next());
+        return true;
+    }
+
+    void cancel() {
+        done = true;
+        if (fetcher != null) {
+            fetcher.shutdownNow();
+        }
+    }
+
+    @Nullable
+    private P fetchNextPage() {
+        if (pages.lastPageFetched) {
+            done = true;
+            return null;
+        }
+        return pages.fetchNextPage();
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    private P takeNextPage() {
+        if (fetcher == null) {
+            fetcher = MoreStreams.newExecutor(1, this);
+            fetcher.execute(pages::prefetch);
+        }
+        Object page;
+        try {
+            page = pages.queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+            throw MoreStreams.unchecked(e, "Interrupted while waiting for the next page.");
+        }
+        if (page == END) {
+            done = true;
+            fetcher.shutdown();
+            Throwable cause = pages.failure;
+            if (cause != null) {
+                throw MoreStreams.unchecked(cause, "Failed to fetch the next page.");
+            }
+            return null;
+        }
+        pages.prefetchPermits.release();
+        return (P) page;
+    }
+
+    /**
+     * Follows the cursors of the pages, either on the consuming thread or on the fetcher.
+     */
+    private static final class Pages<C, P> {
+
+        private final Function<? super C, ? extends P> fetchPage;
+        private final Function<? super P, ? extends Optional<? extends C>> nextCursor;
+        private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+        private final Semaphore prefetchPermits;
+
+        @Nullable
+        private C cursor;
+
+        @Nullable
+        private volatile Throwable failure;
+
+        private boolean lastPageFetched;
+
+        private Pages(
+                @Nullable C firstCursor,
+                Function<? super C, ? extends P> fetchPage,
+                Function<? super P, ? extends Optional<? extends C>> nextCursor,
+                int prefetchDepth) {
+            this.cursor = firstCursor;
+            this.fetchPage = fetchPage;
+            this.nextCursor = nextCursor;
+            this.prefetchPermits = new Semaphore(prefetchDepth);
+        }
+
+        private P fetchNextPage() {
+            P page = fetchPage.apply(cursor);
+            Optional<? extends C> next = nextCursor.apply(page);
+            lastPageFetched = next.isEmpty();
+            cursor = next.orElse(null);
+            return page;
+        }
+
+        private void prefetch() {
+            try {
+                while (!lastPageFetched) {
+                    prefetchPermits.acquire();
+                    queue.add(fetchNextPage());
+                }
+            } catch (InterruptedException e) {
+                // Cancelled by closing the stream, or by it becoming unreachable, nobody is reading anymore
+                return;
+            } catch (Throwable e) {
+                failure = e;
+            }
+            queue.add(END);
+        }
+    }
+}
@@ -0,0 +1,501 @@
+package com.ziro.espresso.streams;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A KLL quantile sketch, estimating percentiles of a stream of {@code double} values, e.g. latencies, in a few
+ * kilobytes of memory instead of sorting all of them.
+ *
+ * <p>Values go through a hierarchy of compactors. When a level is full, it is sorted and every other value, starting
+ * at a random offset, is promoted to the next level with twice the weight, the others being dropped. Higher levels
+ * get geometrically smaller capacities, so the sketch only keeps {@code O(k)} values however long the stream is.
+ *
+ * <p>The accuracy parameter {@code k} trades memory for accuracy: the error on the rank of a returned quantile is
+ * proportional to {@code 1 / k}, within about 1.7% of the stream size with the default {@code k} of 200. The
+ * minimum and maximum are always exact.
+ *
+ * <p>Sketches with the same {@code k} can be {@linkplain #merge merged}, giving the same accuracy as a single sketch
+ * fed with both inputs. Partial sketches of parallel streams, or of different services, can therefore be combined,
+ * the latter after a round trip through {@link #toByteArray()} and {@link #fromByteArray(byte[])}.
+ *
+ * <p>Instances are mutable and not thread-safe.
+ *
+ * <p>Example usage:
+ * <pre>{@code
+ * QuantileSketch latencies = requests.stream()
+ *         .collect(MoreCollectors.toQuantileSketch(200, request -> request.duration().toMillis()));
+ * double[] percentiles = latencies.quantiles(0.5, 0.95, 0.99);
+ * }</pre>
+ *
+ * @see MoreCollectors#toQuantileSketch(int, java.util.function.ToDoubleFunction)
+ */
+public final class QuantileSketch {
+
+    /**
+     * The accuracy used by {@link #create()}.
+     */
+    public static final int DEFAULT_K = 200;
+
+    public static final int MIN_K = 8;
+
+    /**
+     * The highest accuracy, which keeps the total capacity of the levels well within an int.
+     */
+    public static final int MAX_K = 1 << 16;
+
+    /**
+     * Leading bytes of the serialized form ("ZKLL"), so that unrelated data is rejected early.
+     */
+    private static final int SERIAL_COOKIE = 0x5A4B4C4C;
+
+    /**
+     * Values of the last possible level weigh 2<sup>62</sup>, the highest power of two a long count can reach.
+     */
+    private static final int MAX_LEVEL_COUNT = Long.SIZE - 1;
+
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+
+    private static final int INITIAL_LEVEL_CAPACITY = 8;
+
+    private final int k;
+    private double[][] levels;
+    private int[] levelSizes;
+    private int levelCount;
+    private int retained;
+    private int maxRetained;
+    private long count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    private QuantileSketch(int k) {
+        this.k = k;
+        this.levels = new double[0][];
+        this.levelSizes = new int[0];
+        addLevel();
+    }
+
+    /**
+     * Creates an empty sketch with the {@linkplain #DEFAULT_K default accuracy}.
+     *
+     * @return a new sketch
+     */
+    public static QuantileSketch create() {
+        return withAccuracy(DEFAULT_K);
+    }
+
+    /**
+     * Creates an empty sketch with the given accuracy.
+     *
+     * @param k the accuracy parameter, between {@value #MIN_K} and {@value #MAX_K}; the rank error is proportional
+     *          to {@code 1 / k} and the memory used to {@code k}
+     * @return a new sketch
+     * @throws IllegalArgumentException if {@code k} is lower than {@value #MIN_K} or higher than {@value #MAX_K}
+     */
+    public static QuantileSketch withAccuracy(int k) {
+        Preconditions.checkArgument(k >= MIN_K, "k must be >= [%s] but was [%s].", MIN_K, k);
+        Preconditions.checkArgument(k <= MAX_K, "k must be <= [%s] but was [%s].", MAX_K, k);
+        return new QuantileSketch(k);
+    }
+
+    /**
+     * Reads a sketch written by {@link #toByteArray()}.
+     *
+     * @param bytes the serialized sketch
+     * @return the deserialized sketch
+     * @throws IllegalArgumentException if {@code bytes} is not a serialized sketch, e.g. because it is truncated or
+     *     its values do not add up to its count
+     */
+    public static QuantileSketch fromByteArray(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        Preconditions.checkArgument(
+                bytes.length >= headerSizeInBytes() && buffer.getInt() == SERIAL_COOKIE,
+                "Bytes do not hold a serialized QuantileSketch.");
+        QuantileSketch sketch = withAccuracy(buffer.getInt());
+        long count = buffer.getLong();
+        double min = buffer.getDouble();
+        double max = buffer.getDouble();
+        Preconditions.checkArgument(
+                count > 0 ? min <= max : count == 0 && Double.isNaN(min) && Double.isNaN(max),
+                "Bytes do not hold a serialized QuantileSketch of [%s] values between [%s] and [%s].",
+                count,
+                min,
+                max);
+        int levelCount = buffer.getInt();
+        // Checked against what the bytes can hold before anything is allocated for it
+        Preconditions.checkArgument(
+                levelCount > 0 && levelCount <= Math.min(MAX_LEVEL_COUNT, buffer.remaining() / Integer.BYTES),
+                "Bytes do not hold a serialized QuantileSketch of [%s] levels.",
+                levelCount);
+        while (sketch.levelCount < levelCount) {
+            sketch.addLevel();
+        }
+        long weightLeft = count;
+        for (int level = 0; level < levelCount; level++) {
+            Preconditions.checkArgument(
+                    buffer.remaining() >= Integer.BYTES, "Bytes do not hold a whole serialized QuantileSketch.");
+            int size = buffer.getInt();
+            Preconditions.checkArgument(
+                    size >= 0 && size <= buffer.remaining() / Double.BYTES,
+                    "Bytes do not hold a serialized QuantileSketch level of [%s] values.",
+                    size);
+            // Compactions keep the total weight, 2^level per value, equal to the count
+            Preconditions.checkArgument(
+                    size <= weightLeft >> level,
+                    "Values of a serialized QuantileSketch must weigh [%s] in total but level [%s] holds [%s].",
+                    count,
+                    level,
+                    size);
+            weightLeft -= (long) size << level;
+            for (int i = 0; i < size; i++) {
+                double value = buffer.getDouble();
+                Preconditions.checkArgument(
+                        value >= min && value <= max,
+                        "Values of a serialized QuantileSketch must be between [%s] and [%s] but [%s] is not.",
+                        min,
+                        max,
+                        value);
+                sketch.append(level, value);
+            }
+        }
+        Preconditions.checkArgument(
+                weightLeft == 0,
+                "Values of a serialized QuantileSketch must weigh [%s] in total but weigh [%s].",
+                count,
+                count - weightLeft);
+        Preconditions.checkArgument(
+                !buffer.hasRemaining(), "Bytes hold [%s] bytes after a serialized QuantileSketch.", buffer.remaining());
+        sketch.count = count;
+        sketch.min = min;
+        sketch.max = max;
+        return sketch;
+    }
+
+    /**
+     * Adds a value.
+     *
+     * @param value the value to add
+     * @throws IllegalArgumentException if {@code value} is NaN
+     */
+    public void add(double value) {
+        Preconditions.checkArgument(!Double.isNaN(value), "value must not be NaN.");
+        if (count == 0) {
+            min = value;
+            max = value;
+        } else {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        count++;
+        append(0, value);
+        compress();
+    }
+
+    /**
+     * Merges another sketch into this one, which then summarizes both inputs together. The other sketch is left
+     * unchanged.
+     *
+     * @param other the sketch to merge, with the same accuracy
+     * @return this sketch
+     * @throws IllegalArgumentException if the accuracies differ
+     */
+    public QuantileSketch merge(QuantileSketch other) {
+        Preconditions.checkArgument(
+                k == other.k, "Cannot merge a QuantileSketch with k [%s] into one with k [%s].", other.k, k);
+        if (other.count == 0) {
+            return this;
+        }
+        min = count == 0 ? other.min : Math.min(min, other.min);
+        max = count == 0 ? other.max : Math.max(max, other.max);
+        count += other.count;
+        while (levelCount < other.levelCount) {
+            addLevel();
+        }
+        for (int level = 0; level < other.levelCount; level++) {
+            for (int i = 0; i < other.levelSizes[level]; i++) {
+                append(level, other.levels[level][i]);
+            }
+        }
+        compress();
+        return this;
+    }
+
+    /**
+     * Returns the number of values added, including through merges.
+     *
+     * @return the number of values
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Returns whether no value was added.
+     *
+     * @return true if the sketch is empty
+     */
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Returns the exact smallest value added.
+     *
+     * @return the minimum
+     * @throws IllegalStateException if the sketch is empty
+     */
+    public double min() {
+        Preconditions.checkState(count > 0, "Cannot compute the minimum of an empty QuantileSketch.");
+        return min;
+    }
+
+    /**
+     * Returns the exact largest value added.
+     *
+     * @return the maximum
+     * @throws IllegalStateException if the sketch is empty
+     */
+    public double max() {
+        Preconditions.checkState(count > 0, "Cannot compute the maximum of an empty QuantileSketch.");
+        return max;
+    }
+
+    /**
+     * Returns the estimated quantile, e.g. the median for 0.5 or the 99th percentile for 0.99. Quantiles 0 and 1
+     * are the exact minimum and maximum.
+     *
+     * @param fraction the quantile, between 0 and 1
+     * @return the estimated value at that quantile
+     * @throws IllegalArgumentException if {@code fraction} is not between 0 and 1
+     * @throws IllegalStateException if the sketch is empty
+     */
+    public double quantile(double fraction) {
+        return quantiles(fraction)[0];
+    }
+
+    /**
+     * Returns several estimated quantiles at once, sorting the retained values only once.
+     *
+     * @param fractions the quantiles, each between 0 and 1
+     * @return the estimated values, in the order of {@code fractions}
+     * @throws IllegalArgumentException if a fraction is not between 0 and 1
+     * @throws IllegalStateException if the sketch is empty
+     */
+    public double[] quantiles(double... fractions) {
+        for (double fraction : fractions) {
+            Preconditions.checkArgument(
+                    fraction >= 0 && fraction <= 1, "fraction must be between [0] and [1] but was [%s].", fraction);
+        }
+        Preconditions.checkState(count > 0, "Cannot compute quantiles of an empty QuantileSketch.");
+        SortedView view = sortedView();
+        double[] quantiles = new double[fractions.length];
+        for (int i = 0; i < fractions.length; i++) {
+            quantiles[i] = view.quantile(fractions[i]);
+        }
+        return quantiles;
+    }
+
+    /**
+     * Returns the estimated fraction of values lower than or equal to the given value.
+     *
+     * @param value the value to rank
+     * @return the estimated normalized rank, between 0 and 1
+     * @throws IllegalStateException if the sketch is empty
+     */
+    public double rank(double value) {
+        Preconditions.checkState(count > 0, "Cannot compute ranks in an empty QuantileSketch.");
+        long weight = 0;
+        for (int level = 0; level < levelCount; level++) {
+            for (int i = 0; i < levelSizes[level]; i++) {
+                if (levels[level][i] <= value) {
+                    weight += 1L << level;
+                }
+            }
+        }
+        return (double) weight / count;
+    }
+
+    /**
+     * Returns the accuracy parameter of this sketch.
+     *
+     * @return k
+     */
+    public int k() {
+        return k;
+    }
+
+    /**
+     * Returns the number of values currently kept by this sketch, which stays in {@code O(k)}.
+     *
+     * @return the number of retained values
+     */
+    public int retained() {
+        return retained;
+    }
+
+    /**
+     * Returns the number of bytes {@link #toByteArray()} will produce.
+     *
+     * @return the serialized size
+     */
+    public int serializedSizeInBytes() {
+        return headerSizeInBytes() + levelCount * Integer.BYTES + retained * Double.BYTES;
+    }
+
+    /**
+     * Serializes this sketch in a compact binary form, holding only the retained values, that can be read back with
+     * {@link #fromByteArray(byte[])}.
+     *
+     * @return the serialized sketch
+     */
+    public byte[] toByteArray() {
+        ByteBuffer buffer = ByteBuffer.allocate(serializedSizeInBytes());
+        buffer.putInt(SERIAL_COOKIE);
+        buffer.putInt(k);
+        buffer.putLong(count);
+        buffer.putDouble(min);
+        buffer.putDouble(max);
+        buffer.putInt(levelCount);
+        for (int level = 0; level < levelCount; level++) {
+            buffer.putInt(levelSizes[level]);
+            for (int i = 0; i < levelSizes[level]; i++) {
+                buffer.putDouble(levels[level][i]);
+            }
+        }
+        return buffer.array();
+    }
+
+    @Override
+    public String toString() {
+        MoreObjects.ToStringHelper helper =
+                MoreObjects.toStringHelper(this).add("k", k).add("count", count);
+        if (count > 0) {
+            helper.add("min", min).add("median", quantile(0.5)).add("max", max);
+        }
+        return helper.toString();
+    }
+
+    private static int headerSizeInBytes() {
+        return 2 * Integer.BYTES + Long.BYTES + 2 * Double.BYTES + Integer.BYTES;
+    }
+
+    private void append(int level, double value) {
+        if (levelSizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], Math.max(INITIAL_LEVEL_CAPACITY, 2 * levelSizes[level]));
+        }
+        levels[level][levelSizes[level]++] = value;
+        retained++;
+    }
+
+    private void addLevel() {
+        levels = Arrays.copyOf(levels, levelCount + 1);
+        levelSizes = Arrays.copyOf(levelSizes, levelCount + 1);
+        levels[levelCount] = new double[INITIAL_LEVEL_CAPACITY];
+        levelCount++;
+        maxRetained = 0;
+        for (int level = 0; level < levelCount; level++) {
+            maxRetained += capacity(level);
+        }
+    }
+
+    /**
+     * Returns how many values a level can hold before being compacted, shrinking by 2/3 for every level below the
+     * top one.
+     */
+    private int capacity(int level) {
+        int depth = levelCount - level - 1;
+        return (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)) + 1;
+    }
+
+    /**
+     * Compacts the lowest full level, and again while the sketch holds more than its total capacity. At that point
+     * some level is always full, and every compaction removes at least one value.
+     */
+    private void compress() {
+        while (retained >= maxRetained) {
+            for (int level = 0; level < levelCount; level++) {
+                if (levelSizes[level] >= capacity(level)) {
+                    if (level + 1 == levelCount) {
+                        addLevel();
+                    }
+                    compact(level);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sorts a level and promotes every other value to the next level, keeping the smallest value in place when the
+     * level holds an odd number of them.
+     */
+    private void compact(int level) {
+        double[] values = levels[level];
+        int size = levelSizes[level];
+        Arrays.sort(values, 0, size);
+        int kept = size & 1;
+        int offset = ThreadLocalRandom.current().nextBoolean() ? 1 : 0;
+        for (int i = kept + offset; i < size; i += 2) {
+            append(level + 1, values[i]);
+        }
+        levelSizes[level] = kept;
+        retained -= size - kept;
+    }
+
+    private SortedView sortedView() {
+        double[] values = new double[retained];
+        long[] weights = new long[retained];
+        int index = 0;
+        for (int level = 0; level < levelCount; level++) {
+            for (int i = 0; i < levelSizes[level]; i++) {
+                values[index] = levels[level][i];
+                weights[index] = 1L << level;
+                index++;
+            }
+        }
+        return new SortedView(values, weights);
+    }
+
+    /**
+     * The retained values sorted with their cumulative weights, for answering quantile queries.
+     */
+    private final class SortedView {
+
+        private final double[] values;
+        private final long[] cumulativeWeights;
+
+        private SortedView(double[] values, long[] weights) {
+            Integer[] order = new Integer[values.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (left, right) -> Double.compare(values[left], values[right]));
+            this.values = new double[values.length];
+            this.cumulativeWeights = new long[values.length];
+            long cumulativeWeight = 0;
+            for (int i = 0; i < order.length; i++) {
+                cumulativeWeight += weights[order[i]];
+                this.values[i] = values[order[i]];
+                this.cumulativeWeights[i] = cumulativeWeight;
+            }
+        }
+
+        private double quantile(double fraction) {
+            if (fraction == 0) {
+                return min;
+            }
+            if (fraction == 1) {
+                return max;
+            }
+            long rank = (long) Math.ceil(fraction * count);
+            int index = Arrays.binarySearch(cumulativeWeights, rank);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return values[Math.min(index, values.length - 1)];
+        }
+    }
+}
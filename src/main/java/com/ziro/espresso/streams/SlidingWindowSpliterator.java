@@ -0,0 +1,91 @@
+package com.ziro.espresso.streams;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * Emits windows of {@code windowSize} consecutive elements of a source spliterator, {@code step} elements apart.
+ *
+ * <p>The current window is kept in a ring buffer, so moving to the next window only reads the {@code step} new
+ * elements instead of shifting the ones that stay.
+ */
+final class SlidingWindowSpliterator<T> extends Spliterators.AbstractSpliterator<List<T>> {
+
+    private final Spliterator<T> source;
+    private final int windowSize;
+    private final int step;
+    private final Object[] ring;
+    private int head;
+    private int size;
+    private boolean started;
+    private boolean done;
+
+    SlidingWindowSpliterator(Spliterator<T> source, int windowSize, int step) {
+        super(Long.MAX_VALUE, (source.characteristics() & ORDERED) | NONNULL);
+        this.source = source;
+        this.windowSize = windowSize;
+        this.step = step;
+        this.ring = new Object[windowSize];
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super List<T>> action) {
+        if (done) {
+            return false;
+        }
+        if (started && !slide()) {
+            done = true;
+            return false;
+        }
+        started = true;
+        while (size < windowSize && source.tryAdvance(this::append)) {
+            // Keeps pulling until the window is full or the source is exhausted
+        }
+        if (size < windowSize) {
+            done = true;
+            return false;
+        }
+        action.accept(currentWindow());
+        return true;
+    }
+
+    /**
+     * Drops the first {@code step} elements of the current window, and skips the elements of the source that
+     * fall between this window and the next one.
+     *
+     * @return false if the source was exhausted while skipping
+     */
+    private boolean slide() {
+        if (step < windowSize) {
+            head = (head + step) % windowSize;
+            size -= step;
+            return true;
+        }
+        head = 0;
+        size = 0;
+        for (int skipped = windowSize; skipped < step; skipped++) {
+            if (!source.tryAdvance(element -> {})) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void append(T element) {
+        ring[(head + size) % windowSize] = element;
+        size++;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<T> currentWindow() {
+        List<T> window = new ArrayList<>(windowSize);
+        for (int i = 0; i < windowSize; i++) {
+            window.add((T) ring[(head + i) % windowSize]);
+        }
+        return Collections.unmodifiableList(window);
+    }
+}
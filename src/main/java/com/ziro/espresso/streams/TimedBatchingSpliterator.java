@@ -0,0 +1,195 @@
+package com.ziro.espresso.streams;
+
+import jakarta.annotation.Nullable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Groups the elements of a source spliterator into batches closed either by size or by time.
+ *
+ * <p>A background reader drains the source into a bounded queue, so that a batch can be closed on time even while
+ * the source blocks. The consumer waits as long as needed for the first element of a batch, then at most until the
+ * batch's deadline for the others.
+ *
+ * <p>The reader only holds the {@link Reader} state it reads into, never the spliterator, so that a stream abandoned
+ * without being closed becomes unreachable and has its reader stopped, rather than left waiting on a full queue.
+ */
+final class TimedBatchingSpliterator<T> extends Spliterators.AbstractSpliterator<List<T>> {
+
+    /**
+     * Marks the end of the source in the queue, which cannot hold nulls.
+     */
+    private static final Object END = new Object();
+
+    /**
+     * Stands for a null element in the queue.
+     */
+    private static final Object NULL = new Object();
+
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final Reader<T> reader;
+    private final BlockingQueue<Object> queue;
+
+    @Nullable
+    private ExecutorService readerExecutor;
+
+    private boolean done;
+
+    TimedBatchingSpliterator(Spliterator<T> source, int maxBatchSize, Duration maxWait) {
+        super(Long.MAX_VALUE, ORDERED | NONNULL);
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = maxWait.toNanos();
+        // The reader only has to stay ahead of the consumer, not to hold whole batches of a huge batch size
+        this.reader = new Reader<>(
+                source, new ArrayBlockingQueue<>(Math.min(maxBatchSize, BatchingSpliterator.MAX_INITIAL_CAPACITY)));
+        this.queue = reader.queue;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super List<T>> action) {
+        if (done) {
+            return failIfFailed();
+        }
+        if (readerExecutor == null) {
+            readerExecutor = MoreStreams.newExecutor(1, this);
+            readerExecutor.execute(reader::read);
+        }
+        Object element = take();
+        if (element == END) {
+            finish();
+            return failIfFailed();
+        }
+        List<T> batch = new ArrayList<>(Math.min(maxBatchSize, BatchingSpliterator.MAX_INITIAL_CAPACITY));
+        batch.add(unwrap(element));
+        long deadline = System.nanoTime() + maxWaitNanos;
+        while (batch.size() < maxBatchSize) {
+            element = poll(deadline - System.nanoTime());
+            if (element == null) {
+                break;
+            }
+            if (element == END) {
+                // The batch read so far is still emitted, a failure is reported on the next call
+                finish();
+                break;
+            }
+            batch.add(unwrap(element));
+        }
+        action.accept(Collections.unmodifiableList(batch));
+        return true;
+    }
+
+    void cancel() {
+        done = true;
+        if (readerExecutor != null) {
+            readerExecutor.shutdownNow();
+        }
+    }
+
+    private void finish() {
+        done = true;
+        if (readerExecutor != null) {
+            readerExecutor.shutdown();
+        }
+    }
+
+    private Object take() {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            throw interrupted(e);
+        }
+    }
+
+    @Nullable
+    private Object poll(long timeoutNanos) {
+        try {
+            return queue.poll(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            throw interrupted(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T unwrap(Object element) {
+        return element == NULL ? null : (T) element;
+    }
+
+    private boolean failIfFailed() {
+        Throwable cause = reader.failure;
+        reader.failure = null;
+        if (cause != null) {
+            throw MoreStreams.unchecked(cause, "Failed to read an element to batch.");
+        }
+        return false;
+    }
+
+    private RuntimeException interrupted(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        cancel();
+        return MoreStreams.unchecked(e, "Interrupted while waiting for elements to batch.");
+    }
+
+    /**
+     * Drains the source into the queue, on the reader thread.
+     */
+    private static final class Reader<T> {
+
+        private final Spliterator<T> source;
+        private final BlockingQueue<Object> queue;
+
+        @Nullable
+        private volatile Throwable failure;
+
+        private Reader(Spliterator<T> source, BlockingQueue<Object> queue) {
+            this.source = source;
+            this.queue = queue;
+        }
+
+        private void read() {
+            try {
+                while (source.tryAdvance(element -> put(element == null ? NULL : element))) {
+                    // Each element is handed over by put, which blocks while the consumer is behind
+                }
+            } catch (CancelledException e) {
+                return;
+            } catch (Throwable e) {
+                failure = e;
+            }
+            try {
+                put(END);
+            } catch (CancelledException e) {
+                // Closed while handing over the end, nobody is reading anymore
+            }
+        }
+
+        private void put(Object element) {
+            try {
+                queue.put(element);
+            } catch (InterruptedException e) {
+                // Cancelled by closing the stream, or by it becoming unreachable, nobody is reading anymore
+                Thread.currentThread().interrupt();
+                throw new CancelledException();
+            }
+        }
+    }
+
+    /**
+     * Unwinds the reader once the stream has been closed.
+     */
+    private static final class CancelledException extends RuntimeException {
+
+        private CancelledException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.ziro.espresso.collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class CompressedBitmapTest {
+
+    @Test
+    void addRemoveAndContains() {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        assertThat(bitmap.isEmpty()).isTrue();
+
+        assertThat(bitmap.add(5)).isTrue();
+        assertThat(bitmap.add(5)).isFalse();
+        assertThat(bitmap.add(70_000)).isTrue();
+        assertThat(bitmap.add(-1)).isTrue();
+
+        assertThat(bitmap.contains(5)).isTrue();
+        assertThat(bitmap.contains(6)).isFalse();
+        assertThat(bitmap.cardinality()).isEqualTo(3);
+        // Values are ordered as unsigned integers
+        assertThat(bitmap.toList()).containsExactly(5, 70_000, -1);
+
+        assertThat(bitmap.remove(70_000)).isTrue();
+        assertThat(bitmap.remove(70_000)).isFalse();
+        assertThat(bitmap.toArray()).containsExactly(5, -1);
+    }
+
+    @Test
+    void denseChunksSwitchRepresentation() {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        IntStream.range(0, 10_000).forEach(value -> bitmap.add(value * 2));
+
+        assertThat(bitmap.cardinality()).isEqualTo(10_000);
+        assertThat(bitmap.contains(19_998)).isTrue();
+        assertThat(bitmap.contains(19_999)).isFalse();
+
+        IntStream.range(0, 9_000).forEach(value -> bitmap.remove(value * 2));
+        assertThat(bitmap.stream().toArray())
+                .containsExactly(
+                        IntStream.range(9_000, 10_000).map(value -> value * 2).toArray());
+    }
+
+    @Test
+    void setOperations() {
+        CompressedBitmap evens = new CompressedBitmap();
+        CompressedBitmap multiplesOfThree = new CompressedBitmap();
+        for (int i = 0; i < 200_000; i++) {
+            if (i % 2 == 0) {
+                evens.add(i);
+            }
+            if (i % 3 == 0) {
+                multiplesOfThree.add(i);
+            }
+        }
+
+        assertThat(evens.and(multiplesOfThree).toList())
+                .isEqualTo(IntStream.range(0, 200_000)
+                        .filter(i -> i % 6 == 0)
+                        .boxed()
+                        .toList());
+        assertThat(evens.or(multiplesOfThree).toList())
+                .isEqualTo(IntStream.range(0, 200_000)
+                        .filter(i -> i % 2 == 0 || i % 3 == 0)
+                        .boxed()
+                        .toList());
+        assertThat(evens.andNot(multiplesOfThree).toList())
+                .isEqualTo(IntStream.range(0, 200_000)
+                        .filter(i -> i % 2 == 0 && i % 3 != 0)
+                        .boxed()
+                        .toList());
+        assertThat(evens.xor(multiplesOfThree).toList())
+                .isEqualTo(IntStream.range(0, 200_000)
+                        .filter(i -> (i % 2 == 0) != (i % 3 == 0))
+                        .boxed()
+                        .toList());
+        assertThat(evens.cardinality()).isEqualTo(100_000);
+    }
+
+    @Test
+    void runOptimizeShrinksRangesAndKeepsContent() {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        IntStream.range(0, 1_000_000).forEach(bitmap::add);
+        CompressedBitmap copy = CompressedBitmap.fromCollection(bitmap.toList());
+        int sizeBefore = bitmap.serializedSizeInBytes();
+
+        bitmap.runOptimize();
+
+        assertThat(bitmap.serializedSizeInBytes()).isLessThan(sizeBefore / 100);
+        assertThat(bitmap).isEqualTo(copy);
+        assertThat(bitmap.contains(999_999)).isTrue();
+        assertThat(bitmap.contains(1_000_000)).isFalse();
+
+        bitmap.add(2_000_000);
+        bitmap.remove(500_000);
+        assertThat(bitmap.cardinality()).isEqualTo(1_000_000);
+    }
+
+    @Test
+    void serializationRoundTrip() {
+        CompressedBitmap bitmap = CompressedBitmap.fromCollection(List.of(1, 2, 3, 100_000, -5));
+        IntStream.range(200_000, 300_000).forEach(bitmap::add);
+        bitmap.runOptimize();
+
+        byte[] bytes = bitmap.toByteArray();
+
+        assertThat(bytes).hasSize(bitmap.serializedSizeInBytes());
+        assertThat(CompressedBitmap.fromByteArray(bytes)).isEqualTo(bitmap).hasSameHashCodeAs(bitmap);
+        assertThatThrownBy(() -> CompressedBitmap.fromByteArray(new byte[] {1, 2, 3}))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsMalformedSerializedBitmaps() {
+        byte[] dense = CompressedBitmap.fromCollection(
+                        IntStream.range(0, 10_000).map(i -> i * 3).boxed().toList())
+                .toByteArray();
+
+        assertThat(CompressedBitmap.fromByteArray(new CompressedBitmap().toByteArray()))
+                .isEqualTo(new CompressedBitmap());
+        assertThatThrownBy(() -> CompressedBitmap.fromByteArray(serialized(Integer.MAX_VALUE)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Bytes do not hold a serialized CompressedBitmap of [2147483647] chunks.");
+        assertThatThrownBy(() -> CompressedBitmap.fromByteArray(Arrays.copyOf(dense, dense.length - 1)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Bytes do not hold a whole serialized CompressedBitmap.");
+        assertThatThrownBy(() -> CompressedBitmap.fromByteArray(Arrays.copyOf(dense, dense.length + 1)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Bytes hold [1] bytes after a serialized CompressedBitmap.");
+        assertThatThrownBy(() -> CompressedBitmap.fromByteArray(serialized(2, 5, 1, 1, 7, 5, 1, 1, 7)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Chunk keys of a serialized CompressedBitmap must be strictly ascending "
+                        + "but [5] follows [5].");
+        assertThatThrownBy(() -> CompressedBitmap.fromByteArray(serialized(1, 5, 1, 2, 7, 7)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Array container values must be strictly ascending but [7] follows [7].");
+        assertThatThrownBy(() -> CompressedBitmap.fromByteArray(serialized(1, 5, 1, Integer.MAX_VALUE, 1, 2)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Array container cardinality must be > 0, at most [4096] and fit in the bytes left "
+                        + "but was [2147483647].");
+        assertThatThrownBy(() -> CompressedBitmap.fromByteArray(serialized(1, 5, 3, 1, 65_000, 1_000)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Run container runs must be ascending, disjoint and within 16 bits "
+                        + "but [65000, 66000] follows [-1].");
+        assertThatThrownBy(() -> CompressedBitmap.fromByteArray(serialized(1, 5, 4, 2, 0, 0)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Unknown container type [4].");
+    }
+
+    @Test
+    void rejectsSerializedArraysTooLargeToGrow() {
+        int[] oversized = new int[3 + 5_000];
+        oversized[0] = 0;
+        oversized[1] = 1;
+        oversized[2] = 5_000;
+        for (int i = 0; i < 5_000; i++) {
+            oversized[3 + i] = 2 * i;
+        }
+        int[] full = Arrays.copyOf(oversized, 3 + 4_096);
+        full[2] = 4_096;
+
+        assertThatThrownBy(() -> CompressedBitmap.fromByteArray(serialized(1, oversized)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Array container cardinality must be > 0, at most [4096] and fit in the bytes left "
+                        + "but was [5000].");
+        CompressedBitmap bitmap = CompressedBitmap.fromByteArray(serialized(1, full));
+        bitmap.add(3);
+        assertThat(bitmap.cardinality()).isEqualTo(4_097);
+        assertThat(bitmap.contains(3)).isTrue();
+        assertThat(bitmap.contains(8_190)).isTrue();
+    }
+
+    /**
+     * Serializes a bitmap by hand: the cookie, the chunk count, then for each chunk its key, its container type as a
+     * byte, its cardinality or run count as an int, and its values or runs as 16 bit values.
+     */
+    private static byte[] serialized(int size, int... chunks) {
+        ByteBuffer buffer = ByteBuffer.allocate(2 * Integer.BYTES + chunks.length * Integer.BYTES);
+        buffer.putInt(0x5A49524F).putInt(size);
+        int i = 0;
+        while (i < chunks.length) {
+            buffer.putChar((char) chunks[i++]);
+            byte type = (byte) chunks[i++];
+            buffer.put(type);
+            if (i < chunks.length) {
+                int count = chunks[i++];
+                buffer.putInt(count);
+                // Runs are a start and a length each
+                int valueCount = type == 3 ? 2 * count : count;
+                while (i < chunks.length && valueCount-- > 0) {
+                    buffer.putChar((char) chunks[i++]);
+                }
+            }
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+}
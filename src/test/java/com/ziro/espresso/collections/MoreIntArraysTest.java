@@ -0,0 +1,49 @@
+package com.ziro.espresso.collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class MoreIntArraysTest {
+
+    @Test
+    void union() {
+        assertThat(MoreIntArrays.union(List.of())).isEmpty();
+        assertThat(MoreIntArrays.union(List.of(new int[] {}, new int[] {}))).isEmpty();
+
+        int[] array1 = {0, 1, Integer.MIN_VALUE};
+        int[] array2 = {1, 2, 2, Integer.MAX_VALUE, 0};
+        assertThat(MoreIntArrays.union(List.of(array1, array2)))
+                .containsExactlyInAnyOrder(0, 1, 2, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Test
+    void intersection() {
+        assertThat(MoreIntArrays.intersection(List.of())).isEmpty();
+
+        int[] array1 = {0, 1, 2, 3, -4};
+        int[] array2 = {3, 3, 2, 0, -4, 5};
+        int[] array3 = {-4, 0, 3, 6, 7};
+        assertThat(MoreIntArrays.intersection(List.of(array1, array2, array3))).containsExactlyInAnyOrder(0, 3, -4);
+        assertThat(MoreIntArrays.intersection(List.of(array1, array2, new int[] {})))
+                .isEmpty();
+        assertThat(MoreIntArrays.intersection(List.of(array1, new int[] {8, 9})))
+                .isEmpty();
+    }
+
+    @Test
+    void intersectionOfLargeArrays() {
+        int[] evens = new int[100_000];
+        int[] multiplesOfThree = new int[100_000];
+        for (int i = 0; i < evens.length; i++) {
+            evens[i] = i * 2;
+            multiplesOfThree[i] = i * 3;
+        }
+
+        int[] intersection = MoreIntArrays.intersection(List.of(evens, multiplesOfThree));
+        assertThat(intersection).hasSize(33_334);
+        assertThat(IntStream.of(intersection).allMatch(value -> value % 6 == 0)).isTrue();
+    }
+}
@@ -1,9 +1,18 @@
 package com.ziro.espresso.collections;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import org.junit.jupiter.api.Test;
 
 class MoreListsTest {
@@ -48,6 +57,132 @@ class MoreListsTest {
         assertListContainsExactlyInAnyOrder(MoreLists.intersection(lists), 1, 2);
     }
 
+    @Test
+    void intersectionOfManyLists() {
+        List<Integer> list1 = List.of(1, 2, 3, 4, 5, 6);
+        List<Integer> list2 = List.of(6, 5, 4, 3, 3, 2);
+        List<Integer> list3 = List.of(2, 4, 6, 8);
+
+        assertListContainsExactlyInAnyOrder(MoreLists.intersection(List.of(list1, list2, list3)), 2, 4, 6);
+        assertThat(MoreLists.intersection(List.of(list1, list2, list3, List.of())))
+                .isEmpty();
+        assertThat(MoreLists.intersection(List.<List<Integer>>of())).isEmpty();
+    }
+
+    @Test
+    void intersectionOfCollections() {
+        Set<Integer> set = Set.of(1, 2, 3, 4);
+        List<Integer> list = List.of(3, 4, 5, 3);
+        Collection<Integer> deque = new ArrayDeque<>(List.of(4, 3, 1));
+
+        List<Collection<Integer>> collections = List.of(set, list, deque);
+        assertListContainsExactlyInAnyOrder(MoreLists.intersection(collections), 3, 4);
+        assertThat(set).containsExactlyInAnyOrder(1, 2, 3, 4);
+    }
+
+    @Test
+    void unionAndIntersectionInParallel() {
+        List<Integer> evens = new ArrayList<>();
+        List<Integer> multiplesOfThree = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            evens.add(i * 2);
+            multiplesOfThree.add(i * 3);
+        }
+        List<List<Integer>> lists = List.of(evens, multiplesOfThree, evens);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            // Compared as sets, as the list assertions are quadratic on lists this long
+            List<Integer> union = MoreLists.union(lists, pool);
+            assertThat(new HashSet<>(union)).hasSize(union.size()).isEqualTo(new HashSet<>(MoreLists.union(lists)));
+            List<Integer> intersection = MoreLists.intersection(lists, pool);
+            assertThat(new HashSet<>(intersection))
+                    .hasSize(33_334)
+                    .hasSize(intersection.size())
+                    .isEqualTo(new HashSet<>(MoreLists.intersection(lists)));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void lazyUnion() {
+        List<Integer> list1 = List.of(3, 1, 3);
+        List<Integer> list2 = List.of(2, 1, 4);
+
+        assertThat(MoreLists.lazyUnion(List.of(list1, list2))).containsExactly(3, 1, 2, 4);
+        assertThat(MoreLists.lazyUnion(List.of(list1, list2)).limit(2)).containsExactly(3, 1);
+        assertThat(MoreLists.lazyUnion(List.<List<Integer>>of())).isEmpty();
+    }
+
+    @Test
+    void lazyIntersection() {
+        List<Integer> list1 = List.of(5, 4, 3, 2, 1, 1);
+        List<Integer> list2 = List.of(1, 2, 4, 5, 6, 7, 8);
+        Set<Integer> set = Set.of(1, 2, 5, 9, 10, 11, 12, 13);
+
+        assertThat(MoreLists.lazyIntersection(List.of(list1, list2, set))).containsExactly(5, 2, 1);
+        assertThat(MoreLists.lazyIntersection(List.of(list1, list2, set)).findFirst())
+                .contains(5);
+        assertThat(MoreLists.lazyIntersection(List.of(list1, List.of()))).isEmpty();
+        assertThat(MoreLists.lazyIntersection(List.<List<Integer>>of())).isEmpty();
+    }
+
+    @Test
+    void occurrences() {
+        List<Integer> list1 = List.of(1, 2, 3, 4, 4);
+        List<Integer> list2 = List.of(2, 3, 5);
+        List<Integer> list3 = List.of(3, 4, 5, 6);
+
+        Occurrences<Integer> occurrences = MoreLists.occurrences(List.of(list1, list2, list3));
+
+        assertThat(occurrences.collectionCount()).isEqualTo(3);
+        assertThat(occurrences.count(4)).isEqualTo(2);
+        assertThat(occurrences.count(7)).isZero();
+        assertThat(occurrences.counts())
+                .containsOnly(entry(1, 1), entry(2, 2), entry(3, 3), entry(4, 2), entry(5, 2), entry(6, 1));
+        assertListContainsExactlyInAnyOrder(occurrences.atLeast(2), 2, 3, 4, 5);
+        assertListContainsExactlyInAnyOrder(occurrences.exactly(1), 1, 6);
+        assertListContainsExactlyInAnyOrder(occurrences.union(), 1, 2, 3, 4, 5, 6);
+        assertListContainsExactlyInAnyOrder(occurrences.intersection(), 3);
+        assertListContainsExactlyInAnyOrder(occurrences.difference(), 1);
+        assertListContainsExactlyInAnyOrder(occurrences.symmetricDifference(), 1, 3, 6);
+        assertThatThrownBy(() -> occurrences.atLeast(0)).isInstanceOf(IllegalArgumentException.class);
+
+        assertListContainsExactlyInAnyOrder(MoreLists.atLeast(List.of(list1, list2, list3), 3), 3);
+        assertThat(MoreLists.occurrences(List.<List<Integer>>of()).intersection())
+                .isEmpty();
+    }
+
+    @Test
+    void sortedUnion() {
+        List<Integer> list1 = List.of(1, 3, 3, 5);
+        List<Integer> list2 = List.of(2, 3, 6);
+        List<Integer> list3 = List.of();
+
+        assertThat(MoreLists.sortedUnion(List.of(list1, list2, list3), Comparator.naturalOrder()))
+                .containsExactly(1, 2, 3, 5, 6);
+        assertThat(MoreLists.sortedUnion(List.of(List.of(5, 3, 1), List.of(4, 3)), Comparator.reverseOrder()))
+                .containsExactly(5, 4, 3, 1);
+        assertThat(MoreLists.sortedUnion(List.<List<Integer>>of(), Comparator.naturalOrder()))
+                .isEmpty();
+    }
+
+    @Test
+    void sortedIntersection() {
+        List<Integer> list1 = List.of(1, 2, 2, 3, 5, 8, 13, 21, 34);
+        List<Integer> list2 = new LinkedList<>(List.of(2, 3, 4, 5, 6, 7, 8, 9, 10, 21));
+        List<Integer> list3 = List.of(2, 5, 21, 100);
+
+        assertThat(MoreLists.sortedIntersection(List.of(list1, list2, list3), Comparator.naturalOrder()))
+                .containsExactly(2, 5, 21);
+        assertThat(MoreLists.sortedIntersection(List.of(list1, List.of(100, 200)), Comparator.naturalOrder()))
+                .isEmpty();
+        assertThat(MoreLists.sortedIntersection(List.of(list1, List.of()), Comparator.naturalOrder()))
+                .isEmpty();
+        assertThat(MoreLists.sortedIntersection(List.<List<Integer>>of(), Comparator.naturalOrder()))
+                .isEmpty();
+    }
+
     private void assertListContainsExactlyInAnyOrder(List<Integer> list, Integer... expectedValues) {
         assertThat(list).containsOnly(expectedValues);
         assertThat(list).doesNotHaveDuplicates();
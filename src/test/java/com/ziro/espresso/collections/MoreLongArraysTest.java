@@ -0,0 +1,50 @@
+package com.ziro.espresso.collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Test;
+
+class MoreLongArraysTest {
+
+    @Test
+    void union() {
+        assertThat(MoreLongArrays.union(List.of())).isEmpty();
+        assertThat(MoreLongArrays.union(List.of(new long[] {}, new long[] {}))).isEmpty();
+
+        long[] array1 = {0L, 1L, Long.MIN_VALUE};
+        long[] array2 = {1L, 2L, 2L, Long.MAX_VALUE, 0L};
+        assertThat(MoreLongArrays.union(List.of(array1, array2)))
+                .containsExactlyInAnyOrder(0L, 1L, 2L, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    @Test
+    void intersection() {
+        assertThat(MoreLongArrays.intersection(List.of())).isEmpty();
+
+        long[] array1 = {0L, 1L, 2L, 3L, -4L};
+        long[] array2 = {3L, 3L, 2L, 0L, -4L, 5L};
+        long[] array3 = {-4L, 0L, 3L, 6L, 7L};
+        assertThat(MoreLongArrays.intersection(List.of(array1, array2, array3))).containsExactlyInAnyOrder(0L, 3L, -4L);
+        assertThat(MoreLongArrays.intersection(List.of(array1, array2, new long[] {})))
+                .isEmpty();
+        assertThat(MoreLongArrays.intersection(List.of(array1, new long[] {8L, 9L})))
+                .isEmpty();
+    }
+
+    @Test
+    void intersectionOfLargeArrays() {
+        long[] evens = new long[100_000];
+        long[] multiplesOfThree = new long[100_000];
+        for (int i = 0; i < evens.length; i++) {
+            evens[i] = i * 2L;
+            multiplesOfThree[i] = i * 3L;
+        }
+
+        long[] intersection = MoreLongArrays.intersection(List.of(evens, multiplesOfThree));
+        assertThat(intersection).hasSize(33_334);
+        assertThat(LongStream.of(intersection).allMatch(value -> value % 6 == 0))
+                .isTrue();
+    }
+}
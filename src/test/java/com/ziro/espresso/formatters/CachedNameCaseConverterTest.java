@@ -0,0 +1,68 @@
+package com.ziro.espresso.formatters;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class CachedNameCaseConverterTest {
+
+    @Test
+    void sharesWordsBetweenNames() {
+        CachedNameCaseConverter converter = NameCaseConverter.cached(100);
+
+        assertThat(converter.toNameCase("JOHN SMITH")).isEqualTo("John Smith");
+        assertThat(converter.toNameCase("john smith-jones")).isEqualTo("John Smith-Jones");
+
+        assertThat(converter.stats()).isEqualTo(new CachedNameCaseConverter.Stats(2, 3, 0, 3));
+        assertThat(converter.stats().hitRate()).isEqualTo(0.4);
+    }
+
+    @Test
+    void doesNotCacheWordsDependingOnTheRestOfTheName() {
+        CachedNameCaseConverter converter = NameCaseConverter.cached(100);
+
+        assertThat(converter.toNameCase("al jaber")).isEqualTo("al Jaber");
+        assertThat(converter.toNameCase("jaber al")).isEqualTo("Jaber Al");
+        assertThat(converter.toNameCase("machar mcdonald")).isEqualTo("Machar McDonald");
+        assertThat(converter.toNameCase("machar")).isEqualTo("Machar");
+        assertThat(converter.toNameCase("O'S")).isEqualTo("O's");
+
+        assertThat(converter.stats().size()).isEqualTo(1);
+    }
+
+    @Test
+    void matchesLegacyImplementationWhileEvicting() {
+        CachedNameCaseConverter converter = NameCaseConverter.cached(64);
+        List<String> names = NameCorpus.generate(50_000, 11);
+
+        for (String name : names) {
+            assertThat(converter.toNameCase(name))
+                    .as("Name case of [%s]", name)
+                    .isEqualTo(LegacyNameCaseConverter.toNameCase(name));
+        }
+        assertThat(converter.stats().evictionCount()).isPositive();
+        assertThat(converter.stats().size()).isLessThanOrEqualTo(64);
+    }
+
+    @Test
+    void canConvertInBulk() {
+        CachedNameCaseConverter converter = NameCaseConverter.cached(1_000);
+        List<String> names = NameCorpus.generate(10_000, 5);
+
+        assertThat(converter.toNameCase(names)).isEqualTo(NameCaseConverter.toNameCase(names));
+        assertThat(converter.stats().hitRate()).isGreaterThan(0.5);
+
+        StringBuilder builder = new StringBuilder();
+        converter.toNameCase("GABRIELLA DELLA VALLE", builder);
+        assertThat(builder).hasToString("Gabriella della Valle");
+    }
+
+    @Test
+    void rejectsNonPositiveMaxEntries() {
+        assertThatThrownBy(() -> NameCaseConverter.cached(0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("maxEntries must be > 0 but was [0].");
+    }
+}
@@ -0,0 +1,158 @@
+package com.ziro.espresso.formatters;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.ziro.espresso.fluent.exceptions.SystemUnhandledException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DelimitedColumnNormalizerTest {
+
+    @Test
+    void formatsSelectedColumnsOfCsv() {
+        MaxLengthFormatter maxLength = MaxLengthFormatter.of(12);
+        DelimitedColumnNormalizer normalizer = DelimitedColumnNormalizer.csv()
+                .withHeader()
+                .column("name", NameCaseConverter::toNameCase)
+                .column("name", maxLength::format)
+                .build();
+        String input = "id,name,note\r\n"
+                + "1,JOHN SMITH,\"a, \"\"b\"\"\"\r\n"
+                + "2,\"MARY \"\"MAC\"\" DONALD, JR\",x\r\n"
+                + "3,,\n"
+                + "4,gabriella della valle";
+
+        Result result = normalize(normalizer, input);
+
+        assertThat(result.recordCount()).isEqualTo(4);
+        assertThat(result.output())
+                .isEqualTo("id,name,note\r\n"
+                        + "1,John Smith,\"a, \"\"b\"\"\"\r\n"
+                        + "2,\"Mary \"\"Mac\"\" D\",x\r\n"
+                        + "3,,\n"
+                        + "4,Gabriella de");
+    }
+
+    @Test
+    void quotesFormattedValuesWhenNeeded() {
+        DelimitedColumnNormalizer normalizer = DelimitedColumnNormalizer.csv()
+                .column(0, value -> value + ", \"Jr\"")
+                .build();
+
+        assertThat(normalize(normalizer, "smith,1\n").output()).isEqualTo("\"smith, \"\"Jr\"\"\",1\n");
+    }
+
+    @Test
+    void formatsTsvWithoutQuoting() {
+        DelimitedColumnNormalizer normalizer =
+                DelimitedColumnNormalizer.tsv().column(0, String::toUpperCase).build();
+
+        Result result = normalize(normalizer, "a\"b\tc\nd\te\n\n");
+
+        assertThat(result.recordCount()).isEqualTo(3);
+        assertThat(result.output()).isEqualTo("A\"B\tc\nD\te\n\n");
+    }
+
+    @Test
+    void keepsInputOrderAcrossParallelChunks() {
+        List<String> names = NameCorpus.generate(20_000, 9);
+        StringBuilder input = new StringBuilder("id,name\n");
+        StringBuilder expected = new StringBuilder("id,name\n");
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i).replace("\"", "");
+            input.append(i).append(",\"").append(name).append("\"\n");
+            expected.append(i)
+                    .append(",\"")
+                    .append(NameCaseConverter.toNameCase(name))
+                    .append("\"\n");
+        }
+
+        for (int chunkSize : List.of(1, 1_000, DelimitedColumnNormalizer.DEFAULT_CHUNK_SIZE)) {
+            DelimitedColumnNormalizer normalizer = DelimitedColumnNormalizer.csv()
+                    .withHeader()
+                    .column(1, NameCaseConverter::toNameCase)
+                    .chunkSize(chunkSize)
+                    .parallel(ForkJoinPool.commonPool())
+                    .build();
+
+            Result result = normalize(normalizer, input.toString());
+
+            assertThat(result.recordCount()).isEqualTo(names.size());
+            assertThat(result.output()).isEqualTo(expected.toString());
+        }
+    }
+
+    @Test
+    void normalizesFiles(@TempDir Path directory) throws IOException {
+        Path input = Files.writeString(directory.resolve("input.csv"), "first,last\njean,TREMBLAY\n");
+        Path output = directory.resolve("output.csv");
+        DelimitedColumnNormalizer normalizer = DelimitedColumnNormalizer.csv()
+                .withHeader()
+                .column("first", NameCaseConverter::toNameCase)
+                .column("last", NameCaseConverter::toNameCase)
+                .build();
+
+        assertThat(normalizer.normalize(input, output)).isEqualTo(1);
+        assertThat(output).hasContent("first,last\nJean,Tremblay\n");
+    }
+
+    @Test
+    void rejectsInvalidColumns() {
+        assertThatThrownBy(() -> DelimitedColumnNormalizer.csv()
+                        .column("name", NameCaseConverter::toNameCase)
+                        .build())
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Columns can only be selected by name in files with a header.");
+
+        DelimitedColumnNormalizer normalizer = DelimitedColumnNormalizer.csv()
+                .withHeader()
+                .column("name", NameCaseConverter::toNameCase)
+                .build();
+        assertThatThrownBy(() -> normalize(normalizer, "first,last\njean,tremblay\n"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Column [name] not found in header [first, last].");
+    }
+
+    @Test
+    void rejectsTsvValuesThatWouldNeedQuotes() {
+        DelimitedColumnNormalizer normalizer =
+                DelimitedColumnNormalizer.tsv().column(0, value -> value + "\t").build();
+
+        assertThatThrownBy(() -> normalize(normalizer, "a\n"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Formatted value of column [0] cannot hold a delimiter or a line break without quotes.");
+    }
+
+    @Test
+    void rejectsMalformedInput() {
+        DelimitedColumnNormalizer normalizer =
+                DelimitedColumnNormalizer.csv().column(0, String::strip).build();
+        ByteArrayInputStream input = new ByteArrayInputStream(new byte[] {'a', (byte) 0xFF, '\n'});
+
+        assertThatThrownBy(() -> normalizer.normalize(
+                        Channels.newChannel(input), Channels.newChannel(new ByteArrayOutputStream())))
+                .isInstanceOf(SystemUnhandledException.class)
+                .hasCauseInstanceOf(MalformedInputException.class);
+    }
+
+    private static Result normalize(DelimitedColumnNormalizer normalizer, String input) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        long recordCount = normalizer.normalize(
+                Channels.newChannel(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8))),
+                Channels.newChannel(output));
+        return new Result(recordCount, output.toString(StandardCharsets.UTF_8));
+    }
+
+    private record Result(long recordCount, String output) {}
+}
@@ -0,0 +1,96 @@
+package com.ziro.espresso.formatters;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+class MaxLengthFormatterTest {
+
+    private static final String GRINNING_FACE = "\uD83D\uDE00";
+
+    @Test
+    void truncatesAndTrimsLongValues() {
+        MaxLengthFormatter formatter = MaxLengthFormatter.of(10);
+        String shortValue = "Short";
+
+        assertThat(formatter.format("This is a long text")).isEqualTo("This is a");
+        assertThat(formatter.format(" padded value that is long")).isEqualTo("padded va");
+        assertThat(formatter.format(shortValue)).isSameAs(shortValue);
+    }
+
+    @Test
+    void neverSplitsSurrogatePairs() {
+        assertThat(MaxLengthFormatter.of(3).format("ab" + GRINNING_FACE + "c")).isEqualTo("ab");
+        assertThat(MaxLengthFormatter.of(4).format("ab" + GRINNING_FACE + "c")).isEqualTo("ab" + GRINNING_FACE);
+    }
+
+    @Test
+    void truncatesToUtf8ByteBudget() {
+        MaxLengthFormatter formatter = MaxLengthFormatter.ofUtf8Bytes(5);
+
+        assertThat(formatter.format("h\u00E9llo w\u00F6rld")).isEqualTo("h\u00E9ll");
+        assertThat(formatter.format("a" + GRINNING_FACE + "b")).isEqualTo("a" + GRINNING_FACE);
+        assertThat(MaxLengthFormatter.ofUtf8Bytes(4).format("a" + GRINNING_FACE + "b"))
+                .isEqualTo("a");
+        assertThat(formatter.format("\u4E2D\u6587")).isEqualTo("\u4E2D");
+    }
+
+    @Test
+    void formatsCharSequencesWithoutCopyingThem() {
+        MaxLengthFormatter formatter = MaxLengthFormatter.of(10);
+        StringBuilder shortValue = new StringBuilder("Short");
+
+        assertThat(formatter.format((CharSequence) shortValue)).isSameAs(shortValue);
+        assertThat(formatter.format((CharSequence) new StringBuilder("This is a long text")))
+                .hasToString("This is a");
+    }
+
+    @Test
+    void encodesFormattedValuesLikeStringGetBytes() {
+        String alphabet = "ab \t\u00E9\u00DF\u4E2D\u20AC\uD800\uDC00x" + GRINNING_FACE;
+        SplittableRandom random = new SplittableRandom(3);
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+
+        for (int i = 0; i < 10_000; i++) {
+            StringBuilder value = new StringBuilder();
+            for (int j = random.nextInt(20); j > 0; j--) {
+                value.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            int maxLength = 1 + random.nextInt(25);
+            MaxLengthFormatter formatter =
+                    random.nextBoolean() ? MaxLengthFormatter.ofUtf8Bytes(maxLength) : MaxLengthFormatter.of(maxLength);
+            byte[] expected = formatter.format(value.toString()).getBytes(StandardCharsets.UTF_8);
+
+            buffer.clear();
+            int byteCount = formatter.formatUtf8(value, buffer);
+
+            assertThat(Arrays.copyOf(buffer.array(), byteCount))
+                    .as("UTF-8 of [%s] truncated to [%s]", value, maxLength)
+                    .isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void staysWithinUtf8ByteBudget() {
+        MaxLengthFormatter formatter = MaxLengthFormatter.ofUtf8Bytes(7);
+        ByteBuffer buffer = ByteBuffer.allocate(7);
+
+        assertThat(formatter.formatUtf8("\u4E2D\u6587" + GRINNING_FACE, buffer)).isEqualTo(6);
+        assertThat(buffer.position()).isEqualTo(6);
+    }
+
+    @Test
+    void rejectsNonPositiveLengths() {
+        assertThatThrownBy(() -> MaxLengthFormatter.of(0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Max length must be > 0");
+        assertThatThrownBy(() -> MaxLengthFormatter.ofUtf8Bytes(-1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Max bytes must be > 0");
+    }
+}
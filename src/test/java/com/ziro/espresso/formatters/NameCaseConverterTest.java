@@ -2,6 +2,14 @@ package com.ziro.espresso.formatters;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
 
 public class NameCaseConverterTest {
@@ -59,4 +67,86 @@ public class NameCaseConverterTest {
         // Names with "St." (Saint)
         assertThat(NameCaseConverter.toNameCase("st. clair")).isEqualTo("St. Clair");
     }
+
+    @Test
+    void keepsLegacyEdgeCases() {
+        // Roman numerals are upper cased before conjunctions are lower cased
+        assertThat(NameCaseConverter.toNameCase("LOUIS I")).isEqualTo("Louis i");
+        assertThat(NameCaseConverter.toNameCase("bruce li")).isEqualTo("Bruce LI");
+
+        // "Al", "Ben" and "Van" are only particles when followed by another word
+        assertThat(NameCaseConverter.toNameCase("al jaber")).isEqualTo("al Jaber");
+        assertThat(NameCaseConverter.toNameCase("jaber al")).isEqualTo("Jaber Al");
+
+        // A Mc name anywhere turns on the Mac rules for every word
+        assertThat(NameCaseConverter.toNameCase("machar mcdonald")).isEqualTo("Machar McDonald");
+        assertThat(NameCaseConverter.toNameCase("macharris")).isEqualTo("Macharris");
+
+        // Words with digits are left as is
+        assertThat(NameCaseConverter.toNameCase("LOUIS14 O'S")).isEqualTo("LOUIS14 O's");
+    }
+
+    @Test
+    void matchesLegacyImplementationOnNameCorpus() {
+        List<String> names = NameCorpus.generate(100_000, 42);
+
+        for (String name : names) {
+            assertThat(NameCaseConverter.toNameCase(name))
+                    .as("Name case of [%s]", name)
+                    .isEqualTo(LegacyNameCaseConverter.toNameCase(name));
+        }
+    }
+
+    @Test
+    void matchesLegacyImplementationInTurkishLocale() {
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+        try {
+            for (String name : NameCorpus.generate(10_000, 7)) {
+                assertThat(NameCaseConverter.toNameCase(name))
+                        .as("Name case of [%s]", name)
+                        .isEqualTo(LegacyNameCaseConverter.toNameCase(name));
+            }
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    @Test
+    void canConvertIntoAppendable() {
+        StringBuilder builder = new StringBuilder("Name: ");
+        NameCaseConverter.toNameCase("JOHN MACDONALD", builder);
+        assertThat(builder).hasToString("Name: John MacDonald");
+
+        StringWriter writer = new StringWriter();
+        NameCaseConverter.toNameCase(new StringBuilder("jEan tREMBLAY"), writer);
+        NameCaseConverter.toNameCase("", writer);
+        assertThat(writer).hasToString("Jean Tremblay");
+    }
+
+    @Test
+    void canConvertInBulk() {
+        List<String> names = new ArrayList<>(NameCorpus.generate(20_000, 3));
+        names.set(0, null);
+        names.set(1, "");
+        List<String> expected =
+                names.stream().map(LegacyNameCaseConverter::toNameCase).collect(Collectors.toList());
+
+        assertThat(NameCaseConverter.toNameCase(names)).isEqualTo(expected);
+        assertThat(NameCaseConverter.toNameCase(names, ForkJoinPool.commonPool()))
+                .isEqualTo(expected);
+        assertThat(NameCaseConverter.toNameCase(names.toArray(new String[0]))).containsExactlyElementsOf(expected);
+        assertThat(NameCaseConverter.toNameCase(names.toArray(new String[0]), ForkJoinPool.commonPool()))
+                .containsExactlyElementsOf(expected);
+        assertThat(NameCaseConverter.toNameCase(names.parallelStream())).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void canConvertSmallBatchWithPool() {
+        assertThat(NameCaseConverter.toNameCase(List.of("JOHN DOE", "mARY aNN sMITH"), ForkJoinPool.commonPool()))
+                .containsExactly("John Doe", "Mary Ann Smith");
+        assertThat(NameCaseConverter.toNameCase(Stream.of("van der sar"))).containsExactly("van der Sar");
+        assertThat(Arrays.asList(NameCaseConverter.toNameCase(new String[] {"LOUIS XVI", null})))
+                .containsExactly("Louis XVI", null);
+    }
 }
@@ -0,0 +1,158 @@
+package com.ziro.espresso.formatters;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class NameCaseDictionaryTest {
+
+    @Test
+    void loadsDefaultRules() {
+        NameCaseDictionary defaults = NameCaseDictionary.defaults();
+
+        assertThat(defaults.macExceptionCount()).isEqualTo(14);
+        assertThat(defaults.particleCount()).isEqualTo(23);
+        assertThat(NameCaseConverter.toNameCase("GABRIELLA DELLA VALLE", defaults))
+                .isEqualTo("Gabriella della Valle");
+    }
+
+    @Test
+    void copyOfDefaultRulesMatchesLegacyImplementation() {
+        NameCaseDictionary dictionary = NameCaseDictionary.builder()
+                .addAll(NameCaseDictionary.defaults())
+                .build();
+
+        for (String name : NameCorpus.generate(20_000, 3)) {
+            assertThat(NameCaseConverter.toNameCase(name, dictionary))
+                    .as("Name case of [%s]", name)
+                    .isEqualTo(LegacyNameCaseConverter.toNameCase(name));
+        }
+    }
+
+    @Test
+    void appliesAddedRules() {
+        NameCaseDictionary dictionary = NameCaseDictionary.builder()
+                .addAll(NameCaseDictionary.defaults())
+                .macException("MacHell", "Machell")
+                .particle("TER")
+                .build();
+
+        assertThat(NameCaseConverter.toNameCase("MACHELL TER HORST")).isEqualTo("MacHell Ter Horst");
+        assertThat(NameCaseConverter.toNameCase("MACHELL TER HORST", dictionary))
+                .isEqualTo("Machell ter Horst");
+        assertThat(NameCaseConverter.toNameCase("mary macdonald", dictionary)).isEqualTo("Mary MacDonald");
+    }
+
+    @Test
+    void appliesAddedRulesInBulk() {
+        NameCaseDictionary dictionary = NameCaseDictionary.builder()
+                .addAll(NameCaseDictionary.defaults())
+                .macException("MacHell", "Machell")
+                .particle("TER")
+                .build();
+        List<String> names = new ArrayList<>(NameCorpus.generate(10_000, 3));
+        for (int i = 0; i < names.size(); i += 100) {
+            names.set(i, "MACHELL TER HORST");
+        }
+        List<String> expected = names.stream()
+                .map(name -> NameCaseConverter.toNameCase(name, dictionary))
+                .collect(Collectors.toList());
+        String[] namesArray = names.toArray(new String[0]);
+
+        assertThat(expected).contains("Machell ter Horst").doesNotContain("MacHell Ter Horst");
+        assertThat(NameCaseConverter.toNameCase(names, ForkJoinPool.commonPool(), dictionary))
+                .isEqualTo(expected);
+        assertThat(NameCaseConverter.toNameCase(namesArray, dictionary)).containsExactlyElementsOf(expected);
+        assertThat(NameCaseConverter.toNameCase(namesArray, ForkJoinPool.commonPool(), dictionary))
+                .containsExactlyElementsOf(expected);
+        assertThat(NameCaseConverter.toNameCase(names.parallelStream(), dictionary))
+                .containsExactlyElementsOf(expected);
+        assertThat(NameCaseConverter.toNameCase(List.of("MACHELL TER HORST"), ForkJoinPool.commonPool(), dictionary))
+                .containsExactly("Machell ter Horst");
+    }
+
+    @Test
+    void replacesEarlierEntries() {
+        NameCaseDictionary dictionary = NameCaseDictionary.builder()
+                .addAll(NameCaseDictionary.defaults())
+                .particle("van")
+                .leadingParticle("De")
+                .build();
+
+        assertThat(NameCaseConverter.toNameCase("ludwig van", dictionary)).isEqualTo("Ludwig van");
+        assertThat(NameCaseConverter.toNameCase("louis de", dictionary)).isEqualTo("Louis De");
+        assertThat(NameCaseConverter.toNameCase("louis de broglie", dictionary)).isEqualTo("Louis de Broglie");
+        assertThat(dictionary.particleCount()).isEqualTo(23);
+    }
+
+    @Test
+    void appliesLongestMacExceptionInASinglePass() {
+        NameCaseDictionary dictionary = NameCaseDictionary.builder()
+                .macException("MacKe", "Macke")
+                .macException("MacKenna", "Mackenna")
+                .macException("Mackenna", "MACKENNA")
+                .build();
+
+        assertThat(NameCaseConverter.toNameCase("mackenna mackey", dictionary)).isEqualTo("Mackenna Mackey");
+    }
+
+    @Test
+    void loadsRulesFromClasspathResource() {
+        NameCaseDictionary dictionary = NameCaseDictionary.builder()
+                .load("name-case-dictionary-test.txt")
+                .build();
+
+        assertThat(dictionary).hasToString("NameCaseDictionary{macExceptions=1, particles=2}");
+        assertThat(NameCaseConverter.toNameCase("machell ter ten horst ten", dictionary))
+                .isEqualTo("Machell ter ten Horst Ten");
+    }
+
+    @Test
+    void rejectsInvalidResources() {
+        assertThatThrownBy(() -> NameCaseDictionary.builder().load("name-case-dictionary-invalid.txt"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("Invalid name case dictionary entry [particle de la] at [")
+                .hasMessageEndingWith("name-case-dictionary-invalid.txt:2].");
+        assertThatThrownBy(() -> NameCaseDictionary.builder().load("missing-name-case-dictionary.txt"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsInvalidEntries() {
+        NameCaseDictionary.Builder builder = NameCaseDictionary.builder();
+
+        assertThatThrownBy(() -> builder.macException("Mac-Hado", "Mac-hado"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Mac exception pattern must be made of letters but was [Mac-Hado].");
+        assertThatThrownBy(() -> builder.macException("MacHado", "Macedo"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Mac exception replacement must only change the case of [MacHado] but was [Macedo].");
+        assertThatThrownBy(() -> builder.particle("d'"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Particle must be made of letters but was [d'].");
+        assertThatThrownBy(() -> builder.leadingParticle(""))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Particle must be made of letters but was [].");
+    }
+
+    @Test
+    void cachedConversionsFollowTheDictionary() {
+        NameCaseDictionary dictionary = NameCaseDictionary.builder()
+                .addAll(NameCaseDictionary.defaults())
+                .macException("Smith", "SMITH")
+                .leadingParticle("ter")
+                .build();
+        CachedNameCaseConverter converter = NameCaseConverter.cached(64, dictionary);
+
+        assertThat(converter.toNameCase("smith ter")).isEqualTo("Smith Ter");
+        assertThat(converter.toNameCase("smith mcdonald ter horst")).isEqualTo("SMITH McDonald ter Horst");
+
+        List<String> names = NameCorpus.generate(20_000, 13);
+        assertThat(converter.toNameCase(names)).isEqualTo(NameCaseConverter.toNameCase(names, dictionary));
+    }
+}
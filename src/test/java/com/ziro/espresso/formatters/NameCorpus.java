@@ -0,0 +1,221 @@
+package com.ziro.espresso.formatters;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Generates reproducible, randomly cased names mixing common names with every word the name case rules single out:
+ * particles, Mac/Mc names and their exceptions, Roman numerals, conjunctions, apostrophes, accented and non Latin
+ * letters, combining marks, digits and odd separators.
+ */
+final class NameCorpus {
+
+    private static final String[] WORDS = {
+        // Common names
+        "john",
+        "mary",
+        "smith",
+        "jones",
+        "jean",
+        "tremblay",
+        "benoit",
+        "desnoyers",
+        "marie",
+        "josee",
+        "leblanc",
+        "juan",
+        "maria",
+        "gabriella",
+        "valle",
+        "louis",
+        "tolkien",
+        "st",
+        "clair",
+        "ann",
+        "alice",
+        "bianca",
+        "delano",
+        "donald",
+        "vincent",
+        "livia",
+        "oliver",
+        "ivan",
+        "xavier",
+        "elena",
+        "eva",
+        "yves",
+        // Particles
+        "al",
+        "bin",
+        "binti",
+        "binte",
+        "ap",
+        "ben",
+        "della",
+        "delle",
+        "da",
+        "de",
+        "di",
+        "do",
+        "du",
+        "das",
+        "dos",
+        "del",
+        "der",
+        "el",
+        "la",
+        "le",
+        "lo",
+        "van",
+        "von",
+        "dell",
+        "dela",
+        "ab",
+        "ibn",
+        // Mac and Mc
+        "macdonald",
+        "mcdonald",
+        "macias",
+        "machado",
+        "macedo",
+        "macevicius",
+        "machar",
+        "machin",
+        "machlin",
+        "maciulis",
+        "mackie",
+        "mackle",
+        "macklin",
+        "mackmin",
+        "macquarie",
+        "macmurdo",
+        "macharris",
+        "macintyre",
+        "mac",
+        "mc",
+        "mcc",
+        "macab",
+        "macz",
+        "maccio",
+        "mackenzie",
+        "mcmac",
+        "macedonia",
+        "macmacedo",
+        // Roman numerals
+        "i",
+        "ii",
+        "iii",
+        "iv",
+        "v",
+        "vi",
+        "vii",
+        "viii",
+        "ix",
+        "x",
+        "xi",
+        "xiv",
+        "xix",
+        "xl",
+        "xlii",
+        "l",
+        "li",
+        "lx",
+        "lxxxix",
+        "xxx",
+        "xxxx",
+        "iiii",
+        "vx",
+        "il",
+        "xli",
+        "lv",
+        // Conjunctions and single letters
+        "y",
+        "e",
+        "a",
+        "o",
+        "s",
+        "t",
+        // Apostrophes
+        "o'neil",
+        "d'artagnan",
+        "o's",
+        "l'",
+        "'s",
+        "o'i",
+        "d'e",
+        // Accented, non Latin letters and special casings
+        "bj\u00F6rk",
+        "gu\u00F0mundsd\u00F3ttir",
+        "jos\u00E9e",
+        "\u00D1\u00FA\u00F1ez",
+        "stra\u00DFe",
+        "\u00DF",
+        "\u0131stanbul",
+        "\u0130lker",
+        "\u0131",
+        "\u0130",
+        "\u03A3\u03AF\u03C3\u03C5\u03C6\u03BF\u03C3",
+        "\u0149",
+        "\u01C6ord",
+        "\u1E9Ee",
+        "\uD835\uDC00lpha",
+        "\uD801\uDC28",
+        "\u017Fam",
+        "\u212Aelvin",
+        // Combining marks, digits and underscores within words
+        "jose\u0301",
+        "e\u0301",
+        "i\u0307",
+        "\u0301x",
+        "mac\u0301donald",
+        "louis14",
+        "mac2",
+        "1macedo",
+        "_al",
+        "de_"
+    };
+
+    private static final String[] SEPARATORS = {
+        " ", " ", " ", " ", " ", "-", "  ", ". ", ", ", "'", "\t", "\n", "_", "1", "\u00A0", "/", "'-", " (", ") ", ""
+    };
+
+    private NameCorpus() {}
+
+    static List<String> generate(int size, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<String> names = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            names.add(name(random));
+        }
+        return names;
+    }
+
+    private static String name(SplittableRandom random) {
+        StringBuilder name = new StringBuilder();
+        int wordCount = 1 + random.nextInt(4);
+        for (int i = 0; i < wordCount; i++) {
+            if (i > 0 || random.nextInt(20) == 0) {
+                name.append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+            }
+            String word = WORDS[random.nextInt(WORDS.length)];
+            switch (random.nextInt(4)) {
+                case 0 -> name.append(word);
+                case 1 -> name.append(word.toUpperCase());
+                case 2 -> name.append(Character.toUpperCase(word.charAt(0))).append(word.substring(1));
+                default -> appendRandomlyCased(name, word, random);
+            }
+        }
+        if (random.nextInt(20) == 0) {
+            name.append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+        }
+        return name.toString();
+    }
+
+    private static void appendRandomlyCased(StringBuilder name, String word, SplittableRandom random) {
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            name.append(random.nextBoolean() ? Character.toUpperCase(c) : Character.toLowerCase(c));
+        }
+    }
+}
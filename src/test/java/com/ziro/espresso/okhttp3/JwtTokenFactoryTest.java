@@ -0,0 +1,105 @@
+package com.ziro.espresso.okhttp3;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.ziro.espresso.fluent.exceptions.SystemUnhandledException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import org.junit.jupiter.api.Test;
+
+class JwtTokenFactoryTest {
+
+    @Test
+    void parsesAccessTokenFromTokenResponse() throws IOException {
+        String response = "{\"token_type\":\"Bearer\",\"scope\":[\"read\",\"write\"],\"claims\":{\"access_token\":1},"
+                + "\"access_token\":\"opaque-token\",\"expires_in\":3600}";
+
+        JwtTokenFactory.AccessToken accessToken = JwtTokenFactory.parseAccessToken(inputStream(response));
+
+        assertThat(accessToken.value()).isEqualTo("opaque-token");
+        assertThat(accessToken.lifetime()).isEqualTo(Duration.ofHours(1));
+        assertThat(accessToken).hasToString("AccessToken{lifetime=PT1H}");
+    }
+
+    @Test
+    void limitsLifetimeToExpirationClaimOfJwt() throws IOException {
+        String jwt = jwt(
+                "{\"sub\":\"client123\",\"aud\":[\"api\"],\"exp\":" + (System.currentTimeMillis() / 1000 + 120) + "}");
+
+        JwtTokenFactory.AccessToken accessToken =
+                JwtTokenFactory.parseAccessToken(inputStream("{\"access_token\":\"" + jwt + "\",\"expires_in\":3600}"));
+
+        assertThat(accessToken.value()).isEqualTo(jwt);
+        assertThat(accessToken.lifetime()).isBetween(Duration.ofSeconds(110), Duration.ofSeconds(120));
+        assertThat(JwtTokenFactory.parseAccessToken(inputStream("{\"access_token\":\"" + jwt + "\"}"))
+                        .lifetime())
+                .isBetween(Duration.ofSeconds(110), Duration.ofSeconds(120));
+    }
+
+    @Test
+    void readsLifetimesOfTokensWithNoTimeLeft() throws IOException {
+        String jwt = jwt("{\"exp\":" + (System.currentTimeMillis() / 1000 - 30) + "}");
+
+        assertThat(JwtTokenFactory.parseAccessToken(inputStream("{\"access_token\":\"opaque-token\",\"expires_in\":0}"))
+                        .lifetime())
+                .isZero();
+        assertThat(JwtTokenFactory.parseAccessToken(inputStream("{\"access_token\":\"" + jwt + "\"}"))
+                        .lifetime())
+                .isBetween(Duration.ofSeconds(-40), Duration.ofSeconds(-30));
+        assertThat(JwtTokenFactory.parseAccessToken(
+                                inputStream("{\"access_token\":\"" + jwt("{\"exp\":-9223372036854775808}") + "\"}"))
+                        .lifetime())
+                .isNegative();
+    }
+
+    @Test
+    void saturatesLifetimesTooLongForDurations() throws IOException {
+        assertThat(JwtTokenFactory.parseAccessToken(
+                                inputStream("{\"access_token\":\"opaque-token\",\"expires_in\":99999999999999999999}"))
+                        .lifetime())
+                .isEqualTo(Duration.ofSeconds(Long.MAX_VALUE));
+        assertThat(JwtTokenFactory.parseAccessToken(
+                                inputStream("{\"access_token\":\"opaque-token\",\"expires_in\":1e30}"))
+                        .lifetime())
+                .isEqualTo(Duration.ofSeconds(Long.MAX_VALUE));
+    }
+
+    @Test
+    void leavesLifetimeUnknownWhenNotGiven() throws IOException {
+        String jwt = jwt("{\"sub\":\"client123\"}");
+
+        assertThat(JwtTokenFactory.parseAccessToken(inputStream("{\"access_token\":\"" + jwt + "\"}"))
+                        .lifetime())
+                .isNull();
+        assertThat(JwtTokenFactory.parseAccessToken(inputStream("{\"access_token\":\"a.%%%.b\"}"))
+                        .lifetime())
+                .isNull();
+    }
+
+    @Test
+    void rejectsResponsesWithoutAccessToken() {
+        assertThatThrownBy(() -> JwtTokenFactory.parseAccessToken(inputStream("{\"access_token\":null}")))
+                .isInstanceOf(SystemUnhandledException.class)
+                .hasMessageEndingWith("The response has no [access_token].");
+        assertThatThrownBy(() -> JwtTokenFactory.parseAccessToken(inputStream("[\"access_token\"]")))
+                .isInstanceOf(SystemUnhandledException.class);
+        assertThatThrownBy(() -> JwtTokenFactory.parseAccessToken(inputStream("{\"access_token\":")))
+                .isInstanceOf(JsonParseException.class);
+    }
+
+    private static String jwt(String payload) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString("{\"alg\":\"HS256\"}".getBytes(StandardCharsets.UTF_8)) + "."
+                + encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + ".c2lnbmF0dXJl";
+    }
+
+    private static InputStream inputStream(String value) {
+        return new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,304 @@
+package com.ziro.espresso.okhttp3;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.google.common.base.Ticker;
+import com.ziro.espresso.fluent.exceptions.SystemUnhandledException;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class OAuth2ClientAccessTokensTest {
+
+    private static final OAuth2ClientAccessTokenRequestParameters PARAMS = new OAuth2ClientAccessTokenRequestParameters(
+            "https://auth-server.com/oauth/token", "client123", "secret456", "read write");
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final Ticker ticker = new Ticker() {
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+    };
+    private final List<CompletableFuture<JwtTokenFactory.AccessToken>> fetches =
+            Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    void cachesTokensForTheirLifetimeMinusSafetyMargin() {
+        OAuth2ClientAccessTokens accessTokens = builder().refreshAhead(1).build();
+
+        assertThat(accessTokens.get(PARAMS)).isEqualTo("token-1");
+        advance(Duration.ofSeconds(539));
+        assertThat(accessTokens.get(PARAMS)).isEqualTo("token-1");
+        advance(Duration.ofSeconds(1));
+        assertThat(accessTokens.get(PARAMS)).isEqualTo("token-2");
+        assertThat(fetches).hasSize(2);
+    }
+
+    @Test
+    void cachesTokensWithoutLifetimeForDefaultLifetime() {
+        OAuth2ClientAccessTokens accessTokens = OAuth2ClientAccessTokens.builder()
+                .tokenFetcher(params -> completedFetch(null))
+                .ticker(ticker)
+                .refreshAhead(1)
+                .defaultLifetime(Duration.ofMinutes(10))
+                .build();
+
+        assertThat(accessTokens.get(PARAMS)).isEqualTo("token-1");
+        advance(Duration.ofSeconds(539));
+        assertThat(accessTokens.get(PARAMS)).isEqualTo("token-1");
+        advance(Duration.ofSeconds(1));
+        assertThat(accessTokens.get(PARAMS)).isEqualTo("token-2");
+    }
+
+    @Test
+    void keepsAtLeastHalfOfShortLifetimes() {
+        OAuth2ClientAccessTokens accessTokens = OAuth2ClientAccessTokens.builder()
+                .tokenFetcher(params -> completedFetch(Duration.ofSeconds(30)))
+                .ticker(ticker)
+                .refreshAhead(1)
+                .build();
+
+        assertThat(accessTokens.get(PARAMS)).isEqualTo("token-1");
+        advance(Duration.ofSeconds(14));
+        assertThat(accessTokens.get(PARAMS)).isEqualTo("token-1");
+        advance(Duration.ofSeconds(1));
+        assertThat(accessTokens.get(PARAMS)).isEqualTo("token-2");
+    }
+
+    @Test
+    void cachesTokensReceivedWithNoTimeLeftBriefly() {
+        OAuth2ClientAccessTokens accessTokens = OAuth2ClientAccessTokens.builder()
+                .tokenFetcher(params -> completedFetch(fetches.isEmpty() ? Duration.ZERO : Duration.ofSeconds(-30)))
+                .ticker(ticker)
+                .refreshAhead(1)
+                .build();
+
+        assertThat(accessTokens.get(PARAMS)).isEqualTo("token-1");
+        assertThat(accessTokens.get(PARAMS)).isEqualTo("token-1");
+        advance(Duration.ofSeconds(4));
+        assertThat(accessTokens.get(PARAMS)).isEqualTo("token-1");
+        advance(Duration.ofSeconds(1));
+        assertThat(accessTokens.get(PARAMS)).isEqualTo("token-2");
+        advance(Duration.ofSeconds(4));
+        assertThat(accessTokens.get(PARAMS)).isEqualTo("token-2");
+        assertThat(fetches).hasSize(2);
+    }
+
+    @Test
+    void cachesTokensForAtMostADay() {
+        OAuth2ClientAccessTokens accessTokens = OAuth2ClientAccessTokens.builder()
+                .tokenFetcher(params -> completedFetch(Duration.ofSeconds(Long.MAX_VALUE)))
+                .ticker(ticker)
+                .refreshAhead(1)
+                .build();
+
+        assertThat(accessTokens.get(PARAMS)).isEqualTo("token-1");
+        advance(Duration.ofHours(24).minusSeconds(61));
+        assertThat(accessTokens.get(PARAMS)).isEqualTo("token-1");
+        advance(Duration.ofSeconds(1));
+        assertThat(accessTokens.get(PARAMS)).isEqualTo("token-2");
+    }
+
+    @Test
+    void renewsTokensAheadOfExpiryInTheBackground() {
+        CompletableFuture<JwtTokenFactory.AccessToken> renewal = new CompletableFuture<>();
+        OAuth2ClientAccessTokens accessTokens = OAuth2ClientAccessTokens.builder()
+                .tokenFetcher(params -> fetches.isEmpty() ? completedFetch(Duration.ofSeconds(600)) : pending(renewal))
+                .ticker(ticker)
+                .refreshAhead(0.5)
+                .build();
+
+        assertThat(accessTokens.get(PARAMS)).isEqualTo("token-1");
+        advance(Duration.ofSeconds(269));
+        assertThat(accessTokens.get(PARAMS)).isEqualTo("token-1");
+        assertThat(fetches).hasSize(1);
+
+        advance(Duration.ofSeconds(1));
+        assertThat(accessTokens.get(PARAMS)).isEqualTo("token-1");
+        assertThat(accessTokens.get(PARAMS)).isEqualTo("token-1");
+        assertThat(fetches).hasSize(2);
+
+        renewal.complete(new JwtTokenFactory.AccessToken("token-2", Duration.ofSeconds(600)));
+        assertThat(accessTokens.get(PARAMS)).isEqualTo("token-2");
+        assertThat(fetches).hasSize(2);
+    }
+
+    @Test
+    void retriesFailedRenewalsOnceHalfOfTheTimeLeftHasPassed() {
+        OAuth2ClientAccessTokens accessTokens = OAuth2ClientAccessTokens.builder()
+                .tokenFetcher(params -> fetches.isEmpty()
+                        ? completedFetch(Duration.ofSeconds(600))
+                        : pending(CompletableFuture.failedFuture(new IOException("Authorization Server is down"))))
+                .ticker(ticker)
+                .refreshAhead(0.5)
+                .build();
+
+        assertThat(accessTokens.get(PARAMS)).isEqualTo("token-1");
+        advance(Duration.ofSeconds(270));
+        assertThat(accessTokens.get(PARAMS)).isEqualTo("token-1");
+        advance(Duration.ofSeconds(134));
+        assertThat(accessTokens.get(PARAMS)).isEqualTo("token-1");
+        assertThat(fetches).hasSize(2);
+
+        advance(Duration.ofSeconds(1));
+        assertThat(accessTokens.get(PARAMS)).isEqualTo("token-1");
+        assertThat(fetches).hasSize(3);
+    }
+
+    @Test
+    void coalescesConcurrentFetches() throws Exception {
+        CompletableFuture<JwtTokenFactory.AccessToken> fetch = new CompletableFuture<>();
+        AtomicLong fetchCount = new AtomicLong();
+        OAuth2ClientAccessTokens accessTokens = OAuth2ClientAccessTokens.builder()
+                .tokenFetcher(params -> {
+                    fetchCount.incrementAndGet();
+                    return fetch;
+                })
+                .ticker(ticker)
+                .build();
+
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(CompletableFuture.supplyAsync(() -> accessTokens.get(PARAMS)));
+        }
+        while (fetchCount.get() == 0) {
+            Thread.onSpinWait();
+        }
+        fetch.complete(new JwtTokenFactory.AccessToken("token-1", Duration.ofSeconds(600)));
+
+        for (CompletableFuture<String> result : results) {
+            assertThat(result.get(10, TimeUnit.SECONDS)).isEqualTo("token-1");
+        }
+        assertThat(fetchCount).hasValue(1);
+    }
+
+    @Test
+    void renewsRejectedTokensOnce() {
+        OAuth2ClientAccessTokens accessTokens = builder().build();
+
+        assertThat(accessTokens.get(PARAMS)).isEqualTo("token-1");
+        advance(Duration.ofSeconds(10));
+        assertThat(accessTokens.renew(PARAMS, "token-1")).isEqualTo("token-2");
+        assertThat(accessTokens.renew(PARAMS, "token-1")).isEqualTo("token-2");
+        assertThat(accessTokens.get(PARAMS)).isEqualTo("token-2");
+        assertThat(fetches).hasSize(2);
+    }
+
+    @Test
+    void doesNotRenewTokensRejectedRightAfterTheyWereReceived() {
+        OAuth2ClientAccessTokens accessTokens =
+                builder().minRenewalAge(Duration.ofSeconds(30)).build();
+
+        assertThat(accessTokens.get(PARAMS)).isEqualTo("token-1");
+        advance(Duration.ofSeconds(29));
+        assertThat(accessTokens.renew(PARAMS, "token-1")).isEqualTo("token-1");
+        assertThat(fetches).hasSize(1);
+
+        advance(Duration.ofSeconds(1));
+        assertThat(accessTokens.renew(PARAMS, "token-1")).isEqualTo("token-2");
+    }
+
+    @Test
+    void coalescesConcurrentRenewals() throws Exception {
+        CompletableFuture<JwtTokenFactory.AccessToken> renewal = new CompletableFuture<>();
+        OAuth2ClientAccessTokens accessTokens = OAuth2ClientAccessTokens.builder()
+                .tokenFetcher(params -> fetches.isEmpty() ? completedFetch(Duration.ofSeconds(600)) : pending(renewal))
+                .ticker(ticker)
+                .build();
+        assertThat(accessTokens.get(PARAMS)).isEqualTo("token-1");
+        advance(Duration.ofSeconds(10));
+
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(CompletableFuture.supplyAsync(() -> accessTokens.renew(PARAMS, "token-1")));
+        }
+        while (fetches.size() < 2) {
+            Thread.onSpinWait();
+        }
+        results.add(CompletableFuture.supplyAsync(() -> accessTokens.get(PARAMS)));
+        renewal.complete(new JwtTokenFactory.AccessToken("token-2", Duration.ofSeconds(600)));
+
+        for (CompletableFuture<String> result : results) {
+            assertThat(result.get(10, TimeUnit.SECONDS)).isEqualTo("token-2");
+        }
+        assertThat(fetches).hasSize(2);
+    }
+
+    @Test
+    void wrapsFetchFailures() {
+        OAuth2ClientAccessTokens accessTokens = OAuth2ClientAccessTokens.builder()
+                .tokenFetcher(params -> CompletableFuture.failedFuture(new IOException("Authorization Server is down")))
+                .build();
+
+        assertThatThrownBy(() -> accessTokens.get(PARAMS))
+                .isInstanceOf(SystemUnhandledException.class)
+                .hasCauseInstanceOf(IOException.class)
+                .hasMessage("Something went wrong while trying to get access token for "
+                        + "[OAuth2ClientAccessTokenRequestParameters{tokenUrl=https://auth-server.com/oauth/token, "
+                        + "clientId=client123, scope=read write}].");
+    }
+
+    @Test
+    void completesFetchesOfTokensThatCannotBeCached() {
+        OAuth2ClientAccessTokens accessTokens = OAuth2ClientAccessTokens.builder()
+                .tokenFetcher(params -> fetches.isEmpty()
+                        ? pending(CompletableFuture.completedFuture(null))
+                        : completedFetch(Duration.ofSeconds(600)))
+                .ticker(ticker)
+                .build();
+
+        assertThatThrownBy(() -> accessTokens.get(PARAMS))
+                .isInstanceOf(SystemUnhandledException.class)
+                .hasCauseInstanceOf(NullPointerException.class);
+        assertThat(accessTokens.get(PARAMS)).isEqualTo("token-2");
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        OAuth2ClientAccessTokens.Builder builder = OAuth2ClientAccessTokens.builder();
+
+        assertThatThrownBy(() -> builder.safetyMargin(Duration.ofSeconds(-1)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Safety margin must not be negative but was [PT-1S].");
+        assertThatThrownBy(() -> builder.refreshAhead(0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Refresh ahead fraction must be > 0 and <= 1 but was [0.0].");
+        assertThatThrownBy(() -> builder.defaultLifetime(Duration.ZERO))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Default lifetime must be > 0 but was [PT0S].");
+        assertThatThrownBy(() -> builder.minRenewalAge(Duration.ofSeconds(-1)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Minimum renewal age must not be negative but was [PT-1S].");
+    }
+
+    private OAuth2ClientAccessTokens.Builder builder() {
+        return OAuth2ClientAccessTokens.builder()
+                .tokenFetcher(params -> completedFetch(Duration.ofSeconds(600)))
+                .ticker(ticker);
+    }
+
+    private CompletableFuture<JwtTokenFactory.AccessToken> completedFetch(Duration lifetime) {
+        CompletableFuture<JwtTokenFactory.AccessToken> fetch = CompletableFuture.completedFuture(
+                new JwtTokenFactory.AccessToken("token-" + (fetches.size() + 1), lifetime));
+        fetches.add(fetch);
+        return fetch;
+    }
+
+    private CompletableFuture<JwtTokenFactory.AccessToken> pending(
+            CompletableFuture<JwtTokenFactory.AccessToken> fetch) {
+        fetches.add(fetch);
+        return fetch;
+    }
+
+    private void advance(Duration duration) {
+        nanos.addAndGet(duration.toNanos());
+    }
+}
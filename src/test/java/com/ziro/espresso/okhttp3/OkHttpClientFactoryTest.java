@@ -0,0 +1,311 @@
+package com.ziro.espresso.okhttp3;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.base.Ticker;
+import com.ziro.espresso.okhttp3.OkHttpClientFactory.Profile;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.Credentials;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import org.junit.jupiter.api.Test;
+
+class OkHttpClientFactoryTest {
+
+    private static final OAuth2ClientAccessTokenRequestParameters PARAMS = new OAuth2ClientAccessTokenRequestParameters(
+            "https://auth-server.com/oauth/token", "client123", "secret456", "read write");
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final Ticker ticker = new Ticker() {
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+    };
+    private final AtomicInteger fetches = new AtomicInteger();
+
+    @Test
+    void sharesConnectionPoolAndThreadsAcrossProfiles() {
+        OkHttpClient lowLatency = OkHttpClientFactory.sharedClient(Profile.LOW_LATENCY);
+        OkHttpClient bulk = OkHttpClientFactory.sharedClient(Profile.BULK);
+        OkHttpClient streaming = OkHttpClientFactory.sharedClient(Profile.STREAMING);
+
+        assertThat(OkHttpClientFactory.sharedClient(Profile.BULK)).isSameAs(bulk);
+        assertThat(bulk.connectionPool()).isSameAs(lowLatency.connectionPool());
+        assertThat(streaming.connectionPool()).isSameAs(lowLatency.connectionPool());
+        assertThat(bulk.dispatcher()).isNotSameAs(lowLatency.dispatcher());
+        assertThat(bulk.dispatcher().executorService())
+                .isSameAs(lowLatency.dispatcher().executorService());
+        assertThat(streaming.dispatcher().executorService())
+                .isSameAs(lowLatency.dispatcher().executorService());
+    }
+
+    @Test
+    void derivedClientsShareTheDispatcherOfTheirProfile() {
+        OkHttpClient bulk = OkHttpClientFactory.sharedClient(Profile.BULK);
+        OkHttpClient client = OkHttpClientFactory.newClientBuilder(Profile.BULK)
+                .addInterceptor(OkHttpClientFactory.buildBasicAuthInterceptor("user", "password"))
+                .build();
+
+        assertThat(client.dispatcher()).isSameAs(bulk.dispatcher());
+        assertThat(client.connectionPool()).isSameAs(bulk.connectionPool());
+        assertThat(client.protocols()).isEqualTo(bulk.protocols());
+    }
+
+    @Test
+    void tunesClientsForTheirProfile() {
+        OkHttpClient lowLatency = OkHttpClientFactory.sharedClient(Profile.LOW_LATENCY);
+        OkHttpClient bulk = OkHttpClientFactory.sharedClient(Profile.BULK);
+        OkHttpClient streaming = OkHttpClientFactory.sharedClient(Profile.STREAMING);
+
+        assertThat(lowLatency.dispatcher().getMaxRequestsPerHost()).isEqualTo(32);
+        assertThat(lowLatency.protocols()).containsExactly(Protocol.HTTP_2, Protocol.HTTP_1_1);
+        assertThat(lowLatency.callTimeoutMillis()).isEqualTo(15_000);
+        assertThat(bulk.dispatcher().getMaxRequestsPerHost()).isEqualTo(16);
+        assertThat(bulk.protocols()).containsExactly(Protocol.HTTP_1_1);
+        assertThat(bulk.readTimeoutMillis()).isEqualTo(60_000);
+        assertThat(streaming.dispatcher().getMaxRequests()).isEqualTo(256);
+        assertThat(streaming.readTimeoutMillis()).isZero();
+        assertThat(streaming.pingIntervalMillis()).isEqualTo(30_000);
+    }
+
+    @Test
+    void interceptorsReplaceAuthorizationAndKeepExistingHeaders() throws IOException {
+        FakeChain chain = new FakeChain(
+                new Request.Builder()
+                        .url("https://api.example.com/admin/exports")
+                        .header("Authorization", "Bearer stale")
+                        .header("Accept", "text/csv")
+                        .header("Content-Type", "text/plain")
+                        .build(),
+                200);
+
+        OkHttpClientFactory.buildBasicAuthInterceptor("user", "password").intercept(chain);
+
+        Request request = chain.proceededRequests.get(0);
+        assertThat(request.headers("Authorization")).containsExactly(Credentials.basic("user", "password"));
+        assertThat(request.headers("Accept")).containsExactly("text/csv");
+        assertThat(request.headers("Content-Type")).containsExactly("text/plain");
+    }
+
+    @Test
+    void interceptorsAddDefaultHeadersWhenMissing() throws IOException {
+        FakeChain chain = new FakeChain(newRequest(null), 200);
+
+        OkHttpClientFactory.buildBasicAuthInterceptor("user", "password").intercept(chain);
+
+        Request request = chain.proceededRequests.get(0);
+        assertThat(request.headers("Accept")).containsExactly("application/json, application/octet-stream");
+        assertThat(request.headers("Content-Type")).containsExactly("application/json");
+    }
+
+    @Test
+    void interceptorsPrefixPathsWithServices() throws IOException {
+        assertThat(servicesUrl("https://api.example.com")).isEqualTo("https://api.example.com/services/");
+        assertThat(servicesUrl("https://api.example.com/")).isEqualTo("https://api.example.com/services/");
+        assertThat(servicesUrl("https://api.example.com/admin/")).isEqualTo("https://api.example.com/services/admin/");
+        assertThat(servicesUrl("https://api.example.com/admin/a%2Fb/c%20d?name=x%26y#top"))
+                .isEqualTo("https://api.example.com/services/admin/a%2Fb/c%20d?name=x%26y#top");
+    }
+
+    @Test
+    void oauth2InterceptorRetriesOnceWithRenewedTokenOn401() throws IOException {
+        OAuth2ClientAccessTokens accessTokens = accessTokens(fetch -> CompletableFuture.completedFuture(
+                new JwtTokenFactory.AccessToken("token-" + fetch, Duration.ofHours(1))));
+        accessTokens.get(PARAMS);
+        advance(Duration.ofSeconds(10));
+        FakeChain chain = new FakeChain(newRequest(null), 401, 200);
+
+        Response response =
+                OkHttpClientFactory.buildOAuth2Interceptor(PARAMS, accessTokens).intercept(chain);
+
+        assertThat(response.code()).isEqualTo(200);
+        assertThat(chain.proceededRequests)
+                .extracting(request -> request.header("Authorization"))
+                .containsExactly("Bearer token-1", "Bearer token-2");
+        assertThat(fetches).hasValue(2);
+    }
+
+    @Test
+    void oauth2InterceptorDoesNotRenewTokensRejectedRightAfterTheyWereReceived() throws IOException {
+        OAuth2ClientAccessTokens accessTokens = accessTokens(fetch -> CompletableFuture.completedFuture(
+                new JwtTokenFactory.AccessToken("token-" + fetch, Duration.ofHours(1))));
+        FakeChain chain = new FakeChain(newRequest(null), 401, 200);
+
+        Response response =
+                OkHttpClientFactory.buildOAuth2Interceptor(PARAMS, accessTokens).intercept(chain);
+
+        assertThat(response.code()).isEqualTo(401);
+        assertThat(chain.proceededRequests).hasSize(1);
+        assertThat(fetches).hasValue(1);
+    }
+
+    @Test
+    void oauth2InterceptorDoesNotRetryOneShotBodies() throws IOException {
+        OAuth2ClientAccessTokens accessTokens = accessTokens(fetch -> CompletableFuture.completedFuture(
+                new JwtTokenFactory.AccessToken("token-" + fetch, Duration.ofHours(1))));
+        accessTokens.get(PARAMS);
+        advance(Duration.ofSeconds(10));
+        FakeChain chain = new FakeChain(newRequest(new OneShotRequestBody()), 401, 200);
+
+        Response response =
+                OkHttpClientFactory.buildOAuth2Interceptor(PARAMS, accessTokens).intercept(chain);
+
+        assertThat(response.code()).isEqualTo(401);
+        assertThat(chain.proceededRequests).hasSize(1);
+        assertThat(fetches).hasValue(1);
+    }
+
+    @Test
+    void oauth2InterceptorReturns401WhenTokenCannotBeRenewed() throws IOException {
+        OAuth2ClientAccessTokens accessTokens = accessTokens(fetch -> fetch == 1
+                ? CompletableFuture.completedFuture(new JwtTokenFactory.AccessToken("token-1", Duration.ofHours(1)))
+                : CompletableFuture.failedFuture(new IOException("Authorization Server is down")));
+        accessTokens.get(PARAMS);
+        advance(Duration.ofSeconds(10));
+        FakeChain chain = new FakeChain(newRequest(null), 401, 200);
+
+        Response response =
+                OkHttpClientFactory.buildOAuth2Interceptor(PARAMS, accessTokens).intercept(chain);
+
+        assertThat(response.code()).isEqualTo(401);
+        assertThat(chain.proceededRequests).hasSize(1);
+        assertThat(fetches).hasValue(2);
+    }
+
+    private OAuth2ClientAccessTokens accessTokens(IntFunction<CompletableFuture<JwtTokenFactory.AccessToken>> fetch) {
+        return OAuth2ClientAccessTokens.builder()
+                .tokenFetcher(params -> fetch.apply(fetches.incrementAndGet()))
+                .ticker(ticker)
+                .build();
+    }
+
+    private void advance(Duration duration) {
+        nanos.addAndGet(duration.toNanos());
+    }
+
+    private static String servicesUrl(String url) throws IOException {
+        FakeChain chain = new FakeChain(new Request.Builder().url(url).build(), 200);
+        OkHttpClientFactory.buildBasicAuthInterceptor("user", "password").intercept(chain);
+        return chain.proceededRequests.get(0).url().toString();
+    }
+
+    private static Request newRequest(RequestBody body) {
+        return new Request.Builder()
+                .url("https://api.example.com/admin/dial-plan-group-management")
+                .method(body == null ? "GET" : "POST", body)
+                .build();
+    }
+
+    /**
+     * A request body that can only be sent once, e.g. one streaming a file.
+     */
+    private static class OneShotRequestBody extends RequestBody {
+
+        @Override
+        public MediaType contentType() {
+            return null;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isOneShot() {
+            return true;
+        }
+    }
+
+    /**
+     * A chain answering requests with the given status codes in turn, without any network.
+     */
+    private static class FakeChain implements Interceptor.Chain {
+
+        private final Request request;
+        private final Deque<Integer> codes = new ArrayDeque<>();
+        private final List<Request> proceededRequests = new ArrayList<>();
+
+        private FakeChain(Request request, Integer... codes) {
+            this.request = request;
+            this.codes.addAll(List.of(codes));
+        }
+
+        @Override
+        public Request request() {
+            return request;
+        }
+
+        @Override
+        public Response proceed(Request request) {
+            proceededRequests.add(request);
+            return new Response.Builder()
+                    .request(request)
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(codes.remove())
+                    .message("Status")
+                    .body(ResponseBody.create("", null))
+                    .build();
+        }
+
+        @Override
+        public Connection connection() {
+            return null;
+        }
+
+        @Override
+        public Call call() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int connectTimeoutMillis() {
+            return 0;
+        }
+
+        @Override
+        public Interceptor.Chain withConnectTimeout(int timeout, TimeUnit unit) {
+            return this;
+        }
+
+        @Override
+        public int readTimeoutMillis() {
+            return 0;
+        }
+
+        @Override
+        public Interceptor.Chain withReadTimeout(int timeout, TimeUnit unit) {
+            return this;
+        }
+
+        @Override
+        public int writeTimeoutMillis() {
+            return 0;
+        }
+
+        @Override
+        public Interceptor.Chain withWriteTimeout(int timeout, TimeUnit unit) {
+            return this;
+        }
+    }
+}
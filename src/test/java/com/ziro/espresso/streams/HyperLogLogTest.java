@@ -0,0 +1,117 @@
+package com.ziro.espresso.streams;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Test;
+
+class HyperLogLogTest {
+
+    @Test
+    void estimatesSmallCardinalitiesExactly() {
+        HyperLogLog sketch = HyperLogLog.create();
+        assertThat(sketch.estimate()).isZero();
+
+        for (int i = 0; i < 100; i++) {
+            sketch.add("user-" + i);
+            sketch.add("user-" + i);
+        }
+        assertThat(sketch.estimate()).isEqualTo(100);
+    }
+
+    @Test
+    void estimatesLargeCardinalitiesWithinStandardError() {
+        for (int precision : new int[] {10, 14}) {
+            HyperLogLog sketch = HyperLogLog.withPrecision(precision);
+            LongStream.range(0, 1_000_000).forEach(sketch::add);
+
+            double tolerance = 4 * sketch.relativeStandardError();
+            assertThat((double) sketch.estimate()).isCloseTo(1_000_000, within(1_000_000 * tolerance));
+        }
+    }
+
+    @Test
+    void addHash() {
+        HashFunction murmur = Hashing.murmur3_128();
+        HyperLogLog sketch = HyperLogLog.create();
+        IntStream.range(0, 50_000).forEach(i -> sketch.addHash(murmur.hashInt(i).asLong()));
+
+        assertThat((double) sketch.estimate()).isCloseTo(50_000, within(2_000.0));
+    }
+
+    @Test
+    void mergeMatchesSingleSketch() {
+        HyperLogLog left = HyperLogLog.withPrecision(12);
+        HyperLogLog right = HyperLogLog.withPrecision(12);
+        HyperLogLog both = HyperLogLog.withPrecision(12);
+        IntStream.range(0, 60_000).forEach(i -> {
+            left.add(i);
+            both.add(i);
+        });
+        IntStream.range(40_000, 100_000).forEach(i -> {
+            right.add(i);
+            both.add(i);
+        });
+
+        assertThat(left.merge(right)).isEqualTo(both);
+        assertThat(left.estimate()).isEqualTo(both.estimate());
+    }
+
+    @Test
+    void mergeRejectsDifferentPrecisions() {
+        assertThatThrownBy(() -> HyperLogLog.withPrecision(10).merge(HyperLogLog.withPrecision(12)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Cannot merge a HyperLogLog of precision [12] into one of precision [10].");
+    }
+
+    @Test
+    void withPrecisionRejectsOutOfRangePrecisions() {
+        assertThatThrownBy(() -> HyperLogLog.withPrecision(3))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("precision must be between [4] and [18] but was [3].");
+        assertThatThrownBy(() -> HyperLogLog.withPrecision(19)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void serialization() {
+        HyperLogLog sketch = HyperLogLog.create();
+        IntStream.range(0, 200_000).forEach(sketch::add);
+
+        byte[] bytes = sketch.toByteArray();
+        assertThat(bytes).hasSize(sketch.serializedSizeInBytes());
+        assertThat(bytes.length).isLessThan(13 * 1024);
+
+        HyperLogLog deserialized = HyperLogLog.fromByteArray(bytes);
+        assertThat(deserialized).isEqualTo(sketch);
+        assertThat(deserialized.estimate()).isEqualTo(sketch.estimate());
+    }
+
+    @Test
+    void fromByteArrayRejectsOtherBytes() {
+        assertThatThrownBy(() -> HyperLogLog.fromByteArray(new byte[] {1, 2, 3, 4, 5}))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Bytes do not hold a serialized HyperLogLog.");
+    }
+
+    @Test
+    void fromByteArrayRejectsRegistersOutOfRange() {
+        HyperLogLog sketch = HyperLogLog.withPrecision(4);
+        sketch.addHash(0);
+        HyperLogLog deserialized = HyperLogLog.fromByteArray(sketch.toByteArray());
+        assertThat(deserialized).isEqualTo(sketch);
+        assertThat(deserialized.estimate()).isEqualTo(sketch.estimate());
+
+        byte[] bytes = sketch.toByteArray();
+        Arrays.fill(bytes, Integer.BYTES + 1, bytes.length, (byte) 0xFF);
+        assertThatThrownBy(() -> HyperLogLog.fromByteArray(bytes))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Registers of a serialized HyperLogLog of precision [4] must be <= [61] "
+                        + "but register [0] is [63].");
+    }
+}
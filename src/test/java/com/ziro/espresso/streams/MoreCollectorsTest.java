@@ -0,0 +1,279 @@
+package com.ziro.espresso.streams;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+class MoreCollectorsTest {
+
+    @Test
+    void exactlyOne() {
+        assertThat(Stream.of("user").collect(MoreCollectors.exactlyOne("user"))).isEqualTo("user");
+    }
+
+    @Test
+    void exactlyOneFailsOnEmptyStream() {
+        assertThatThrownBy(() -> Stream.empty().collect(MoreCollectors.exactlyOne("user")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Expected exactly [1] 'user' match but got [0].");
+    }
+
+    @Test
+    void exactlyOneFailsOnSecondElement() {
+        AtomicInteger seen = new AtomicInteger();
+        assertThatThrownBy(() -> IntStream.range(0, 1_000)
+                        .boxed()
+                        .peek(i -> seen.incrementAndGet())
+                        .collect(MoreCollectors.exactlyOne("user")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Expected exactly [1] 'user' match but got at least [2].");
+        assertThat(seen).hasValue(2);
+    }
+
+    @Test
+    void exactlyOneFailsFastOnInfiniteStream() {
+        assertThatThrownBy(() -> Stream.iterate(0, i -> i + 1).collect(MoreCollectors.exactlyOne("user")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Expected exactly [1] 'user' match but got at least [2].");
+    }
+
+    @Test
+    void exactlyOneInParallel() {
+        assertThat(IntStream.range(0, 100_000)
+                        .parallel()
+                        .boxed()
+                        .filter(i -> i == 54_321)
+                        .collect(MoreCollectors.exactlyOne("user")))
+                .isEqualTo(54_321);
+        assertThatThrownBy(() -> IntStream.range(0, 100_000)
+                        .parallel()
+                        .boxed()
+                        .filter(i -> i == 12 || i == 98_765)
+                        .collect(MoreCollectors.exactlyOne("user")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Expected exactly [1] 'user' match but got at least [2].");
+    }
+
+    @Test
+    void atMostOne() {
+        assertThat(Stream.empty().collect(MoreCollectors.atMostOne("user"))).isEmpty();
+        assertThat(Stream.of("user").collect(MoreCollectors.atMostOne("user"))).contains("user");
+    }
+
+    @Test
+    void atMostOneFailsOnSecondElement() {
+        AtomicInteger seen = new AtomicInteger();
+        assertThatThrownBy(() -> Stream.iterate(0, i -> i + 1)
+                        .peek(i -> seen.incrementAndGet())
+                        .collect(MoreCollectors.atMostOne("user")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Expected at most [1] 'user' but got at least [2].");
+        assertThat(seen).hasValue(2);
+    }
+
+    @Test
+    void atMostOneInParallel() {
+        assertThat(IntStream.range(0, 100_000)
+                        .parallel()
+                        .boxed()
+                        .filter(i -> i < 0)
+                        .collect(MoreCollectors.atMostOne("user")))
+                .isEmpty();
+        assertThatThrownBy(() -> IntStream.range(0, 100_000)
+                        .parallel()
+                        .boxed()
+                        .filter(i -> i % 50_000 == 0)
+                        .collect(MoreCollectors.atMostOne("user")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Expected at most [1] 'user' but got at least [2].");
+    }
+
+    @Test
+    void topK() {
+        List<Integer> elements = List.of(5, 1, 9, 3, 7, 9, 2);
+
+        assertThat(elements.stream().collect(MoreCollectors.topK(3, Comparator.naturalOrder())))
+                .containsExactly(9, 9, 7);
+        assertThat(elements.stream().collect(MoreCollectors.topK(0, Comparator.naturalOrder())))
+                .isEmpty();
+        assertThat(elements.stream().collect(MoreCollectors.topK(10, Comparator.naturalOrder())))
+                .containsExactly(9, 9, 7, 5, 3, 2, 1);
+        assertThat(Stream.<Integer>empty().collect(MoreCollectors.topK(3, Comparator.naturalOrder())))
+                .isEmpty();
+    }
+
+    @Test
+    void topKRejectsNegativeK() {
+        assertThatThrownBy(() -> MoreCollectors.topK(-1, Comparator.naturalOrder()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("k must be >= 0 but was [-1].");
+    }
+
+    @Test
+    void bottomK() {
+        List<String> elements = List.of("pear", "fig", "banana", "kiwi", "apple");
+
+        assertThat(elements.stream().collect(MoreCollectors.bottomK(2, Comparator.comparing(String::length))))
+                .containsExactly("fig", "pear");
+        assertThat(elements.stream().collect(MoreCollectors.bottomK(3, Comparator.naturalOrder())))
+                .containsExactly("apple", "banana", "fig");
+    }
+
+    @Test
+    void topKAndBottomKMatchSortingInParallel() {
+        SplittableRandom random = new SplittableRandom(42);
+        List<Integer> elements = random.ints(100_000, 0, 50_000).boxed().toList();
+
+        assertThat(elements.parallelStream().collect(MoreCollectors.topK(100, Comparator.naturalOrder())))
+                .isEqualTo(elements.stream()
+                        .sorted(Comparator.reverseOrder())
+                        .limit(100)
+                        .toList());
+        assertThat(elements.parallelStream().collect(MoreCollectors.bottomK(100, Comparator.naturalOrder())))
+                .isEqualTo(elements.stream().sorted().limit(100).toList());
+    }
+
+    @Test
+    void allMinBy() {
+        List<String> elements = List.of("pear", "fig", "banana", "kiwi", "yam", "apple");
+
+        assertThat(elements.stream().collect(MoreCollectors.allMinBy(String::length)))
+                .containsExactly("fig", "yam");
+        assertThat(Stream.<String>empty().collect(MoreCollectors.allMinBy(String::length)))
+                .isEmpty();
+    }
+
+    @Test
+    void allMaxBy() {
+        List<String> elements = List.of("pear", "fig", "banana", "kiwi", "orange", "apple");
+
+        assertThat(elements.stream().collect(MoreCollectors.allMaxBy(String::length)))
+                .containsExactly("banana", "orange");
+    }
+
+    @Test
+    void allMinByAndAllMaxByKeepEncounterOrderInParallel() {
+        List<Integer> elements = IntStream.range(0, 100_000).boxed().toList();
+
+        assertThat(elements.parallelStream().collect(MoreCollectors.allMinBy(i -> i % 1_000)))
+                .isEqualTo(elements.stream().filter(i -> i % 1_000 == 0).toList());
+        assertThat(elements.parallelStream().collect(MoreCollectors.allMaxBy(i -> i % 1_000)))
+                .isEqualTo(elements.stream().filter(i -> i % 1_000 == 999).toList());
+    }
+
+    @Test
+    void toHyperLogLog() {
+        HyperLogLog sketch = IntStream.range(0, 300_000)
+                .parallel()
+                .mapToObj(i -> "user-" + (i % 100_000))
+                .collect(MoreCollectors.toHyperLogLog(14));
+
+        assertThat((double) sketch.estimate()).isCloseTo(100_000, within(4_000.0));
+    }
+
+    @Test
+    void toHyperLogLogWithHashFunction() {
+        HashFunction murmur = Hashing.murmur3_128();
+        HyperLogLog sketch = LongStream.range(0, 10_000)
+                .boxed()
+                .collect(MoreCollectors.toHyperLogLog(
+                        14, id -> murmur.hashLong(id).asLong()));
+
+        assertThat((double) sketch.estimate()).isCloseTo(10_000, within(400.0));
+    }
+
+    @Test
+    void toQuantileSketch() {
+        QuantileSketch sketch = IntStream.rangeClosed(1, 1_000_000)
+                .parallel()
+                .boxed()
+                .collect(MoreCollectors.toQuantileSketch(200, Integer::doubleValue));
+
+        assertThat(sketch.count()).isEqualTo(1_000_000);
+        assertThat(sketch.min()).isEqualTo(1);
+        assertThat(sketch.max()).isEqualTo(1_000_000);
+        assertThat(sketch.quantile(0.99)).isCloseTo(990_000, within(20_000.0));
+    }
+
+    @Test
+    void toUniqueIndex() {
+        Map<Integer, String> index =
+                Stream.of("a", "bb", "ccc").collect(MoreCollectors.toUniqueIndex(String::length, "length"));
+
+        assertThat(index).containsExactlyInAnyOrderEntriesOf(Map.of(1, "a", 2, "bb", 3, "ccc"));
+    }
+
+    @Test
+    void toUniqueIndexFailsOnFirstDuplicateKey() {
+        AtomicInteger seen = new AtomicInteger();
+        assertThatThrownBy(() -> IntStream.range(0, 1_000)
+                        .boxed()
+                        .peek(i -> seen.incrementAndGet())
+                        .collect(MoreCollectors.toUniqueIndex(i -> i % 2, "parity")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Expected unique 'parity' keys but got duplicate key [0].");
+        assertThat(seen).hasValue(3);
+    }
+
+    @Test
+    void toUniqueIndexOnParallelStream() {
+        Map<Integer, Integer> index = IntStream.range(0, 100_000)
+                .parallel()
+                .boxed()
+                .collect(MoreCollectors.toUniqueIndex(i -> -i, "negated"));
+
+        assertThat(index).hasSize(100_000).containsEntry(-42, 42).containsEntry(-99_999, 99_999);
+    }
+
+    @Test
+    void toUniqueIndexFailsOnDuplicateKeyAcrossPartitions() {
+        assertThatThrownBy(() -> IntStream.range(0, 100_000)
+                        .parallel()
+                        .boxed()
+                        .collect(MoreCollectors.toUniqueIndex(i -> i == 99_999 ? 0 : i, "id")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Expected unique 'id' keys but got duplicate key [0].");
+    }
+
+    @Test
+    void groupingByPartitionedOnParallelStream() {
+        Map<Integer, List<Integer>> groups = IntStream.range(0, 100_000)
+                .parallel()
+                .boxed()
+                .collect(MoreCollectors.groupingByPartitioned(i -> i % 1_000, 1_000));
+        Map<Integer, List<Integer>> expected =
+                IntStream.range(0, 100_000).boxed().collect(Collectors.groupingBy(i -> i % 1_000));
+
+        assertThat(groups).hasSameSizeAs(expected);
+        expected.forEach((key, values) -> assertThat(groups.get(key)).containsExactlyInAnyOrderElementsOf(values));
+    }
+
+    @Test
+    void groupingByPartitionedKeepsEncounterOrderOnSequentialStream() {
+        Map<Boolean, List<String>> groups = Stream.of("a", "bb", "c", "dd")
+                .collect(MoreCollectors.groupingByPartitioned(s -> s.length() == 1, String::toUpperCase, 2));
+
+        assertThat(groups).containsEntry(true, List.of("A", "C")).containsEntry(false, List.of("BB", "DD"));
+    }
+
+    @Test
+    void groupingByPartitionedRejectsNegativeExpectedKeys() {
+        assertThatThrownBy(() -> MoreCollectors.groupingByPartitioned(Function.identity(), -1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("expectedKeys must be >= 0 but was [-1].");
+    }
+}
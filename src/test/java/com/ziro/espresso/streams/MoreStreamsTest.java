@@ -0,0 +1,383 @@
+package com.ziro.espresso.streams;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+class MoreStreamsTest {
+
+    @Test
+    void mapConcurrentKeepsEncounterOrder() {
+        List<Integer> results = MoreStreams.mapConcurrent(
+                        IntStream.range(0, 100).boxed(), 8, i -> {
+                            sleep(i % 2 == 0 ? 10 : 1);
+                            return i * 2;
+                        })
+                .toList();
+
+        assertThat(results)
+                .isEqualTo(IntStream.range(0, 100).map(i -> i * 2).boxed().toList());
+    }
+
+    @Test
+    void mapConcurrentRunsUpToMaxConcurrencyCalls() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+
+        MoreStreams.mapConcurrent(IntStream.range(0, 50).boxed(), 5, i -> {
+                    peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    sleep(20);
+                    running.decrementAndGet();
+                    return i;
+                })
+                .forEach(i -> {});
+
+        assertThat(peak.get()).isBetween(2, 5);
+    }
+
+    @Test
+    void mapConcurrentPullsSourceLazily() {
+        AtomicInteger pulled = new AtomicInteger();
+        Iterator<Integer> results = MoreStreams.mapConcurrent(
+                        IntStream.range(0, 1_000).boxed().peek(i -> pulled.incrementAndGet()), 4, i -> i)
+                .iterator();
+
+        assertThat(results.next()).isZero();
+        assertThat(pulled.get()).isEqualTo(4);
+    }
+
+    @Test
+    void mapConcurrentUnorderedReturnsResultsAsTheyComplete() {
+        CountDownLatch secondConsumed = new CountDownLatch(1);
+        List<Integer> results = MoreStreams.mapConcurrentUnordered(Stream.of(0, 1), 2, i -> {
+                    if (i == 0) {
+                        await(secondConsumed);
+                    }
+                    return i;
+                })
+                .peek(i -> {
+                    if (i == 1) {
+                        secondConsumed.countDown();
+                    }
+                })
+                .toList();
+
+        assertThat(results).containsExactly(1, 0);
+    }
+
+    @Test
+    void mapConcurrentFailsOnFirstFailureAndCancelsOtherCalls() {
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        assertThatThrownBy(() -> MoreStreams.mapConcurrent(
+                                IntStream.range(0, 1_000).boxed(), 4, i -> {
+                                    if (i == 2) {
+                                        throw new IllegalArgumentException("Invalid element [2].");
+                                    }
+                                    try {
+                                        Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                                    } catch (InterruptedException e) {
+                                        interrupted.countDown();
+                                    }
+                                    return i;
+                                })
+                        .toList())
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Invalid element [2].");
+        assertThat(await(interrupted)).isTrue();
+    }
+
+    @Test
+    void closingCancelsRunningCalls() {
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        try (Stream<Integer> results =
+                MoreStreams.mapConcurrent(IntStream.range(0, 100).boxed(), 4, i -> {
+                    if (i > 0) {
+                        try {
+                            Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                        } catch (InterruptedException e) {
+                            interrupted.countDown();
+                        }
+                    }
+                    return i;
+                })) {
+            assertThat(results.findFirst()).contains(0);
+        }
+        assertThat(await(interrupted)).isTrue();
+    }
+
+    @Test
+    void mapConcurrentRejectsInvalidMaxConcurrency() {
+        assertThatThrownBy(() -> MoreStreams.mapConcurrent(Stream.of(1), 0, i -> i))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("maxConcurrency must be >= 1 but was [0].");
+    }
+
+    @Test
+    void batches() {
+        assertThat(MoreStreams.batches(IntStream.range(0, 7).boxed(), 3))
+                .containsExactly(List.of(0, 1, 2), List.of(3, 4, 5), List.of(6));
+        assertThat(MoreStreams.batches(Stream.empty(), 3)).isEmpty();
+    }
+
+    @Test
+    void batchesAreLazy() {
+        assertThat(MoreStreams.batches(Stream.iterate(0, i -> i + 1), 2).limit(2))
+                .containsExactly(List.of(0, 1), List.of(2, 3));
+    }
+
+    @Test
+    void batchesKeepOrderInParallel() {
+        List<Integer> elements = IntStream.range(0, 100_000).boxed().toList();
+
+        assertThat(MoreStreams.batches(elements.parallelStream(), 7)
+                        .flatMap(List::stream)
+                        .toList())
+                .isEqualTo(elements);
+    }
+
+    @Test
+    void forEachBatch() {
+        List<List<Integer>> batches = new ArrayList<>();
+        List<List<Integer>> views = new ArrayList<>();
+
+        MoreStreams.forEachBatch(IntStream.range(0, 7).boxed(), 3, batch -> {
+            batches.add(List.copyOf(batch));
+            views.add(batch);
+        });
+
+        assertThat(batches).containsExactly(List.of(0, 1, 2), List.of(3, 4, 5), List.of(6));
+        assertThat(views).allSatisfy(view -> assertThat(view).isSameAs(views.get(0)));
+    }
+
+    @Test
+    void slidingWindows() {
+        assertThat(MoreStreams.slidingWindows(IntStream.range(0, 5).boxed(), 3))
+                .containsExactly(List.of(0, 1, 2), List.of(1, 2, 3), List.of(2, 3, 4));
+        assertThat(MoreStreams.slidingWindows(Stream.of(0, 1), 3)).isEmpty();
+    }
+
+    @Test
+    void slidingWindowsWithStep() {
+        assertThat(MoreStreams.slidingWindows(IntStream.range(0, 8).boxed(), 3, 2))
+                .containsExactly(List.of(0, 1, 2), List.of(2, 3, 4), List.of(4, 5, 6));
+        assertThat(MoreStreams.slidingWindows(IntStream.range(0, 10).boxed(), 2, 4))
+                .containsExactly(List.of(0, 1), List.of(4, 5), List.of(8, 9));
+    }
+
+    @Test
+    void timedBatchesCloseWhenFull() {
+        assertThat(MoreStreams.batches(IntStream.range(0, 7).boxed(), 3, Duration.ofMinutes(1)))
+                .containsExactly(List.of(0, 1, 2), List.of(3, 4, 5), List.of(6));
+    }
+
+    @Test
+    void timedBatchesCloseOnTimeWhileSourceBlocks() {
+        CountDownLatch firstBatchEmitted = new CountDownLatch(1);
+        Stream<Integer> source = Stream.of(0, 1, 2).peek(i -> {
+            if (i == 2) {
+                await(firstBatchEmitted);
+            }
+        });
+
+        List<List<Integer>> batches = MoreStreams.batches(source, 10, Duration.ofMillis(50))
+                .peek(batch -> firstBatchEmitted.countDown())
+                .toList();
+
+        assertThat(batches).containsExactly(List.of(0, 1), List.of(2));
+    }
+
+    @Test
+    void timedBatchesRethrowSourceFailure() {
+        Stream<Integer> source = Stream.iterate(0, i -> i + 1).peek(i -> {
+            if (i == 4) {
+                throw new IllegalStateException("Broken source.");
+            }
+        });
+        List<List<Integer>> batches = new ArrayList<>();
+
+        assertThatThrownBy(() ->
+                        MoreStreams.batches(source, 2, Duration.ofMinutes(1)).forEach(batches::add))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Broken source.");
+        assertThat(batches).containsExactly(List.of(0, 1), List.of(2, 3));
+    }
+
+    @Test
+    void timedBatchesStopReadingOnceAbandonedStreamIsCollected() throws InterruptedException {
+        AtomicReference<Thread> reader = new AtomicReference<>();
+        Stream<Integer> source = Stream.iterate(0, i -> i + 1).peek(i -> reader.set(Thread.currentThread()));
+
+        assertThat(MoreStreams.batches(source, 2, Duration.ofMinutes(1)).findFirst())
+                .contains(List.of(0, 1));
+
+        awaitTermination(reader.get());
+    }
+
+    @Test
+    void batchingRejectsInvalidArguments() {
+        assertThatThrownBy(() -> MoreStreams.batches(Stream.of(1), 0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("batchSize must be >= 1 but was [0].");
+        assertThatThrownBy(() -> MoreStreams.batches(Stream.of(1), 10, Duration.ZERO))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("maxWait must be positive but was [PT0S].");
+        assertThatThrownBy(() -> MoreStreams.slidingWindows(Stream.of(1), 2, 0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("step must be >= 1 but was [0].");
+    }
+
+    @Test
+    void paginate() {
+        for (int prefetchDepth : new int[] {0, 1, 3}) {
+            assertThat(MoreStreams.paginate(0, MoreStreamsTest::fetchPage, Page::items, Page::next, prefetchDepth))
+                    .containsExactlyElementsOf(IntStream.range(0, 50).boxed().toList());
+        }
+    }
+
+    @Test
+    void paginateFollowsCursorsFromNullFirstCursor() {
+        Stream<String> items = MoreStreams.paginate(
+                null,
+                (String cursor) -> cursor == null ? List.of("a", "b") : List.of(cursor),
+                page -> page,
+                page -> page.size() == 2 ? Optional.of("c") : Optional.empty());
+
+        assertThat(items).containsExactly("a", "b", "c");
+    }
+
+    @Test
+    void paginatePrefetchesUpToPrefetchDepthPages() throws InterruptedException {
+        AtomicInteger fetched = new AtomicInteger();
+        try (Stream<Integer> items = MoreStreams.paginate(
+                0,
+                (Integer number) -> {
+                    fetched.incrementAndGet();
+                    return fetchPage(number);
+                },
+                Page::items,
+                Page::next,
+                2)) {
+            Iterator<Integer> iterator = items.iterator();
+            assertThat(iterator.next()).isZero();
+            Thread.sleep(100);
+            assertThat(fetched.get()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    void paginateFetchesOnConsumingThreadByDefault() {
+        Set<Thread> fetchingThreads = ConcurrentHashMap.newKeySet();
+
+        assertThat(MoreStreams.paginate(
+                                0,
+                                (Integer number) -> {
+                                    fetchingThreads.add(Thread.currentThread());
+                                    return fetchPage(number);
+                                },
+                                Page::items,
+                                Page::next)
+                        .findFirst())
+                .contains(0);
+        assertThat(fetchingThreads).containsExactly(Thread.currentThread());
+    }
+
+    @Test
+    void paginateStopsPrefetchingOnceAbandonedStreamIsCollected() throws InterruptedException {
+        AtomicReference<Thread> fetcher = new AtomicReference<>();
+
+        assertThat(MoreStreams.paginate(
+                                0,
+                                (Integer number) -> {
+                                    fetcher.set(Thread.currentThread());
+                                    return fetchPage(number);
+                                },
+                                Page::items,
+                                Page::next,
+                                1)
+                        .filter(i -> i == 3)
+                        .findFirst())
+                .contains(3);
+
+        awaitTermination(fetcher.get());
+    }
+
+    @Test
+    void paginateRethrowsFetchFailureAfterPreviousPages() {
+        List<Integer> items = new ArrayList<>();
+
+        assertThatThrownBy(() -> MoreStreams.paginate(
+                                0,
+                                (Integer number) -> {
+                                    if (number == 2) {
+                                        throw new IllegalStateException("Page [2] is unavailable.");
+                                    }
+                                    return fetchPage(number);
+                                },
+                                Page::items,
+                                Page::next)
+                        .forEach(items::add))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Page [2] is unavailable.");
+        assertThat(items).isEqualTo(IntStream.range(0, 20).boxed().toList());
+    }
+
+    @Test
+    void paginateRejectsNegativePrefetchDepth() {
+        assertThatThrownBy(() -> MoreStreams.paginate(0, MoreStreamsTest::fetchPage, Page::items, Page::next, -1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("prefetchDepth must be >= 0 but was [-1].");
+    }
+
+    private static void awaitTermination(Thread thread) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (thread.isAlive() && System.nanoTime() < deadline) {
+            System.gc();
+            thread.join(50);
+        }
+        assertThat(thread.isAlive()).as("%s is still alive", thread).isFalse();
+    }
+
+    private static Page fetchPage(int number) {
+        return new Page(
+                number, IntStream.range(number * 10, number * 10 + 10).boxed().toList());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Page(int number, List<Integer> items) {
+
+        private Optional<Integer> next() {
+            return number < 4 ? Optional.of(number + 1) : Optional.empty();
+        }
+    }
+}
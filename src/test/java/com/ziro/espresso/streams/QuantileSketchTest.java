@@ -0,0 +1,162 @@
+package com.ziro.espresso.streams;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+import java.util.stream.DoubleStream;
+import org.junit.jupiter.api.Test;
+
+class QuantileSketchTest {
+
+    @Test
+    void smallStreamsAreExact() {
+        QuantileSketch sketch = QuantileSketch.create();
+        for (int i = 100; i >= 1; i--) {
+            sketch.add(i);
+        }
+
+        assertThat(sketch.count()).isEqualTo(100);
+        assertThat(sketch.min()).isEqualTo(1);
+        assertThat(sketch.max()).isEqualTo(100);
+        assertThat(sketch.quantiles(0, 0.5, 0.99, 1)).containsExactly(1, 50, 99, 100);
+        assertThat(sketch.rank(25)).isEqualTo(0.25);
+    }
+
+    @Test
+    void quantilesAreWithinRankError() {
+        SplittableRandom random = new SplittableRandom(42);
+        double[] values =
+                random.doubles(1_000_000).map(value -> value * value * 1_000).toArray();
+        QuantileSketch sketch = QuantileSketch.create();
+        Arrays.stream(values).forEach(sketch::add);
+        Arrays.sort(values);
+
+        assertThat(sketch.retained()).isLessThan(1_000);
+        for (double fraction : new double[] {0.01, 0.25, 0.5, 0.75, 0.95, 0.99}) {
+            double quantile = sketch.quantile(fraction);
+            double rank = (double) Arrays.binarySearch(values, quantile) / values.length;
+            assertThat(rank).isCloseTo(fraction, within(0.02));
+            assertThat(sketch.rank(quantile)).isCloseTo(fraction, within(0.02));
+        }
+        assertThat(sketch.quantile(0)).isEqualTo(values[0]);
+        assertThat(sketch.quantile(1)).isEqualTo(values[values.length - 1]);
+    }
+
+    @Test
+    void merge() {
+        QuantileSketch low = QuantileSketch.create();
+        QuantileSketch high = QuantileSketch.create();
+        for (int i = 0; i < 100_000; i++) {
+            low.add(i);
+            high.add(100_000 + i);
+        }
+
+        QuantileSketch merged = low.merge(high);
+        assertThat(merged.count()).isEqualTo(200_000);
+        assertThat(merged.min()).isEqualTo(0);
+        assertThat(merged.max()).isEqualTo(199_999);
+        assertThat(merged.quantile(0.5)).isCloseTo(100_000, within(4_000.0));
+        assertThat(high.count()).isEqualTo(100_000);
+    }
+
+    @Test
+    void mergeRejectsDifferentAccuracies() {
+        assertThatThrownBy(() -> QuantileSketch.withAccuracy(100).merge(QuantileSketch.withAccuracy(200)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Cannot merge a QuantileSketch with k [200] into one with k [100].");
+    }
+
+    @Test
+    void rejectsInvalidArguments() {
+        assertThatThrownBy(() -> QuantileSketch.withAccuracy(4))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("k must be >= [8] but was [4].");
+        assertThatThrownBy(() -> QuantileSketch.withAccuracy(1 << 17))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("k must be <= [65536] but was [131072].");
+        assertThatThrownBy(() -> QuantileSketch.create().add(Double.NaN))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("value must not be NaN.");
+        assertThatThrownBy(() -> QuantileSketch.create().quantile(0.5))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Cannot compute quantiles of an empty QuantileSketch.");
+        QuantileSketch sketch = QuantileSketch.create();
+        sketch.add(1);
+        assertThatThrownBy(() -> sketch.quantile(1.5))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("fraction must be between [0] and [1] but was [1.5].");
+    }
+
+    @Test
+    void serialization() {
+        QuantileSketch sketch = QuantileSketch.create();
+        new SplittableRandom(7).doubles(500_000).forEach(sketch::add);
+
+        byte[] bytes = sketch.toByteArray();
+        assertThat(bytes).hasSize(sketch.serializedSizeInBytes());
+
+        QuantileSketch deserialized = QuantileSketch.fromByteArray(bytes);
+        assertThat(deserialized.count()).isEqualTo(sketch.count());
+        assertThat(deserialized.retained()).isEqualTo(sketch.retained());
+        assertThat(deserialized.quantiles(0, 0.1, 0.5, 0.9, 1)).containsExactly(sketch.quantiles(0, 0.1, 0.5, 0.9, 1));
+        assertThat(QuantileSketch.fromByteArray(QuantileSketch.create().toByteArray())
+                        .isEmpty())
+                .isTrue();
+    }
+
+    @Test
+    void fromByteArrayRejectsOtherBytes() {
+        assertThatThrownBy(() -> QuantileSketch.fromByteArray(new byte[] {1, 2, 3, 4}))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Bytes do not hold a serialized QuantileSketch.");
+    }
+
+    @Test
+    void fromByteArrayRejectsMalformedSketches() {
+        QuantileSketch sketch = QuantileSketch.withAccuracy(8);
+        DoubleStream.of(1, 2, 3).forEach(sketch::add);
+        byte[] bytes = sketch.toByteArray();
+
+        assertThatThrownBy(() -> QuantileSketch.fromByteArray(Arrays.copyOf(bytes, bytes.length - 1)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Bytes do not hold a serialized QuantileSketch level of [3] values.");
+        assertThatThrownBy(() -> QuantileSketch.fromByteArray(modified(bytes, b -> b.putInt(32, 2))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Bytes do not hold a whole serialized QuantileSketch.");
+        assertThatThrownBy(() -> QuantileSketch.fromByteArray(Arrays.copyOf(bytes, bytes.length + 1)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Bytes hold [1] bytes after a serialized QuantileSketch.");
+        assertThatThrownBy(() -> QuantileSketch.fromByteArray(modified(bytes, b -> b.putInt(4, Integer.MAX_VALUE))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("k must be <= [65536] but was [2147483647].");
+        assertThatThrownBy(() -> QuantileSketch.fromByteArray(modified(bytes, b -> b.putInt(32, Integer.MAX_VALUE))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Bytes do not hold a serialized QuantileSketch of [2147483647] levels.");
+        assertThatThrownBy(() -> QuantileSketch.fromByteArray(modified(bytes, b -> b.putInt(36, -1))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Bytes do not hold a serialized QuantileSketch level of [-1] values.");
+        assertThatThrownBy(() -> QuantileSketch.fromByteArray(modified(bytes, b -> b.putLong(8, -1))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Bytes do not hold a serialized QuantileSketch of [-1] values between [1.0] and [3.0].");
+        assertThatThrownBy(() -> QuantileSketch.fromByteArray(modified(bytes, b -> b.putLong(8, 2))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Values of a serialized QuantileSketch must weigh [2] in total but level [0] holds [3].");
+        assertThatThrownBy(() -> QuantileSketch.fromByteArray(modified(bytes, b -> b.putLong(8, 4))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Values of a serialized QuantileSketch must weigh [4] in total but weigh [3].");
+        assertThatThrownBy(() -> QuantileSketch.fromByteArray(modified(bytes, b -> b.putDouble(56, 10))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Values of a serialized QuantileSketch must be between [1.0] and [3.0] but [10.0] is not.");
+    }
+
+    private static byte[] modified(byte[] bytes, Consumer<ByteBuffer> modification) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.clone());
+        modification.accept(buffer);
+        return buffer.array();
+    }
+}